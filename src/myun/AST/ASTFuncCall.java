@@ -1,7 +1,11 @@
 package myun.AST;
 
+import myun.scope.CallTarget;
+import myun.type.FuncType;
+
 import java.util.Arrays;
 import java.util.List;
+import java.util.Optional;
 
 /**
  * Represents a function call.
@@ -9,6 +13,8 @@ import java.util.List;
 public class ASTFuncCall extends ASTExpression {
     private final String function;
     private final List<ASTExpression> args;
+    // the function chosen by the overload resolution (null if the call is not resolved or ambiguous)
+    private CallTarget target;
 
     /**
      * Creates a new AST function call
@@ -44,8 +50,26 @@ public class ASTFuncCall extends ASTExpression {
         return args;
     }
 
-    public void setArg(int i, ASTVariable actualVariable) {
-        args.set(i, actualVariable);
+    public void setArg(int i, ASTExpression arg) {
+        args.set(i, arg);
+    }
+
+    /**
+     * @return the type of the called function if the type inference found exactly one matching overload
+     */
+    public Optional<FuncType> getResolvedType() {
+        return getTarget().map(CallTarget::getType);
+    }
+
+    /**
+     * @return the called function if the type inference found exactly one matching overload
+     */
+    public Optional<CallTarget> getTarget() {
+        return Optional.ofNullable(target);
+    }
+
+    public void setTarget(CallTarget target) {
+        this.target = target;
     }
 
     @Override
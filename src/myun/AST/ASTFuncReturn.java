@@ -21,7 +21,7 @@ public class ASTFuncReturn extends ASTStatement {
         return expr;
     }
 
-    public void setExpr(ASTVariable expr) {
+    public void setExpr(ASTExpression expr) {
         this.expr = expr;
     }
 
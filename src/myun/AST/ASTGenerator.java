@@ -7,6 +7,7 @@ import myun.AST.MyunParser.BlockContext;
 import myun.AST.MyunParser.BranchContext;
 import myun.AST.MyunParser.CompileUnitContext;
 import myun.AST.MyunParser.DeclarationContext;
+import myun.AST.MyunParser.ExprContext;
 import myun.AST.MyunParser.ForLoopContext;
 import myun.AST.MyunParser.FuncCallContext;
 import myun.AST.MyunParser.FuncDefContext;
@@ -20,28 +21,108 @@ import myun.AST.MyunParser.StatementContext;
 import myun.AST.MyunParser.VariableContext;
 import myun.AST.MyunParser.WhileLoopContext;
 import myun.AST.constraints.ConstraintChecker;
+import myun.compiler.CompilationCache;
+import myun.compiler.CompilationTimer;
 import myun.type.BasicType;
 import myun.type.FuncType;
 import myun.type.MyunType;
 import myun.type.UnknownType;
 import org.antlr.v4.runtime.*;
 import org.antlr.v4.runtime.atn.ATNConfigSet;
+import org.antlr.v4.runtime.atn.PredictionMode;
 import org.antlr.v4.runtime.dfa.DFA;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.BitSet;
+import java.util.Deque;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
  * Generates the AST structure from the ANTLR parser.
+ * By default, the code is parsed in two stages: the fast SLL prediction mode is tried first and gives up at the first
+ * syntax error. Only then the code is parsed again with full LL prediction, which finds the same syntax trees for valid
+ * code and reports the syntax errors.
+ * If a snapshot directory is set, the AST of each parsed file is stored as an {@link ASTSnapshot} under the hash of
+ * the source code, so an unchanged file is loaded instead of parsed.
+ * The generated parser descends recursively into nested blocks, so the code is parsed on threads with a large call
+ * stack, which can parse thousands of nested branches and loops.
  */
 public class ASTGenerator implements ANTLRErrorListener {
+    private static final long PARSER_STACK_SIZE = 512L * 1024 * 1024;
+    private static final ExecutorService PARSER_THREADS = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(null, runnable, "myun-parser", PARSER_STACK_SIZE);
+        thread.setDaemon(true);
+        return thread;
+    });
+
     // to check context-sensitive constraints
     private final ConstraintChecker constraintChecker;
+    // the bytes allocated on the parser threads or -1 if they are unknown
+    private final AtomicLong parserAllocatedBytes;
+    private boolean twoStageParsing;
+    private boolean parallelParsing;
+    private boolean handWrittenLexer;
+    private Path snapshotDirectory;
 
     public ASTGenerator() {
         constraintChecker = new ConstraintChecker();
+        parserAllocatedBytes = new AtomicLong();
+        twoStageParsing = true;
+        parallelParsing = false;
+        handWrittenLexer = false;
+        snapshotDirectory = null;
+    }
+
+    /**
+     * Sets the directory of the AST snapshots of parsed files, which is created if necessary.
+     *
+     * @param snapshotDirectory the directory or null if files should always be parsed (the default)
+     */
+    public void setSnapshotDirectory(Path snapshotDirectory) {
+        this.snapshotDirectory = snapshotDirectory;
+    }
+
+    /**
+     * Sets whether the code is lexed by the hand-written {@link MyunTokenSource} (with memory-mapped files) instead of
+     * the generated {@link MyunLexer}.
+     *
+     * @param handWrittenLexer true iff the hand-written lexer should be used
+     */
+    public void setHandWrittenLexer(boolean handWrittenLexer) {
+        this.handWrittenLexer = handWrittenLexer;
+    }
+
+    /**
+     * Sets whether the code is parsed with SLL prediction first (the default) or only with full LL prediction.
+     *
+     * @param twoStageParsing true iff SLL prediction should be tried first
+     */
+    public void setTwoStageParsing(boolean twoStageParsing) {
+        this.twoStageParsing = twoStageParsing;
+    }
+
+    /**
+     * Sets whether the function definitions are parsed concurrently. The code is lexed once and split at the
+     * top-level function definitions, which pays off for files with many functions.
+     *
+     * @param parallelParsing true iff the function definitions should be parsed concurrently
+     */
+    public void setParallelParsing(boolean parallelParsing) {
+        this.parallelParsing = parallelParsing;
     }
 
     /**
@@ -52,30 +133,319 @@ public class ASTGenerator implements ANTLRErrorListener {
      * @throws IOException                 thrown when the file could not be loaded
      */
     public ASTCompileUnit parseFile(String fileName) throws IOException {
-        CharStream fileStream = CharStreams.fromFileName(fileName);
-        return parse(fileStream);
+        return parseFile(fileName, true);
+    }
+
+    /**
+     * Parses a file with Myun code.
+     *
+     * @param fileName the file name
+     * @param checkConstraints whether the context-sensitive constraints should be checked, otherwise they have to be
+     *                         checked separately with a {@link ConstraintChecker}
+     * @return an AST representing the program code
+     * @throws IOException                 thrown when the file could not be loaded
+     */
+    public ASTCompileUnit parseFile(String fileName, boolean checkConstraints) throws IOException {
+        if (snapshotDirectory != null) {
+            return loadOrParseFile(fileName, checkConstraints);
+        }
+        CharStream fileStream = handWrittenLexer ? MappedCharStream.fromPath(Paths.get(fileName)) :
+                CharStreams.fromFileName(fileName);
+        return parse(fileStream, checkConstraints);
+    }
+
+    /**
+     * Loads the snapshot of a file if its source code has not changed, otherwise the file is parsed and its snapshot
+     * is written.
+     */
+    private ASTCompileUnit loadOrParseFile(String fileName, boolean checkConstraints) throws IOException {
+        byte[] source = Files.readAllBytes(Paths.get(fileName));
+        Path snapshotFile = snapshotDirectory.resolve(computeSnapshotKey(source) + ".ast");
+
+        ASTCompileUnit compileUnit = null;
+        try {
+            compileUnit = ASTSnapshot.read(Files.readAllBytes(snapshotFile));
+        } catch (NoSuchFileException e) {
+            // not parsed before
+        } catch (IOException e) {
+            // a corrupt snapshot (e.g. of an interrupted compiler) is replaced
+        }
+        if (compileUnit == null) {
+            // the snapshot is taken before the constraints are checked, which is repeated for every load
+            compileUnit = parse(CharStreams.fromString(new String(source, StandardCharsets.UTF_8), fileName), false);
+            Files.createDirectories(snapshotDirectory);
+            Path temporaryFile = Files.createTempFile(snapshotDirectory, "snapshot", ".tmp");
+            Files.write(temporaryFile, ASTSnapshot.write(compileUnit));
+            Files.move(temporaryFile, snapshotFile, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        }
+        if (checkConstraints) {
+            constraintChecker.check(compileUnit);
+        }
+        return compileUnit;
+    }
+
+    /**
+     * @return the hexadecimal SHA-256 hash of the snapshot format and the source code
+     */
+    private static String computeSnapshotKey(byte[] source) {
+        return CompilationCache.computeKey(new byte[]{(byte) ASTSnapshot.FORMAT_VERSION}, source);
+    }
+
+    /**
+     * Parses Myun code.
+     *
+     * @param code the code
+     * @param checkConstraints whether the context-sensitive constraints should be checked
+     * @return an AST representing the program code
+     */
+    public ASTCompileUnit parseCode(String code, boolean checkConstraints) {
+        return parse(CharStreams.fromString(code), checkConstraints);
     }
 
     /**
      * Parses a char stream of Myun code.
      *
      * @param charStream the char stream
+     * @param checkConstraints whether the context-sensitive constraints should be checked
      * @return an AST representing the program code
      */
-    private ASTCompileUnit parse(CharStream charStream) {
-        MyunLexer lexer = new MyunLexer(charStream);
-        lexer.removeErrorListeners();
-        lexer.addErrorListener(this);
+    private ASTCompileUnit parse(CharStream charStream, boolean checkConstraints) {
+        ASTCompileUnit compileUnit = getResult(submit(() -> buildAST(charStream)));
+        if (checkConstraints) {
+            constraintChecker.check(compileUnit);
+        }
+        return compileUnit;
+    }
 
-        TokenStream tokens = new CommonTokenStream(lexer);
+    /**
+     * Runs a task on a parser thread and counts the bytes it allocates there.
+     *
+     * @param task the task
+     * @return the running task
+     */
+    private <T> Future<T> submit(Callable<T> task) {
+        return PARSER_THREADS.submit(() -> {
+            long startBytes = CompilationTimer.getAllocatedBytes();
+            try {
+                return task.call();
+            } finally {
+                long endBytes = CompilationTimer.getAllocatedBytes();
+                long allocatedBytes = ((startBytes < 0) || (endBytes < 0)) ? -1 : (endBytes - startBytes);
+                parserAllocatedBytes.accumulateAndGet(allocatedBytes,
+                        (total, bytes) -> ((total < 0) || (bytes < 0)) ? -1 : (total + bytes));
+            }
+        });
+    }
 
+    /**
+     * The parsing runs on parser threads, so the allocations of the calling thread do not include it.
+     *
+     * @return the bytes allocated on the parser threads by this generator so far or -1 if they are unknown
+     */
+    public long getParserAllocatedBytes() {
+        return parserAllocatedBytes.get();
+    }
+
+    /**
+     * Waits for a task on a parser thread.
+     *
+     * @param task the task
+     * @return the result of the task
+     * @throws ParserException thrown when the task fails with a parser error or when the code is nested too deeply
+     */
+    private static <T> T getResult(Future<T> task) {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            task.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("The parser has been interrupted.", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof StackOverflowError) {
+                throw new ParserException("The code is nested too deeply", new SourcePosition());
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Lexes and parses a char stream of Myun code and builds its AST, which is run on a parser thread.
+     */
+    private ASTCompileUnit buildAST(CharStream charStream) {
+        TokenSource tokenSource;
+        if (handWrittenLexer) {
+            tokenSource = new MyunTokenSource(charStream);
+        }
+        else {
+            MyunLexer lexer = new MyunLexer(charStream);
+            lexer.removeErrorListeners();
+            lexer.addErrorListener(this);
+            tokenSource = lexer;
+        }
+
+        CommonTokenStream tokens = new CommonTokenStream(tokenSource);
+
+        ASTCompileUnit compileUnit = null;
+        if (parallelParsing) {
+            tokens.fill();
+            compileUnit = parseInParallel(tokens.getTokens());
+        }
+        if (compileUnit == null) {
+            compileUnit = new CompileUnitVisitor().visit(parseRule(tokens, MyunParser::compileUnit));
+        }
+        return compileUnit;
+    }
+
+    /**
+     * Parses a grammar rule, with SLL prediction first if two-stage parsing is enabled.
+     *
+     * @param tokens the tokens
+     * @param rule calls the rule on a parser
+     * @return the parse tree of the rule
+     */
+    private <T extends ParserRuleContext> T parseRule(TokenStream tokens, Function<MyunParser, T> rule) {
         MyunParser parser = new MyunParser(tokens);
         parser.removeErrorListeners();
+        if (twoStageParsing) {
+            parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+            parser.setErrorHandler(new BailErrorStrategy());
+            try {
+                return rule.apply(parser);
+            } catch (ParseCancellationException e) {
+                // either a syntax error or code that SLL cannot predict, so the full LL stage decides
+                tokens.seek(0);
+                parser.reset();
+                parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+                parser.setErrorHandler(new DefaultErrorStrategy());
+            }
+        }
         parser.addErrorListener(this);
+        return rule.apply(parser);
+    }
 
-        ASTCompileUnit compileUnit = new CompileUnitVisitor().visit(parser.compileUnit());
-        constraintChecker.check(compileUnit);
-        return compileUnit;
+    /**
+     * Parses the function definitions and the script concurrently.
+     * The tokens are split at the top-level function definitions, each part is parsed on its own. The function
+     * definitions are parsed in one batch per processor on the parser threads. Since the tokens keep their positions,
+     * the source positions are the same as for a sequential parse.
+     *
+     * @param tokens all tokens of the code
+     * @return an AST representing the program code or null if the code contains a syntax error, which is reported by
+     * the sequential parser then
+     */
+    private ASTCompileUnit parseInParallel(List<Token> tokens) {
+        Optional<List<List<Token>>> chunks = splitAtFuncDefs(tokens);
+        if (!chunks.isPresent()) {
+            return null;
+        }
+
+        List<List<Token>> funcDefChunks = chunks.get().subList(0, chunks.get().size() - 1);
+        List<Token> scriptChunk = chunks.get().get(chunks.get().size() - 1);
+        int batchCount = Math.min(Runtime.getRuntime().availableProcessors(), funcDefChunks.size());
+        List<Future<List<ASTFuncDef>>> batches = new ArrayList<>();
+        for (int i = 0; i < batchCount; i++) {
+            List<List<Token>> batch = funcDefChunks.subList(i * funcDefChunks.size() / batchCount,
+                    (i + 1) * funcDefChunks.size() / batchCount);
+            batches.add(submit(parseFuncDefs(batch)));
+        }
+        try {
+            List<ASTFuncDef> funcDefs = new ArrayList<>();
+            for (Future<List<ASTFuncDef>> batch : batches) {
+                funcDefs.addAll(getResult(batch));
+            }
+            ScriptContext script = parseRule(new CommonTokenStream(new ListTokenSource(scriptChunk)), parser ->
+                    expectEnd(parser, parser.script()));
+            Token start = tokens.stream().filter(token -> token.getChannel() == Token.DEFAULT_CHANNEL).
+                    findFirst().orElse(script.start);
+            return new ASTCompileUnit(getSourcePos(start), funcDefs, script.accept(new ScriptVisitor()));
+        } catch (ParserException e) {
+            // the chunks may report another error than the whole code, so the sequential parser reports it
+            return null;
+        }
+    }
+
+    private Callable<List<ASTFuncDef>> parseFuncDefs(List<List<Token>> chunks) {
+        return () -> chunks.stream().
+                map(chunk -> parseRule(new CommonTokenStream(new ListTokenSource(chunk)), parser ->
+                        expectEnd(parser, parser.funcDef())).accept(new FuncDefVisitor())).
+                collect(Collectors.toList());
+    }
+
+    /**
+     * Makes sure that a rule has consumed all tokens of a chunk.
+     */
+    private static <T extends ParserRuleContext> T expectEnd(MyunParser parser, T context) {
+        Token next = parser.getCurrentToken();
+        if (next.getType() != Token.EOF) {
+            throw new ParserException("Unexpected " + next.getText(), getSourcePos(next));
+        }
+        return context;
+    }
+
+    /**
+     * Splits the tokens at the top-level function definitions ({@code ID '(' ... 'end'}).
+     * Blocks of branches and loops are closed by 'end' as well, so their nesting is tracked.
+     *
+     * @param tokens all tokens of the code
+     * @return the tokens of each function definition followed by the tokens of the script (without the EOF token), or
+     * empty if the code does not have this structure
+     */
+    private static Optional<List<List<Token>>> splitAtFuncDefs(List<Token> tokens) {
+        List<List<Token>> chunks = new ArrayList<>();
+        List<Token> chunk = new ArrayList<>();
+        int depth = 0;
+        boolean inScript = false;
+        Token previous = null;
+        for (Token token : tokens) {
+            if (token.getType() == Token.EOF) {
+                break;
+            }
+            if (token.getChannel() == Token.DEFAULT_CHANNEL) {
+                if (!inScript && (depth == 0)) {
+                    if (isKeyword(token, "script")) {
+                        inScript = true;
+                        depth = 1;
+                    }
+                    else if ((previous != null) && (previous.getType() == MyunLexer.ID) && isKeyword(token, "(")) {
+                        depth = 1;
+                    }
+                    else if (token.getType() != MyunLexer.ID) {
+                        return Optional.empty();
+                    }
+                }
+                else if (isKeyword(token, "if") || isKeyword(token, "while") || isKeyword(token, "for")) {
+                    depth++;
+                }
+                else if (isKeyword(token, "end")) {
+                    depth--;
+                    if ((depth == 0) && !inScript) {
+                        chunk.add(token);
+                        chunks.add(chunk);
+                        chunk = new ArrayList<>();
+                        previous = token;
+                        continue;
+                    }
+                }
+                previous = token;
+            }
+            chunk.add(token);
+        }
+        if (!inScript) {
+            return Optional.empty();
+        }
+        chunks.add(chunk);
+        return Optional.of(chunks);
+    }
+
+    private static boolean isKeyword(Token token, String keyword) {
+        return ('\'' + keyword + '\'').equals(MyunLexer.VOCABULARY.getLiteralName(token.getType()));
     }
 
     /**
@@ -271,13 +641,31 @@ public class ASTGenerator implements ANTLRErrorListener {
             throw new ParserException("Unknown basic expression " + ctx.getText(), getSourcePos(ctx.start));
         }
 
-        /** @noinspection OverlyComplexMethod, OverlyLongMethod */
+        /**
+         * Long chains like {@code a + b + c} are nested in their left operands, so they are built in a loop.
+         */
         @Override
         public ASTExpression visitOperatorExpr(OperatorExprContext ctx) {
-            ASTExpression left = ctx.left.accept(this);
-            SourcePosition sourcePos = getSourcePos(ctx.start);
+            Deque<OperatorExprContext> operatorExprs = new ArrayDeque<>();
+            ExprContext operand = ctx;
+            while (operand instanceof OperatorExprContext) {
+                operatorExprs.push((OperatorExprContext) operand);
+                operand = ((OperatorExprContext) operand).left;
+            }
+            ASTExpression expr = operand.accept(this);
+            while (!operatorExprs.isEmpty()) {
+                OperatorExprContext operatorExpr = operatorExprs.pop();
+                SourcePosition sourcePos = getSourcePos(operatorExpr.start);
+                String op = getOperator(operatorExpr.op, sourcePos);
+                expr = new ASTFuncCall(sourcePos, op, expr, operatorExpr.right.accept(this));
+            }
+            return expr;
+        }
+
+        /** @noinspection OverlyComplexMethod, OverlyLongMethod */
+        private static String getOperator(Token operator, SourcePosition sourcePos) {
             String op;
-            switch (ctx.op.getType()) {
+            switch (operator.getType()) {
                 case MyunLexer.OP_AND:
                     op = "and";
                     break;
@@ -315,10 +703,9 @@ public class ASTGenerator implements ANTLRErrorListener {
                     op = "mod";
                     break;
                 default:
-                    throw new ParserException("Unknown operator " + ctx.op.getText(), sourcePos);
+                    throw new ParserException("Unknown operator " + operator.getText(), sourcePos);
             }
-            ASTExpression right = ctx.right.accept(this);
-            return new ASTFuncCall(sourcePos, op, left, right);
+            return op;
         }
 
         @Override
@@ -0,0 +1,560 @@
+package myun.AST;
+
+import myun.type.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compact binary format for parsed ASTs, so that unchanged files do not have to be parsed again.
+ * A snapshot starts with a table of all identifiers (names of functions, variables, and types), which are referenced
+ * by their index. The nodes follow in post-order, each with a kind byte and its source position, so that the children
+ * of a node are read (and pushed on a stack) before the node itself, which is why arbitrarily deep ASTs can be read
+ * without recursion. Numbers are stored as variable-length integers.
+ * Only the information of a freshly parsed AST is stored: the declared types, but no scopes or inferred types.
+ */
+public final class ASTSnapshot {
+    private static final byte[] MAGIC = "MYAST".getBytes(StandardCharsets.US_ASCII);
+    // has to be changed whenever the format changes
+    static final int FORMAT_VERSION = 2;
+
+    // statement kinds
+    private static final int DECLARATION = 1;
+    private static final int ASSIGNMENT = 2;
+    private static final int BRANCH = 3;
+    private static final int WHILE_LOOP = 4;
+    private static final int FOR_LOOP = 5;
+    private static final int PROC_CALL = 6;
+    // expression kinds
+    private static final int FUNC_CALL = 7;
+    private static final int VARIABLE = 8;
+    private static final int INT_CONSTANT = 9;
+    private static final int FLOAT_CONSTANT = 10;
+    private static final int BOOL_CONSTANT = 11;
+    // other node kinds
+    private static final int FUNC_RETURN = 12;
+    private static final int LOOP_BREAK = 13;
+    private static final int BLOCK = 14;
+    private static final int FUNC_DEF = 15;
+    private static final int SCRIPT = 16;
+    private static final int COMPILE_UNIT = 17;
+    // block endings
+    private static final int NO_ENDING = 0;
+    private static final int RETURN_ENDING = 1;
+    private static final int BREAK_ENDING = 2;
+    // type kinds
+    private static final int UNKNOWN_TYPE = 0;
+    private static final int BASIC_TYPE = 1;
+    private static final int FUNC_TYPE = 2;
+    private static final int VARIANT_TYPE = 3;
+
+    private ASTSnapshot() {
+    }
+
+    /**
+     * Serializes a parsed AST.
+     *
+     * @param compileUnit the AST
+     * @return the snapshot
+     */
+    public static byte[] write(ASTCompileUnit compileUnit) {
+        SnapshotWriter writer = new SnapshotWriter();
+        writer.traversal.run(() -> compileUnit.accept(writer));
+
+        ByteArrayOutputStream snapshot = new ByteArrayOutputStream();
+        snapshot.write(MAGIC, 0, MAGIC.length);
+        writeVarInt(snapshot, FORMAT_VERSION);
+        writeVarInt(snapshot, writer.identifiers.size());
+        for (String identifier : writer.identifiers.keySet()) {
+            byte[] bytes = identifier.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(snapshot, bytes.length);
+            snapshot.write(bytes, 0, bytes.length);
+        }
+        byte[] nodes = writer.nodes.toByteArray();
+        snapshot.write(nodes, 0, nodes.length);
+        return snapshot.toByteArray();
+    }
+
+    /**
+     * Deserializes an AST.
+     *
+     * @param snapshot the snapshot
+     * @return the AST
+     * @throws IOException thrown when the snapshot is invalid or has another format version
+     */
+    public static ASTCompileUnit read(byte[] snapshot) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(snapshot);
+        try {
+            byte[] magic = new byte[MAGIC.length];
+            buffer.get(magic);
+            if (!Arrays.equals(magic, MAGIC) || (readVarInt(buffer) != FORMAT_VERSION)) {
+                throw new IOException("Not an AST snapshot of version " + FORMAT_VERSION + '.');
+            }
+            String[] identifiers = new String[readVarInt(buffer)];
+            for (int i = 0; i < identifiers.length; i++) {
+                byte[] bytes = new byte[readVarInt(buffer)];
+                buffer.get(bytes);
+                identifiers[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+            ASTCompileUnit compileUnit = new SnapshotReader(buffer, identifiers).readCompileUnit();
+            if (buffer.hasRemaining()) {
+                throw new IOException("The AST snapshot has trailing data.");
+            }
+            return compileUnit;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | NegativeArraySizeException e) {
+            throw new IOException("The AST snapshot is truncated or corrupt.", e);
+        }
+    }
+
+    /**
+     * Writes an int with zigzag encoding (so small negative numbers are short as well) in groups of 7 bits.
+     */
+    private static void writeVarInt(ByteArrayOutputStream output, int value) {
+        int zigzag = (value << 1) ^ (value >> 31);
+        while ((zigzag & ~0x7F) != 0) {
+            output.write((zigzag & 0x7F) | 0x80);
+            zigzag >>>= 7;
+        }
+        output.write(zigzag);
+    }
+
+    private static int readVarInt(ByteBuffer buffer) throws IOException {
+        int zigzag = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = buffer.get() & 0xFF;
+            zigzag |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return (zigzag >>> 1) ^ -(zigzag & 1);
+            }
+        }
+        throw new IOException("Invalid number in the AST snapshot.");
+    }
+
+    /**
+     * Writes the nodes in post-order: every visit schedules its children and then the step that writes the node.
+     */
+    private static final class SnapshotWriter implements ASTVisitor<Void>, TypeVisitor<Void> {
+        private final ASTTraversal traversal;
+        // the identifiers and their indices in the order of their first occurrence
+        private final Map<String, Integer> identifiers;
+        private final ByteArrayOutputStream nodes;
+
+        private SnapshotWriter() {
+            traversal = new ASTTraversal();
+            identifiers = new LinkedHashMap<>();
+            nodes = new ByteArrayOutputStream();
+        }
+
+        private void writeInt(int value) {
+            writeVarInt(nodes, value);
+        }
+
+        private void writeIdentifier(String identifier) {
+            Integer index = identifiers.get(identifier);
+            if (index == null) {
+                index = identifiers.size();
+                identifiers.put(identifier, index);
+            }
+            writeInt(index);
+        }
+
+        private void writeNode(int kind, ASTNode node) {
+            writeInt(kind);
+            writeInt(node.getSourcePosition().getLine());
+            writeInt(node.getSourcePosition().getPosition());
+        }
+
+        private void writeChildren(Collection<? extends ASTNode> children) {
+            children.forEach(child -> traversal.then(() -> child.accept(this)));
+        }
+
+        private void writeChild(ASTNode child) {
+            traversal.then(() -> child.accept(this));
+        }
+
+        /**
+         * Writes the node after the children that have been scheduled before.
+         */
+        private Void thenWrite(Runnable writeNode) {
+            traversal.then(writeNode);
+            return null;
+        }
+
+        @Override
+        public Void visit(ASTCompileUnit node) {
+            writeChildren(node.getFuncDefs());
+            writeChild(node.getScript());
+            return thenWrite(() -> {
+                writeNode(COMPILE_UNIT, node);
+                writeInt(node.getFuncDefs().size());
+            });
+        }
+
+        @Override
+        public Void visit(ASTFuncDef node) {
+            writeChildren(node.getParameters());
+            writeChild(node.getBlock());
+            return thenWrite(() -> {
+                writeNode(FUNC_DEF, node);
+                writeIdentifier(node.getName());
+                writeInt(node.getParameters().size());
+                node.getReturnType().accept(this);
+            });
+        }
+
+        @Override
+        public Void visit(ASTScript node) {
+            writeChild(node.getBlock());
+            return thenWrite(() -> {
+                writeNode(SCRIPT, node);
+                writeIdentifier(node.getName());
+            });
+        }
+
+        @Override
+        public Void visit(ASTBlock node) {
+            writeChildren(node.getStatements());
+            node.getFuncReturn().ifPresent(this::writeChild);
+            node.getLoopBreak().ifPresent(this::writeChild);
+            return thenWrite(() -> {
+                writeNode(BLOCK, node);
+                writeInt(node.getStatements().size());
+                if (node.getFuncReturn().isPresent()) {
+                    writeInt(RETURN_ENDING);
+                }
+                else if (node.getLoopBreak().isPresent()) {
+                    writeInt(BREAK_ENDING);
+                }
+                else {
+                    writeInt(NO_ENDING);
+                }
+            });
+        }
+
+        @Override
+        public Void visit(ASTDeclaration node) {
+            writeChild(node.getVariable());
+            writeChild(node.getExpr());
+            return thenWrite(() -> writeNode(DECLARATION, node));
+        }
+
+        @Override
+        public Void visit(ASTAssignment node) {
+            writeChild(node.getVariable());
+            writeChild(node.getExpr());
+            return thenWrite(() -> writeNode(ASSIGNMENT, node));
+        }
+
+        @Override
+        public Void visit(ASTBranch node) {
+            writeChildren(node.getConditions());
+            writeChildren(node.getBlocks());
+            return thenWrite(() -> {
+                writeNode(BRANCH, node);
+                writeInt(node.getConditions().size());
+                writeInt(node.getBlocks().size());
+            });
+        }
+
+        @Override
+        public Void visit(ASTWhileLoop node) {
+            writeChild(node.getCondition());
+            writeChild(node.getBlock());
+            return thenWrite(() -> writeNode(WHILE_LOOP, node));
+        }
+
+        @Override
+        public Void visit(ASTForLoop node) {
+            writeChild(node.getVariable());
+            writeChild(node.getFrom());
+            writeChild(node.getTo());
+            writeChild(node.getBlock());
+            return thenWrite(() -> writeNode(FOR_LOOP, node));
+        }
+
+        @Override
+        public Void visit(ASTProcCall node) {
+            // the procedure call has no position of its own
+            writeChild(node.getFuncCall());
+            return thenWrite(() -> writeInt(PROC_CALL));
+        }
+
+        @Override
+        public Void visit(ASTFuncReturn node) {
+            writeChild(node.getExpr());
+            return thenWrite(() -> writeNode(FUNC_RETURN, node));
+        }
+
+        @Override
+        public Void visit(ASTLoopBreak node) {
+            writeNode(LOOP_BREAK, node);
+            return null;
+        }
+
+        @Override
+        public Void visit(ASTFuncCall node) {
+            writeChildren(node.getArgs());
+            return thenWrite(() -> {
+                writeNode(FUNC_CALL, node);
+                writeIdentifier(node.getFunction());
+                writeInt(node.getArgs().size());
+            });
+        }
+
+        @Override
+        public Void visit(ASTVariable node) {
+            writeNode(VARIABLE, node);
+            writeIdentifier(node.getName());
+            node.getType().accept(this);
+            return null;
+        }
+
+        @Override
+        public <CT> Void visit(ASTConstant<CT> node) {
+            Object value = node.getValue();
+            if (value instanceof Integer) {
+                writeNode(INT_CONSTANT, node);
+                writeInt((Integer) value);
+            }
+            else if (value instanceof Float) {
+                writeNode(FLOAT_CONSTANT, node);
+                writeInt(Float.floatToRawIntBits((Float) value));
+            }
+            else if (value instanceof Boolean) {
+                writeNode(BOOL_CONSTANT, node);
+                writeInt(((Boolean) value) ? 1 : 0);
+            }
+            else {
+                throw new IllegalArgumentException("Unknown constant " + value + '.');
+            }
+            return null;
+        }
+
+        // types are written within their nodes (they are only nested in function and variant types)
+
+        @Override
+        public Void visit(BasicType type) {
+            writeInt(BASIC_TYPE);
+            writeIdentifier(type.getName());
+            return null;
+        }
+
+        @Override
+        public Void visit(FuncType type) {
+            writeInt(FUNC_TYPE);
+            writeInt(type.getParameterTypes().size());
+            type.getParameterTypes().forEach(parameterType -> parameterType.accept(this));
+            type.getReturnType().accept(this);
+            return null;
+        }
+
+        @Override
+        public Void visit(UnknownType type) {
+            writeInt(UNKNOWN_TYPE);
+            return null;
+        }
+
+        @Override
+        public Void visit(VariantType type) {
+            writeInt(VARIANT_TYPE);
+            writeInt(type.getVariants().size());
+            type.getVariants().forEach(variant -> variant.accept(this));
+            return null;
+        }
+    }
+
+    /**
+     * Reads the nodes in post-order: every node pops its children from the stack and pushes itself.
+     */
+    private static final class SnapshotReader {
+        private final ByteBuffer buffer;
+        private final String[] identifiers;
+        private final Deque<ASTNode> nodes;
+
+        private SnapshotReader(ByteBuffer buffer, String[] identifiers) {
+            this.buffer = buffer;
+            this.identifiers = identifiers;
+            nodes = new ArrayDeque<>();
+        }
+
+        private int readInt() throws IOException {
+            return readVarInt(buffer);
+        }
+
+        private String readIdentifier() throws IOException {
+            return identifiers[readInt()];
+        }
+
+        private SourcePosition readPosition() throws IOException {
+            int line = readInt();
+            return new SourcePosition(line, readInt());
+        }
+
+        private <T extends ASTNode> T pop(Class<T> nodeClass) throws IOException {
+            ASTNode node = nodes.poll();
+            if (!nodeClass.isInstance(node)) {
+                throw new IOException("Unexpected node " + node + " in the AST snapshot.");
+            }
+            return nodeClass.cast(node);
+        }
+
+        /**
+         * Pops the given number of nodes, which have been pushed in order.
+         */
+        private <T extends ASTNode> List<T> popAll(Class<T> nodeClass, int count) throws IOException {
+            if ((count < 0) || (count > nodes.size())) {
+                throw new IOException("Invalid number of nodes " + count + " in the AST snapshot.");
+            }
+            List<T> popped = new ArrayList<>(Collections.nCopies(count, null));
+            for (int i = count - 1; i >= 0; i--) {
+                popped.set(i, pop(nodeClass));
+            }
+            return popped;
+        }
+
+        ASTCompileUnit readCompileUnit() throws IOException {
+            while (true) {
+                int kind = readInt();
+                if (kind == PROC_CALL) {
+                    nodes.push(new ASTProcCall(pop(ASTFuncCall.class)));
+                    continue;
+                }
+                SourcePosition sourcePos = readPosition();
+                if (kind == COMPILE_UNIT) {
+                    int funcDefCount = readInt();
+                    ASTScript script = pop(ASTScript.class);
+                    List<ASTFuncDef> funcDefs = popAll(ASTFuncDef.class, funcDefCount);
+                    if (!nodes.isEmpty()) {
+                        throw new IOException("The AST snapshot has nodes outside of the compile unit.");
+                    }
+                    return new ASTCompileUnit(sourcePos, funcDefs, script);
+                }
+                nodes.push(readNode(kind, sourcePos));
+            }
+        }
+
+        /**
+         * Reads a node whose kind and source position have already been read.
+         *
+         * @noinspection OverlyComplexMethod, OverlyLongMethod
+         */
+        private ASTNode readNode(int kind, SourcePosition sourcePos) throws IOException {
+            switch (kind) {
+                case FUNC_DEF: {
+                    String name = readIdentifier();
+                    int parameterCount = readInt();
+                    MyunType returnType = readType();
+                    ASTBlock block = pop(ASTBlock.class);
+                    List<ASTVariable> parameters = popAll(ASTVariable.class, parameterCount);
+                    return new ASTFuncDef(sourcePos, name, parameters, returnType, block);
+                }
+                case SCRIPT:
+                    return new ASTScript(sourcePos, readIdentifier(), pop(ASTBlock.class));
+                case BLOCK: {
+                    int statementCount = readInt();
+                    int ending = readInt();
+                    ASTFuncReturn funcReturn = null;
+                    ASTLoopBreak loopBreak = null;
+                    if (ending == RETURN_ENDING) {
+                        funcReturn = pop(ASTFuncReturn.class);
+                    }
+                    else if (ending == BREAK_ENDING) {
+                        loopBreak = pop(ASTLoopBreak.class);
+                    }
+                    else if (ending != NO_ENDING) {
+                        throw new IOException("Unknown block ending " + ending + " in the AST snapshot.");
+                    }
+                    List<ASTStatement> statements = popAll(ASTStatement.class, statementCount);
+                    return new ASTBlock(sourcePos, statements, funcReturn, loopBreak);
+                }
+                case FUNC_RETURN:
+                    return new ASTFuncReturn(sourcePos, pop(ASTExpression.class));
+                case LOOP_BREAK:
+                    return new ASTLoopBreak(sourcePos);
+                case DECLARATION: {
+                    ASTExpression expr = pop(ASTExpression.class);
+                    return new ASTDeclaration(sourcePos, pop(ASTVariable.class), expr);
+                }
+                case ASSIGNMENT: {
+                    ASTExpression expr = pop(ASTExpression.class);
+                    return new ASTAssignment(sourcePos, pop(ASTVariable.class), expr);
+                }
+                case BRANCH: {
+                    int conditionCount = readInt();
+                    int blockCount = readInt();
+                    List<ASTBlock> blocks = popAll(ASTBlock.class, blockCount);
+                    List<ASTExpression> conditions = popAll(ASTExpression.class, conditionCount);
+                    return new ASTBranch(sourcePos, conditions, blocks);
+                }
+                case WHILE_LOOP: {
+                    ASTBlock block = pop(ASTBlock.class);
+                    return new ASTWhileLoop(sourcePos, pop(ASTExpression.class), block);
+                }
+                case FOR_LOOP: {
+                    ASTBlock block = pop(ASTBlock.class);
+                    ASTExpression to = pop(ASTExpression.class);
+                    ASTExpression from = pop(ASTExpression.class);
+                    return new ASTForLoop(sourcePos, pop(ASTVariable.class), from, to, block);
+                }
+                case FUNC_CALL: {
+                    String function = readIdentifier();
+                    List<ASTExpression> args = popAll(ASTExpression.class, readInt());
+                    return new ASTFuncCall(sourcePos, function, args);
+                }
+                case VARIABLE: {
+                    ASTVariable variable = new ASTVariable(sourcePos, readIdentifier());
+                    variable.setType(readType());
+                    return variable;
+                }
+                case INT_CONSTANT:
+                    return new ASTConstant<>(sourcePos, readInt());
+                case FLOAT_CONSTANT:
+                    return new ASTConstant<>(sourcePos, Float.intBitsToFloat(readInt()));
+                case BOOL_CONSTANT:
+                    return new ASTConstant<>(sourcePos, readInt() != 0);
+                default:
+                    throw new IOException("Unknown node kind " + kind + " in the AST snapshot.");
+            }
+        }
+
+        private MyunType readType() throws IOException {
+            int kind = readInt();
+            switch (kind) {
+                case UNKNOWN_TYPE:
+                    return new UnknownType();
+                case BASIC_TYPE:
+                    return new BasicType(readIdentifier());
+                case FUNC_TYPE: {
+                    int parameterCount = readInt();
+                    List<MyunType> parameterTypes = new ArrayList<>(parameterCount);
+                    for (int i = 0; i < parameterCount; i++) {
+                        parameterTypes.add(readType());
+                    }
+                    return new FuncType(parameterTypes, readType());
+                }
+                case VARIANT_TYPE: {
+                    int variantCount = readInt();
+                    List<MyunType> variants = new ArrayList<>(variantCount);
+                    for (int i = 0; i < variantCount; i++) {
+                        variants.add(readType());
+                    }
+                    return new VariantType(variants);
+                }
+                default:
+                    throw new IOException("Unknown type kind " + kind + " in the AST snapshot.");
+            }
+        }
+    }
+}
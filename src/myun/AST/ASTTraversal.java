@@ -0,0 +1,81 @@
+package myun.AST;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Runs the traversal of an AST visitor with an explicit stack instead of the call stack, so that deeply nested code
+ * (e.g. generated expressions with thousands of operators or thousands of nested branches) cannot overflow the call
+ * stack.
+ * <p>
+ * A visit method does not visit the children of its node directly, but schedules them as steps with
+ * {@link #then(Runnable)}, together with the work that has to be done between and after them. The steps scheduled by
+ * a step run right after it in the order they were scheduled, and each of them (including the steps it schedules
+ * itself) is finished before the next one starts. So the steps run in the same order as the recursive calls would.
+ * </p>
+ * <p>
+ * A step may run a nested traversal with {@link #run(Runnable)}, which finishes before the step continues, e.g. to
+ * compute the value of an expression. Values are passed between steps by the visitors themselves, e.g. on a stack.
+ * Visitors that return values can check {@link #isRunning()} to start a traversal when they are called from outside,
+ * but only schedule the children when they are visited as part of a running traversal.
+ * </p>
+ */
+public final class ASTTraversal {
+    private final Deque<Runnable> steps;
+    // the steps scheduled by the currently running step (null if the traversal is not running)
+    private List<Runnable> scheduledSteps;
+
+    public ASTTraversal() {
+        steps = new ArrayDeque<>();
+        scheduledSteps = null;
+    }
+
+    /**
+     * Runs the given step and all steps scheduled by it.
+     * If a step fails, its exception is thrown and the remaining steps of this run are dropped.
+     *
+     * @param step the first step, e.g. visiting the root node
+     */
+    public void run(Runnable step) {
+        int outerSteps = steps.size();
+        List<Runnable> outerScheduledSteps = scheduledSteps;
+        scheduledSteps = new ArrayList<>();
+        steps.push(step);
+        try {
+            while (steps.size() > outerSteps) {
+                steps.pop().run();
+                for (int i = scheduledSteps.size() - 1; i >= 0; i--) {
+                    steps.push(scheduledSteps.get(i));
+                }
+                scheduledSteps.clear();
+            }
+        } finally {
+            while (steps.size() > outerSteps) {
+                steps.pop();
+            }
+            scheduledSteps = outerScheduledSteps;
+        }
+    }
+
+    /**
+     * @return true iff a step of this traversal is running
+     */
+    public boolean isRunning() {
+        return scheduledSteps != null;
+    }
+
+    /**
+     * Schedules a step, which runs after the current step and the steps it has scheduled before.
+     *
+     * @param step the step, e.g. visiting a child node
+     * @throws IllegalStateException thrown when the traversal is not running
+     */
+    public void then(Runnable step) {
+        if (!isRunning()) {
+            throw new IllegalStateException("Steps can only be scheduled while the traversal is running.");
+        }
+        scheduledSteps.add(step);
+    }
+}
@@ -2,10 +2,15 @@ package myun.AST;
 
 /**
  * Represents a variable.
+ * Its name is interned, since variables are looked up by their names in every scope.
+ * When the variable is declared in a scope, it gets the depth of that scope and its slot, i.e. the number of variables
+ * declared in that scope before.
  */
 public class ASTVariable extends ASTExpression {
     private final String name;
     private boolean isAssignable;
+    private int scopeDepth;
+    private int slot;
 
     /**
      * Creates a new AST variable.
@@ -15,8 +20,10 @@ public class ASTVariable extends ASTExpression {
      */
     public ASTVariable(SourcePosition sourcePos, String name) {
         super(sourcePos);
-        this.name = name;
+        this.name = name.intern();
         this.isAssignable = false;
+        scopeDepth = -1;
+        slot = -1;
     }
 
     public String getName() {
@@ -31,6 +38,31 @@ public class ASTVariable extends ASTExpression {
         this.isAssignable = isAssignable;
     }
 
+    /**
+     * @return the depth of the scope that declares this variable (0 for the root scope) or -1 if it is not declared
+     */
+    public int getScopeDepth() {
+        return scopeDepth;
+    }
+
+    /**
+     * @return the index of this variable among the variables of its scope or -1 if it is not declared
+     */
+    public int getSlot() {
+        return slot;
+    }
+
+    /**
+     * Sets the position of this variable in the scope that declares it.
+     *
+     * @param scopeDepth the depth of the scope
+     * @param slot the index of this variable in the scope
+     */
+    public void setSlot(int scopeDepth, int slot) {
+        this.scopeDepth = scopeDepth;
+        this.slot = slot;
+    }
+
     @Override
     public <T> T accept(ASTVisitor<T> visitor) {
         return visitor.visit(this);
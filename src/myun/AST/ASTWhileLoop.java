@@ -24,7 +24,7 @@ public class ASTWhileLoop extends ASTStatement {
         return condition;
     }
 
-    public void setCondition(ASTVariable condition) {
+    public void setCondition(ASTExpression condition) {
         this.condition = condition;
     }
 
@@ -0,0 +1,169 @@
+package myun.AST;
+
+import java.util.*;
+
+/**
+ * Collects all variables that are declared and/or assigned in a block, in the order of their occurrence.
+ */
+public final class DeclarationCollector implements ASTVisitor<Void> {
+    private final ASTTraversal traversal;
+    private List<ASTVariable> declaredVariables;
+    private Set<ASTVariable> collectedVariables;
+    private boolean includeDeclarations;
+    private boolean includeAssignments;
+
+    public DeclarationCollector() {
+        traversal = new ASTTraversal();
+        declaredVariables = new ArrayList<>();
+        collectedVariables = Collections.newSetFromMap(new IdentityHashMap<>());
+        includeDeclarations = true;
+        includeAssignments = false;
+    }
+
+    /**
+     * Collects all declared variables of the given block, including the ones of nested blocks.
+     *
+     * @param block the function or script body
+     * @return the declared variables
+     */
+    public List<ASTVariable> collectDeclarations(ASTBlock block) {
+        declaredVariables = new ArrayList<>();
+        collectedVariables = Collections.newSetFromMap(new IdentityHashMap<>());
+        includeDeclarations = true;
+        includeAssignments = false;
+        traversal.run(() -> block.accept(this));
+        return declaredVariables;
+    }
+
+    /**
+     * Collects all variables that are declared or assigned in the given block, including nested blocks.
+     * Every variable is only contained once.
+     *
+     * @param block the block, e.g. a loop body
+     * @return the declared or assigned variables
+     */
+    public List<ASTVariable> collectAssignedVariables(ASTBlock block) {
+        declaredVariables = new ArrayList<>();
+        collectedVariables = Collections.newSetFromMap(new IdentityHashMap<>());
+        includeDeclarations = true;
+        includeAssignments = true;
+        traversal.run(() -> block.accept(this));
+        return declaredVariables;
+    }
+
+    /**
+     * Collects all variables that are assigned (after their declaration) in the given block, including nested blocks.
+     * Every variable is only contained once.
+     *
+     * @param block the function or script body
+     * @return the assigned variables
+     */
+    public List<ASTVariable> collectReassignedVariables(ASTBlock block) {
+        declaredVariables = new ArrayList<>();
+        collectedVariables = Collections.newSetFromMap(new IdentityHashMap<>());
+        includeDeclarations = false;
+        includeAssignments = true;
+        traversal.run(() -> block.accept(this));
+        return declaredVariables;
+    }
+
+    private Void visitChild(ASTNode child) {
+        traversal.then(() -> child.accept(this));
+        return null;
+    }
+
+    /**
+     * Adds the variable, unless the very same variable object has been added already.
+     * (Variables with the same name in different scopes are different variables.)
+     *
+     * @param variable the variable
+     */
+    private void addVariable(ASTVariable variable) {
+        if (collectedVariables.add(variable)) {
+            declaredVariables.add(variable);
+        }
+    }
+
+    @Override
+    public Void visit(ASTAssignment node) {
+        if (includeAssignments) {
+            addVariable(node.getVariable());
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(ASTBlock node) {
+        node.getStatements().forEach(this::visitChild);
+        return null;
+    }
+
+    @Override
+    public Void visit(ASTBranch node) {
+        node.getBlocks().forEach(this::visitChild);
+        return null;
+    }
+
+    @Override
+    public Void visit(ASTCompileUnit node) {
+        return null;
+    }
+
+    @Override
+    public <CT> Void visit(ASTConstant<CT> node) {
+        return null;
+    }
+
+    @Override
+    public Void visit(ASTDeclaration node) {
+        if (includeDeclarations) {
+            addVariable(node.getVariable());
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(ASTForLoop node) {
+        return visitChild(node.getBlock());
+    }
+
+    @Override
+    public Void visit(ASTFuncCall node) {
+        return null;
+    }
+
+    @Override
+    public Void visit(ASTFuncDef node) {
+        return visitChild(node.getBlock());
+    }
+
+    @Override
+    public Void visit(ASTFuncReturn node) {
+        return null;
+    }
+
+    @Override
+    public Void visit(ASTLoopBreak node) {
+        return null;
+    }
+
+    @Override
+    public Void visit(ASTScript node) {
+        return visitChild(node.getBlock());
+    }
+
+    @Override
+    public Void visit(ASTProcCall node) {
+        return null;
+    }
+
+    @Override
+    public Void visit(ASTVariable node) {
+        return null;
+    }
+
+    @Override
+    public Void visit(ASTWhileLoop node) {
+        return visitChild(node.getBlock());
+    }
+}
@@ -0,0 +1,119 @@
+package myun.AST;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.IntStream;
+import org.antlr.v4.runtime.misc.Interval;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A char stream that reads an ASCII file from a memory-mapped buffer instead of decoding it into an array.
+ */
+final class MappedCharStream implements CharStream {
+    private final ByteBuffer buffer;
+    private final String sourceName;
+    private final int size;
+    private int index;
+
+    private MappedCharStream(ByteBuffer buffer, String sourceName) {
+        this.buffer = buffer;
+        this.sourceName = sourceName;
+        size = buffer.limit();
+        index = 0;
+    }
+
+    /**
+     * Opens a file. Files that are not pure ASCII are decoded as UTF-8 by ANTLR instead, since their characters
+     * do not correspond to bytes.
+     *
+     * @param path the path to the file
+     * @return the char stream
+     * @throws IOException thrown when the file could not be read
+     */
+    static CharStream fromPath(Path path) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        for (int i = 0; i < buffer.limit(); i++) {
+            if (buffer.get(i) < 0) {
+                return CharStreams.fromPath(path, StandardCharsets.UTF_8);
+            }
+        }
+        return new MappedCharStream(buffer, path.toString());
+    }
+
+    @Override
+    public String getText(Interval interval) {
+        int start = Math.max(interval.a, 0);
+        int stop = Math.min(interval.b, size - 1);
+        if (start > stop) {
+            return "";
+        }
+        byte[] bytes = new byte[(stop - start) + 1];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(start + i);
+        }
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+
+    @Override
+    public void consume() {
+        if (index >= size) {
+            throw new IllegalStateException("cannot consume EOF");
+        }
+        index++;
+    }
+
+    @Override
+    public int LA(int i) {
+        if (i == 0) {
+            return 0;
+        }
+        int position = (i > 0) ? ((index + i) - 1) : (index + i);
+        if ((position < 0) || (position >= size)) {
+            return IntStream.EOF;
+        }
+        return buffer.get(position);
+    }
+
+    @Override
+    public int mark() {
+        return -1;
+    }
+
+    @Override
+    public void release(int marker) {
+    }
+
+    @Override
+    public int index() {
+        return index;
+    }
+
+    @Override
+    public void seek(int index) {
+        this.index = Math.min(index, size);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public String getSourceName() {
+        return sourceName;
+    }
+
+    @Override
+    public String toString() {
+        return getText(Interval.of(0, size - 1));
+    }
+}
@@ -4,12 +4,18 @@ import myun.type.*;
 
 /**
  * Prints the AST in a readable format.
+ * The nodes are printed with an explicit stack into a single string builder, so that deeply nested code can be
+ * printed as well. Visiting a node from outside returns its printed code.
  */
 public class MyunPrettyPrinter implements ASTVisitor<String>, TypeVisitor<String> {
+    private final ASTTraversal traversal;
+    private StringBuilder sb;
     private int indentLevel;
     private boolean printTypes;
 
     public MyunPrettyPrinter() {
+        traversal = new ASTTraversal();
+        sb = new StringBuilder();
         init();
         printTypes = false;
     }
@@ -35,26 +41,66 @@ public class MyunPrettyPrinter implements ASTVisitor<String>, TypeVisitor<String
         return node.accept(this);
     }
 
+    /**
+     * Prints a node: if the node is visited from outside, the scheduled steps are run and the printed code is
+     * returned, otherwise the steps are part of the running traversal and write to its string builder.
+     *
+     * @param printNode schedules the steps that print the node
+     * @return the printed code or null if the traversal is already running
+     */
+    private String print(Runnable printNode) {
+        if (traversal.isRunning()) {
+            printNode.run();
+            return null;
+        }
+
+        StringBuilder outerBuilder = sb;
+        sb = new StringBuilder();
+        try {
+            traversal.run(printNode);
+            return sb.toString();
+        } finally {
+            sb = outerBuilder;
+        }
+    }
+
+    private void print(ASTNode node) {
+        traversal.then(() -> node.accept(this));
+    }
+
+    private void print(CharSequence text) {
+        traversal.then(() -> sb.append(text));
+    }
+
     /**
      * Adds tabs to the current prettyPrint to keep the current indent level.
      */
-    private void indent(StringBuilder sb) {
-        for (int i = 0; i < indentLevel; i++) {
-            sb.append('\t');
+    private void indent() {
+        traversal.then(() -> {
+            for (int i = 0; i < indentLevel; i++) {
+                sb.append('\t');
+            }
+        });
+    }
+
+    /**
+     * Prints the type of an expression if types are printed.
+     */
+    private void printType(MyunType type) {
+        if (printTypes) {
+            print("::" + type.accept(this));
         }
     }
 
     @Override
     public String visit(ASTAssignment node) {
-        StringBuilder sb = new StringBuilder();
-        indent(sb);
-
-        sb.append(node.getVariable().accept(this));
-        sb.append(" = ");
-        sb.append(node.getExpr().accept(this));
-        sb.append('\n');
-
-        return sb.toString();
+        return print(() -> {
+            indent();
+            print(node.getVariable());
+            print(" = ");
+            print(node.getExpr());
+            print("\n");
+        });
     }
 
     @Override
@@ -64,138 +110,138 @@ public class MyunPrettyPrinter implements ASTVisitor<String>, TypeVisitor<String
 
     @Override
     public String visit(ASTBlock node) {
-        indentLevel++;
-        StringBuilder sb = new StringBuilder();
-        node.getStatements().forEach(stmt -> sb.append(stmt.accept(this)));
-        node.getFuncReturn().ifPresent(fR -> sb.append(fR.accept(this)));
-        node.getLoopBreak().ifPresent(lB -> sb.append(lB.accept(this)));
-        indentLevel--;
-        return sb.toString();
+        return print(() -> {
+            traversal.then(() -> indentLevel++);
+            node.getStatements().forEach(this::print);
+            node.getFuncReturn().ifPresent(this::print);
+            node.getLoopBreak().ifPresent(this::print);
+            traversal.then(() -> indentLevel--);
+        });
     }
 
     @Override
     public String visit(ASTBranch node) {
-        StringBuilder sb = new StringBuilder();
-
-        // print the if condition
-        indent(sb);
-        sb.append("if ").append(node.getConditions().get(0).accept(this)).append(" then\n");
-        sb.append(node.getBlocks().get(0).accept(this));
-
-        // print the elseif conditions
-        for (int i = 1; i < node.getConditions().size(); i++) {
-            indent(sb);
-            sb.append("elseif ").append(node.getConditions().get(i).accept(this)).append(" then\n");
-            sb.append(node.getBlocks().get(i).accept(this));
-        }
+        return print(() -> {
+            // print the if condition
+            indent();
+            print("if ");
+            print(node.getConditions().get(0));
+            print(" then\n");
+            print(node.getBlocks().get(0));
+
+            // print the elseif conditions
+            for (int i = 1; i < node.getConditions().size(); i++) {
+                indent();
+                print("elseif ");
+                print(node.getConditions().get(i));
+                print(" then\n");
+                print(node.getBlocks().get(i));
+            }
 
-        // print the else
-        node.getElseBlock().ifPresent(b -> {
-            indent(sb);
-            sb.append("else\n").append(b.accept(this));
+            // print the else
+            node.getElseBlock().ifPresent(b -> {
+                indent();
+                print("else\n");
+                print(b);
+            });
+            indent();
+            print("end\n");
         });
-        indent(sb);
-        sb.append("end\n");
-
-        return sb.toString();
     }
 
     @Override
     public String visit(ASTCompileUnit node) {
-        StringBuilder sb = new StringBuilder();
-        node.getFuncDefs().forEach(funcDef -> sb.append(funcDef.accept(this)).append('\n'));
-        sb.append(node.getScript().accept(this));
-        return sb.toString();
+        return print(() -> {
+            node.getFuncDefs().forEach(funcDef -> {
+                print(funcDef);
+                print("\n");
+            });
+            print(node.getScript());
+        });
     }
 
     @Override
     public <CT> String visit(ASTConstant<CT> node) {
-        String result = node.getValue().toString();
-        if (printTypes) {
-            result += "::" + node.getType().accept(this);
-        }
-        return result;
+        return print(() -> {
+            print(node.getValue().toString());
+            printType(node.getType());
+        });
     }
 
     @Override
     public String visit(ASTDeclaration node) {
-        StringBuilder sb = new StringBuilder();
-        indent(sb);
-
-        sb.append(node.getVariable().accept(this));
-        sb.append(" := ");
-        sb.append(node.getExpr().accept(this));
-        sb.append('\n');
-
-        return sb.toString();
+        return print(() -> {
+            indent();
+            print(node.getVariable());
+            print(" := ");
+            print(node.getExpr());
+            print("\n");
+        });
     }
 
     @Override
     public String visit(ASTForLoop node) {
-        StringBuilder sb = new StringBuilder();
-        indent(sb);
-
-        sb.append("for ").append(node.getVariable().accept(this));
-        sb.append(" from ").append(node.getFrom().accept(this));
-        sb.append(" to ").append(node.getTo().accept(this));
-        sb.append(" do\n").append(node.getBlock().accept(this));
-        indent(sb);
-        sb.append("end\n");
-        return sb.toString();
+        return print(() -> {
+            indent();
+            print("for ");
+            print(node.getVariable());
+            print(" from ");
+            print(node.getFrom());
+            print(" to ");
+            print(node.getTo());
+            print(" do\n");
+            print(node.getBlock());
+            indent();
+            print("end\n");
+        });
     }
 
     @Override
     public String visit(ASTFuncCall node) {
-        StringBuilder sb = new StringBuilder();
-
-        sb.append(node.getFunction()).append('(');
-        for (int i = 0; i < node.getArgs().size(); i++) {
-            ASTExpression expr = node.getArgs().get(i);
-            sb.append(expr.accept(this));
-
-            if (i < (node.getArgs().size() - 1)) {
-                sb.append(", ");
+        return print(() -> {
+            print(node.getFunction() + '(');
+            for (int i = 0; i < node.getArgs().size(); i++) {
+                print(node.getArgs().get(i));
+
+                if (i < (node.getArgs().size() - 1)) {
+                    print(", ");
+                }
             }
-        }
-        sb.append(')');
-        if (printTypes) {
-            sb.append("::").append(node.getType().accept(this));
-        }
-        return sb.toString();
+            print(")");
+            printType(node.getType());
+        });
     }
 
     @Override
     public String visit(ASTFuncDef node) {
-        StringBuilder sb = new StringBuilder();
-
-        indent(sb);
-        sb.append(node.getName()).append('(');
-        for (int i = 0; i < node.getParameters().size(); i++) {
-            ASTExpression expr = node.getParameters().get(i);
-            sb.append(expr.accept(this));
-
-            if (i < (node.getParameters().size() - 1)) {
-                sb.append(", ");
+        return print(() -> {
+            indent();
+            print(node.getName() + '(');
+            for (int i = 0; i < node.getParameters().size(); i++) {
+                print(node.getParameters().get(i));
+
+                if (i < (node.getParameters().size() - 1)) {
+                    print(", ");
+                }
             }
-        }
-        sb.append(')');
+            print(")");
+            printType(node.getReturnType());
 
-        if (printTypes) {
-            sb.append("::").append(node.getReturnType().accept(this));
-        }
-
-        sb.append('\n').append(node.getBlock().accept(this));
-        indent(sb);
-        sb.append("end\n");
-        return sb.toString();
+            print("\n");
+            print(node.getBlock());
+            indent();
+            print("end\n");
+        });
     }
 
     @Override
     public String visit(ASTFuncReturn node) {
-        StringBuilder sb = new StringBuilder();
-        indent(sb);
-        sb.append("return ").append(node.getExpr().accept(this)).append('\n');
-        return sb.toString();
+        return print(() -> {
+            indent();
+            print("return ");
+            print(node.getExpr());
+            print("\n");
+        });
     }
 
     @Override
@@ -240,39 +286,44 @@ public class MyunPrettyPrinter implements ASTVisitor<String>, TypeVisitor<String
 
     @Override
     public String visit(ASTLoopBreak node) {
-        StringBuilder sb = new StringBuilder();
-        indent(sb);
-        sb.append("break\n");
-        return sb.toString();
+        return print(() -> {
+            indent();
+            print("break\n");
+        });
     }
 
     @Override
     public String visit(ASTScript node) {
-        return "script " + node.getName() + '\n' + node.getBlock().accept(this) + "end\n";
+        return print(() -> {
+            print("script " + node.getName() + '\n');
+            print(node.getBlock());
+            print("end\n");
+        });
     }
 
     @Override
     public String visit(ASTProcCall node) {
-        return node.getFuncCall().accept(this);
+        return print(() -> print(node.getFuncCall()));
     }
 
     @Override
     public String visit(ASTVariable node) {
-        String result = node.getName();
-        if (printTypes) {
-            result += "::" + node.getType().accept(this);
-        }
-        return result;
+        return print(() -> {
+            print(node.getName());
+            printType(node.getType());
+        });
     }
 
     @Override
     public String visit(ASTWhileLoop node) {
-        StringBuilder sb = new StringBuilder();
-        indent(sb);
-        sb.append("while ").append(node.getCondition().accept(this));
-        sb.append(" do\n").append(node.getBlock().accept(this));
-        indent(sb);
-        sb.append("end\n");
-        return sb.toString();
+        return print(() -> {
+            indent();
+            print("while ");
+            print(node.getCondition());
+            print(" do\n");
+            print(node.getBlock());
+            indent();
+            print("end\n");
+        });
     }
 }
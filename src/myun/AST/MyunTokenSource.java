@@ -0,0 +1,317 @@
+package myun.AST;
+
+import org.antlr.v4.runtime.*;
+import org.antlr.v4.runtime.misc.Pair;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A hand-written lexer for Myun code, which creates the same tokens as the {@link MyunLexer} generated from Myun.g4.
+ * It does not simulate the ATN of the grammar and does not copy the text of the tokens, which is read from the char
+ * stream when it is needed.
+ * Like the generated lexer, each whitespace character is a token on the hidden channel and comments are skipped.
+ */
+public class MyunTokenSource implements TokenSource {
+    // the types of the literal tokens, e.g. "end" or "<="
+    private static final Map<String, Integer> LITERAL_TYPES = new HashMap<>();
+    // the longest keyword is "elseif"
+    private static final int MAX_KEYWORD_LENGTH = 6;
+    // the keywords and their token types, compared to the buffered identifier
+    private static final char[][] KEYWORDS;
+    private static final int[] KEYWORD_TYPES;
+
+    static {
+        Vocabulary vocabulary = MyunLexer.VOCABULARY;
+        for (int type = 1; type <= vocabulary.getMaxTokenType(); type++) {
+            String literal = vocabulary.getLiteralName(type);
+            if (literal != null) {
+                LITERAL_TYPES.put(literal.substring(1, literal.length() - 1), type);
+            }
+        }
+        String[] keywords = LITERAL_TYPES.keySet().stream().filter(literal -> Character.isLetter(literal.charAt(0))).
+                sorted().toArray(String[]::new);
+        KEYWORDS = new char[keywords.length][];
+        KEYWORD_TYPES = new int[keywords.length];
+        for (int i = 0; i < keywords.length; i++) {
+            KEYWORDS[i] = keywords[i].toCharArray();
+            KEYWORD_TYPES[i] = LITERAL_TYPES.get(keywords[i]);
+        }
+    }
+
+    private static final int LPAREN = LITERAL_TYPES.get("(");
+    private static final int RPAREN = LITERAL_TYPES.get(")");
+    private static final int COMMA = LITERAL_TYPES.get(",");
+    private static final int ASSIGN = LITERAL_TYPES.get("=");
+    private static final int DECLARE = LITERAL_TYPES.get(":=");
+    private static final int TYPE_ANNOTATION = LITERAL_TYPES.get("::");
+    private static final int ARROW = LITERAL_TYPES.get("->");
+
+    private final CharStream input;
+    private final Pair<TokenSource, CharStream> source;
+    private TokenFactory<?> tokenFactory;
+    private final char[] identifier;
+    private int line;
+    private int charPositionInLine;
+
+    /**
+     * Creates a lexer that reads the given char stream from its current index.
+     *
+     * @param input the Myun code
+     */
+    public MyunTokenSource(CharStream input) {
+        this.input = input;
+        source = new Pair<>(this, input);
+        tokenFactory = CommonTokenFactory.DEFAULT;
+        identifier = new char[MAX_KEYWORD_LENGTH];
+        line = 1;
+        charPositionInLine = 0;
+    }
+
+    @Override
+    public Token nextToken() {
+        while (true) {
+            int start = input.index();
+            int startLine = line;
+            int startCharPosition = charPositionInLine;
+            int c = input.LA(1);
+            if (c == IntStream.EOF) {
+                return tokenFactory.create(source, Token.EOF, null, Token.DEFAULT_CHANNEL, start, start - 1,
+                        startLine, startCharPosition);
+            }
+
+            int type;
+            int channel = Token.DEFAULT_CHANNEL;
+            if ((c == ' ') || (c == '\t') || (c == '\r') || (c == '\n')) {
+                consume();
+                type = MyunLexer.WS;
+                channel = Token.HIDDEN_CHANNEL;
+            }
+            else if ((c >= 'a') && (c <= 'z')) {
+                type = lexIdentifier();
+            }
+            else if ((c >= 'A') && (c <= 'Z')) {
+                consumeWhile(MyunTokenSource::isIdentifierPart);
+                type = MyunLexer.TYPE_ID;
+            }
+            else if (isDigit(c)) {
+                type = lexNumber();
+            }
+            else if ((c == '/') && (input.LA(2) == '/')) {
+                consumeWhile(next -> (next != '\r') && (next != '\n'));
+                continue;
+            }
+            else if ((c == '/') && (input.LA(2) == '*') && skipBlockComment()) {
+                continue;
+            }
+            else {
+                type = lexOperator(c, startLine, startCharPosition);
+            }
+            return tokenFactory.create(source, type, null, channel, start, input.index() - 1, startLine,
+                    startCharPosition);
+        }
+    }
+
+    private int lexNumber() {
+        consumeWhile(MyunTokenSource::isDigit);
+        if ((input.LA(1) != '.') || !isDigit(input.LA(2))) {
+            return MyunLexer.NUM_INT;
+        }
+        consume();
+        consumeWhile(MyunTokenSource::isDigit);
+
+        // the exponent only belongs to the number if it is complete
+        int c = input.LA(1);
+        if ((c == 'e') || (c == 'E')) {
+            int digitOffset = ((input.LA(2) == '+') || (input.LA(2) == '-')) ? 3 : 2;
+            if (isDigit(input.LA(digitOffset))) {
+                for (int i = 1; i < digitOffset; i++) {
+                    consume();
+                }
+                consumeWhile(MyunTokenSource::isDigit);
+            }
+        }
+        return MyunLexer.NUM_FLOAT;
+    }
+
+    /**
+     * Skips a block comment if it is closed, otherwise "/" is lexed as an operator (like the generated lexer).
+     *
+     * @return true iff the comment has been skipped
+     */
+    private boolean skipBlockComment() {
+        int offset = 3;
+        while (true) {
+            int c = input.LA(offset);
+            if (c == IntStream.EOF) {
+                return false;
+            }
+            if ((c == '*') && (input.LA(offset + 1) == '/')) {
+                for (int i = 0; i <= offset; i++) {
+                    consume();
+                }
+                return true;
+            }
+            offset++;
+        }
+    }
+
+    /**
+     * Lexes an identifier, which might be a keyword. The first characters are buffered to look up the keywords.
+     */
+    private int lexIdentifier() {
+        int length = 0;
+        int c = input.LA(1);
+        while (isIdentifierPart(c)) {
+            if (length < MAX_KEYWORD_LENGTH) {
+                identifier[length] = (char) c;
+            }
+            length++;
+            consume();
+            c = input.LA(1);
+        }
+        if (length <= MAX_KEYWORD_LENGTH) {
+            for (int i = 0; i < KEYWORDS.length; i++) {
+                if (isBufferedIdentifier(KEYWORDS[i], length)) {
+                    return KEYWORD_TYPES[i];
+                }
+            }
+        }
+        return MyunLexer.ID;
+    }
+
+    private boolean isBufferedIdentifier(char[] keyword, int length) {
+        if (keyword.length != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (keyword[i] != identifier[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** @noinspection OverlyComplexMethod */
+    private int lexOperator(int c, int startLine, int startCharPosition) {
+        // the longest operator wins, e.g. "<=" instead of "<"
+        int next = input.LA(2);
+        int length = 1;
+        int type;
+        switch (c) {
+            case '(':
+                type = LPAREN;
+                break;
+            case ')':
+                type = RPAREN;
+                break;
+            case ',':
+                type = COMMA;
+                break;
+            case '=':
+                type = ASSIGN;
+                break;
+            case '+':
+                type = MyunLexer.OP_ADD;
+                break;
+            case '*':
+                type = MyunLexer.OP_MUL;
+                break;
+            case '/':
+                type = MyunLexer.OP_DIV;
+                break;
+            case '-':
+                type = (next == '>') ? ARROW : MyunLexer.OP_SUB;
+                length = (next == '>') ? 2 : 1;
+                break;
+            case '<':
+                type = (next == '=') ? MyunLexer.OP_LEQ : MyunLexer.OP_LT;
+                length = (next == '=') ? 2 : 1;
+                break;
+            case '>':
+                type = (next == '=') ? MyunLexer.OP_GEQ : MyunLexer.OP_GT;
+                length = (next == '=') ? 2 : 1;
+                break;
+            case ':':
+                if ((next != '=') && (next != ':')) {
+                    throw recognitionError(c, startLine, startCharPosition);
+                }
+                type = (next == '=') ? DECLARE : TYPE_ANNOTATION;
+                length = 2;
+                break;
+            default:
+                throw recognitionError(c, startLine, startCharPosition);
+        }
+        for (int i = 0; i < length; i++) {
+            consume();
+        }
+        return type;
+    }
+
+    private static ParserException recognitionError(int c, int line, int charPositionInLine) {
+        return new ParserException("token recognition error at: '" + new String(Character.toChars(c)) + '\'',
+                new SourcePosition(line, charPositionInLine));
+    }
+
+    private void consume() {
+        if (input.LA(1) == '\n') {
+            line++;
+            charPositionInLine = 0;
+        }
+        else {
+            charPositionInLine++;
+        }
+        input.consume();
+    }
+
+    private void consumeWhile(CharPredicate predicate) {
+        int c = input.LA(1);
+        while ((c != IntStream.EOF) && predicate.test(c)) {
+            consume();
+            c = input.LA(1);
+        }
+    }
+
+    private static boolean isDigit(int c) {
+        return (c >= '0') && (c <= '9');
+    }
+
+    private static boolean isIdentifierPart(int c) {
+        return ((c >= 'a') && (c <= 'z')) || ((c >= 'A') && (c <= 'Z')) || isDigit(c) || (c == '_');
+    }
+
+    @Override
+    public int getLine() {
+        return line;
+    }
+
+    @Override
+    public int getCharPositionInLine() {
+        return charPositionInLine;
+    }
+
+    @Override
+    public CharStream getInputStream() {
+        return input;
+    }
+
+    @Override
+    public String getSourceName() {
+        return input.getSourceName();
+    }
+
+    @Override
+    public void setTokenFactory(TokenFactory<?> factory) {
+        tokenFactory = factory;
+    }
+
+    @Override
+    public TokenFactory<?> getTokenFactory() {
+        return tokenFactory;
+    }
+
+    @FunctionalInterface
+    private interface CharPredicate {
+        boolean test(int c);
+    }
+}
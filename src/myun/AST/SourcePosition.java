@@ -25,6 +25,14 @@ public class SourcePosition {
         this.position = position;
     }
 
+    int getLine() {
+        return line;
+    }
+
+    int getPosition() {
+        return position;
+    }
+
     private boolean isKnownPosition() {
         return (line > 0) && (position >= 0);
     }
@@ -7,16 +7,18 @@ import myun.AST.*;
  * (because the grammar itself allows breaks to be at the end of any block)
  */
 class BreaksOnlyInLoopsConstraint implements Constraint, ASTVisitor<Void> {
+    private final ASTTraversal traversal;
     private int loopDepth;
     
     BreaksOnlyInLoopsConstraint() {
+        traversal = new ASTTraversal();
         loopDepth = 0;
     }
     
     @Override
     public void check(ASTCompileUnit compileUnit) {
         loopDepth = 0;
-        compileUnit.accept(this);
+        traversal.run(() -> compileUnit.accept(this));
     }
     
     @Override
@@ -26,21 +28,21 @@ class BreaksOnlyInLoopsConstraint implements Constraint, ASTVisitor<Void> {
 
     @Override
     public Void visit(ASTBlock node) {
-        node.getStatements().forEach(stmt -> stmt.accept(this));
-        node.getLoopBreak().ifPresent(lB -> lB.accept(this));
+        node.getStatements().forEach(stmt -> traversal.then(() -> stmt.accept(this)));
+        node.getLoopBreak().ifPresent(lB -> traversal.then(() -> lB.accept(this)));
         return null;
     }
 
     @Override
     public Void visit(ASTBranch node) {
-        node.getBlocks().forEach(b -> b.accept(this));
+        node.getBlocks().forEach(b -> traversal.then(() -> b.accept(this)));
         return null;
     }
 
     @Override
     public Void visit(ASTCompileUnit node) {
-        node.getFuncDefs().forEach(fD -> fD.accept(this));
-        node.getScript().accept(this);
+        node.getFuncDefs().forEach(fD -> traversal.then(() -> fD.accept(this)));
+        traversal.then(() -> node.getScript().accept(this));
         return null;
     }
 
@@ -57,8 +59,8 @@ class BreaksOnlyInLoopsConstraint implements Constraint, ASTVisitor<Void> {
     @Override
     public Void visit(ASTForLoop node) {
         loopDepth++;
-        node.getBlock().accept(this);
-        loopDepth--;
+        traversal.then(() -> node.getBlock().accept(this));
+        traversal.then(() -> loopDepth--);
         return null;
     }
 
@@ -69,7 +71,7 @@ class BreaksOnlyInLoopsConstraint implements Constraint, ASTVisitor<Void> {
 
     @Override
     public Void visit(ASTFuncDef node) {
-        node.getBlock().accept(this);
+        traversal.then(() -> node.getBlock().accept(this));
         return null;
     }
 
@@ -88,7 +90,7 @@ class BreaksOnlyInLoopsConstraint implements Constraint, ASTVisitor<Void> {
 
     @Override
     public Void visit(ASTScript node) {
-        node.getBlock().accept(this);
+        traversal.then(() -> node.getBlock().accept(this));
         return null;
     }
 
@@ -105,8 +107,8 @@ class BreaksOnlyInLoopsConstraint implements Constraint, ASTVisitor<Void> {
     @Override
     public Void visit(ASTWhileLoop node) {
         loopDepth++;
-        node.getBlock().accept(this);
-        loopDepth--;
+        traversal.then(() -> node.getBlock().accept(this));
+        traversal.then(() -> loopDepth--);
         return null;
     }
 }
@@ -2,105 +2,144 @@ package myun.AST.constraints;
 
 import myun.AST.*;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
+
 /**
  * Checks whether each program flow in a function has a return statement.
+ * Every visited node pushes whether its execution always ends with a return.
  */
-class FunctionHasReturnConstraint implements Constraint, ASTVisitor<Boolean> {
+class FunctionHasReturnConstraint implements Constraint, ASTVisitor<Void> {
+    private final ASTTraversal traversal;
+    private final Deque<Boolean> alwaysReturns;
+
+    FunctionHasReturnConstraint() {
+        traversal = new ASTTraversal();
+        alwaysReturns = new ArrayDeque<>();
+    }
 
     @Override
     public void check(ASTCompileUnit compileUnit) {
-        compileUnit.accept(this);
+        alwaysReturns.clear();
+        traversal.run(() -> compileUnit.accept(this));
+    }
+
+    /**
+     * Visits the given nodes and then pushes whether all of them (or any of them) always return.
+     */
+    private void visitAll(Iterable<? extends ASTNode> nodes, boolean all) {
+        int count = 0;
+        for (ASTNode node : nodes) {
+            traversal.then(() -> node.accept(this));
+            count++;
+        }
+        int resultCount = count;
+        traversal.then(() -> {
+            boolean result = all;
+            for (int i = 0; i < resultCount; i++) {
+                result = all ? (alwaysReturns.pop() && result) : (alwaysReturns.pop() || result);
+            }
+            alwaysReturns.push(result);
+        });
+    }
+
+    private Void push(boolean returns) {
+        alwaysReturns.push(returns);
+        return null;
     }
 
     @Override
-    public Boolean visit(ASTAssignment node) {
-        return false;
+    public Void visit(ASTAssignment node) {
+        return push(false);
     }
 
     @Override
-    public Boolean visit(ASTBlock node) {
+    public Void visit(ASTBlock node) {
         // if the block has a return statement at the end
         // we do not need to check the rest of the block any more
         if (node.getFuncReturn().isPresent()) {
-            return true;
+            return push(true);
         }
         // if there is no return statement at the end
-        // we need to traverse the statements from end to start and check for return statements
-        else {
-            for (int i = node.getStatements().size() - 1; i >= 0; i--) {
-                if (node.getStatements().get(i).accept(this)) {
-                    return true;
-                }
-            }
-            return false;
-        }
+        // one of the statements (i.e. a branch) has to return
+        visitAll(node.getStatements(), false);
+        return null;
     }
 
     @Override
-    public Boolean visit(ASTBranch node) {
-        return node.getElseBlock().isPresent() && node.getBlocks().stream().allMatch(block -> block.accept(this));
+    public Void visit(ASTBranch node) {
+        if (!node.getElseBlock().isPresent()) {
+            return push(false);
+        }
+        visitAll(node.getBlocks(), true);
+        return null;
     }
 
     @Override
-    public Boolean visit(ASTCompileUnit node) {
-        return node.getFuncDefs().stream().allMatch(funcDef -> funcDef.accept(this));
+    public Void visit(ASTCompileUnit node) {
+        visitAll(node.getFuncDefs(), true);
+        return null;
     }
 
     @Override
-    public <CT> Boolean visit(ASTConstant<CT> node) {
-        return false;
+    public <CT> Void visit(ASTConstant<CT> node) {
+        return push(false);
     }
 
     @Override
-    public Boolean visit(ASTDeclaration node) {
-        return false;
+    public Void visit(ASTDeclaration node) {
+        return push(false);
     }
 
     @Override
-    public Boolean visit(ASTForLoop node) {
-        return false;
+    public Void visit(ASTForLoop node) {
+        return push(false);
     }
 
     @Override
-    public Boolean visit(ASTFuncCall node) {
-        return false;
+    public Void visit(ASTFuncCall node) {
+        return push(false);
     }
 
     @Override
-    public Boolean visit(ASTFuncDef node) {
-        if (!node.getBlock().accept(this)) {
-            throw new ReturnMissingException(node);
-        }
-        return true;
+    public Void visit(ASTFuncDef node) {
+        traversal.then(() -> node.getBlock().accept(this));
+        traversal.then(() -> {
+            if (!alwaysReturns.pop()) {
+                throw new ReturnMissingException(node);
+            }
+            alwaysReturns.push(true);
+        });
+        return null;
     }
 
     @Override
-    public Boolean visit(ASTFuncReturn node) {
-        return true;
+    public Void visit(ASTFuncReturn node) {
+        return push(true);
     }
 
     @Override
-    public Boolean visit(ASTLoopBreak node) {
-        return false;
+    public Void visit(ASTLoopBreak node) {
+        return push(false);
     }
 
     @Override
-    public Boolean visit(ASTScript node) {
-        return false;
+    public Void visit(ASTScript node) {
+        return push(false);
     }
 
     @Override
-    public Boolean visit(ASTProcCall node) {
-        return false;
+    public Void visit(ASTProcCall node) {
+        return push(false);
     }
 
     @Override
-    public Boolean visit(ASTVariable node) {
-        return false;
+    public Void visit(ASTVariable node) {
+        return push(false);
     }
 
     @Override
-    public Boolean visit(ASTWhileLoop node) {
-        return false;
+    public Void visit(ASTWhileLoop node) {
+        return push(false);
     }
 }
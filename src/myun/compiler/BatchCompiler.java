@@ -0,0 +1,272 @@
+package myun.compiler;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Compiles many myun files in one JVM.
+ * The front end of the compiler runs on a work-stealing pool, while the external llc/gcc processes of the files
+ * that have already been translated run with a bounded concurrency, so that they overlap with the front end of the
+ * other files.
+ * @noinspection UseOfSystemOutOrSystemErr
+ */
+public final class BatchCompiler {
+    private static final String MYUN_EXTENSION = ".myun";
+    private static final String JOBS_ARGUMENT = "-jobs=";
+    private static final String PROCESSES_ARGUMENT = "-processes=";
+    private static final String LLVM_COMPILER_ARGUMENT = "-llc=";
+    private static final String ASSEMBLY_COMPILER_ARGUMENT = "-gcc=";
+    private static final String OPT_LEVEL_ARGUMENT = "-O";
+
+    private final MyunCompiler compiler;
+    private final int frontEndThreads;
+    private final int maxProcesses;
+
+    /**
+     * Creates a batch compiler.
+     *
+     * @param compiler the compiler that is used for every file
+     * @param frontEndThreads the number of threads that run the front end
+     * @param maxProcesses the maximum number of files whose external compilers run at the same time
+     */
+    public BatchCompiler(MyunCompiler compiler, int frontEndThreads, int maxProcesses) {
+        if ((frontEndThreads < 1) || (maxProcesses < 1)) {
+            throw new IllegalArgumentException("The batch compiler needs at least one thread and one process.");
+        }
+        this.compiler = compiler;
+        this.frontEndThreads = frontEndThreads;
+        this.maxProcesses = maxProcesses;
+    }
+
+    /**
+     * Creates a batch compiler that uses all available processors.
+     *
+     * @param compiler the compiler that is used for every file
+     */
+    public BatchCompiler(MyunCompiler compiler) {
+        this(compiler, Runtime.getRuntime().availableProcessors(), Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Collects the myun files to compile.
+     * Directories are searched recursively for files ending with .myun, files are taken as they are.
+     *
+     * @param paths paths to files or directories
+     * @return the input files (the files of each directory in sorted order)
+     * @throws IOException thrown when a directory could not be read
+     */
+    public static List<String> collectInputFiles(List<String> paths) throws IOException {
+        List<String> inputFiles = new ArrayList<>();
+        for (String path : paths) {
+            Path filePath = Paths.get(path);
+            if (!Files.isDirectory(filePath)) {
+                inputFiles.add(path);
+                continue;
+            }
+            try (Stream<Path> files = Files.walk(filePath)) {
+                inputFiles.addAll(files.filter(Files::isRegularFile).map(Path::toString).
+                        filter(file -> file.endsWith(MYUN_EXTENSION)).sorted().collect(Collectors.toList()));
+            }
+        }
+        return inputFiles;
+    }
+
+    /**
+     * Compiles all given files. The compilation of a file does not stop if another one fails.
+     *
+     * @param inputFiles the paths to the input files
+     * @return the results in the order of the input files
+     * @throws InterruptedException thrown when the batch is interrupted
+     */
+    public List<Result> compile(List<String> inputFiles) throws InterruptedException {
+        ForkJoinPool frontEndPool = new ForkJoinPool(frontEndThreads);
+        ExecutorService processPool = Executors.newFixedThreadPool(maxProcesses);
+        try {
+            List<CompletableFuture<Result>> results = new ArrayList<>();
+            for (String inputFile : inputFiles) {
+                CompilationTimer timer = new CompilationTimer(inputFile);
+                CompletableFuture<Result> result = CompletableFuture.
+                        supplyAsync(() -> translate(inputFile, timer), frontEndPool).
+                        thenApplyAsync(translatedFile -> link(inputFile, translatedFile, timer), processPool).
+                        exceptionally(e -> Result.failure(inputFile,
+                                (e instanceof CompletionException) ? e.getCause() : e, timer));
+                results.add(result);
+            }
+
+            List<Result> finishedResults = new ArrayList<>();
+            for (CompletableFuture<Result> result : results) {
+                try {
+                    finishedResults.add(result.get());
+                } catch (ExecutionException e) {
+                    // cannot happen, failures are turned into results
+                    throw new IllegalStateException(e.getCause());
+                }
+            }
+            return finishedResults;
+        } finally {
+            frontEndPool.shutdown();
+            processPool.shutdown();
+        }
+    }
+
+    private MyunCompiler.TranslatedFile translate(String inputFile, CompilationTimer timer) {
+        try {
+            return compiler.translateFile(inputFile, timer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Result link(String inputFile, MyunCompiler.TranslatedFile translatedFile, CompilationTimer timer) {
+        String outputFile;
+        try {
+            outputFile = compiler.compileTranslatedFile(translatedFile, timer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("The compilation of " + inputFile + " was interrupted.");
+        }
+        compiler.reportTimings(timer);
+        return Result.success(inputFile, outputFile, timer);
+    }
+
+    /**
+     * Compiles all files given as command line arguments.
+     * Arguments: [-jobs=n] [-processes=n] [-llc=command] [-gcc=command] [-On] [compiler flags] file/directory...
+     *
+     * @param args the command line arguments
+     */
+    public static void main(String... args) throws IOException, InterruptedException {
+        int processors = Runtime.getRuntime().availableProcessors();
+        int frontEndThreads = processors;
+        int maxProcesses = processors;
+        String llvmCompiler = MyunCompiler.DEFAULT_LLVM_COMPILER;
+        String assemblyCompiler = MyunCompiler.DEFAULT_ASSEMBLY_COMPILER;
+        int optimizationLevel = MyunCompiler.DEFAULT_OPT_LEVEL;
+        List<String> flagArguments = new ArrayList<>();
+        List<String> paths = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith(JOBS_ARGUMENT)) {
+                frontEndThreads = Integer.parseInt(arg.substring(JOBS_ARGUMENT.length()));
+            }
+            else if (arg.startsWith(PROCESSES_ARGUMENT)) {
+                maxProcesses = Integer.parseInt(arg.substring(PROCESSES_ARGUMENT.length()));
+            }
+            else if (arg.startsWith(LLVM_COMPILER_ARGUMENT)) {
+                llvmCompiler = arg.substring(LLVM_COMPILER_ARGUMENT.length());
+            }
+            else if (arg.startsWith(ASSEMBLY_COMPILER_ARGUMENT)) {
+                assemblyCompiler = arg.substring(ASSEMBLY_COMPILER_ARGUMENT.length());
+            }
+            else if (arg.matches(OPT_LEVEL_ARGUMENT + "[0-9]+")) {
+                optimizationLevel = Integer.parseInt(arg.substring(OPT_LEVEL_ARGUMENT.length()));
+            }
+            else if (arg.startsWith("-")) {
+                flagArguments.add(arg);
+            }
+            else {
+                paths.add(arg);
+            }
+        }
+
+        List<String> inputFiles = collectInputFiles(paths);
+        if (inputFiles.isEmpty()) {
+            System.out.println("Missing input files.");
+            System.exit(1);
+        }
+
+        MyunCompiler compiler;
+        try {
+            compiler = MyunCompiler.fromArguments(llvmCompiler, assemblyCompiler, optimizationLevel, flagArguments);
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            System.exit(1);
+            return;
+        }
+
+        List<Result> results = new BatchCompiler(compiler, frontEndThreads, maxProcesses).compile(inputFiles);
+        long failures = 0;
+        for (Result result : results) {
+            System.out.println(result);
+            if (!result.isSuccessful()) {
+                failures++;
+            }
+        }
+        System.out.println((results.size() - failures) + " of " + results.size() + " files compiled successfully.");
+        compiler.getCache().ifPresent(cache -> System.out.println(cache.getStatistics()));
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * The result of the compilation of one file of the batch.
+     */
+    public static final class Result {
+        private final String inputFile;
+        private final String outputFile;
+        private final Throwable error;
+        private final CompilationTimer timer;
+
+        private Result(String inputFile, String outputFile, Throwable error, CompilationTimer timer) {
+            this.inputFile = inputFile;
+            this.outputFile = outputFile;
+            this.error = error;
+            this.timer = timer;
+        }
+
+        static Result success(String inputFile, String outputFile, CompilationTimer timer) {
+            return new Result(inputFile, outputFile, null, timer);
+        }
+
+        static Result failure(String inputFile, Throwable error, CompilationTimer timer) {
+            return new Result(inputFile, null, error, timer);
+        }
+
+        public String getInputFile() {
+            return inputFile;
+        }
+
+        public boolean isSuccessful() {
+            return error == null;
+        }
+
+        /**
+         * @return the path to the executable or empty if the compilation failed
+         */
+        public Optional<String> getOutputFile() {
+            return Optional.ofNullable(outputFile);
+        }
+
+        /**
+         * @return the reason why the compilation failed or empty if it was successful
+         */
+        public Optional<Throwable> getError() {
+            return Optional.ofNullable(error);
+        }
+
+        /**
+         * @return the timings of the phases that were finished
+         */
+        public CompilationTimer getTimer() {
+            return timer;
+        }
+
+        @Override
+        public String toString() {
+            if (isSuccessful()) {
+                return "OK     " + inputFile + " -> " + outputFile;
+            }
+            String message = (error.getMessage() != null) ? error.getMessage() : error.getClass().getSimpleName();
+            return "FAILED " + inputFile + ": " + message;
+        }
+    }
+}
@@ -0,0 +1,311 @@
+package myun.compiler;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A content-addressed on-disk cache for the artifacts of a compilation (.ll, .o, and .out files).
+ * The artifacts are stored under the hash of the generated llvm code together with the external compilers and the
+ * optimization level, so a changed source that results in the same llvm code skips the external compilers.
+ * Additionally, the hash of the source code together with the compiler version and configuration points to these
+ * artifacts, so an unchanged source skips the whole compilation.
+ * The size of the cache is bounded, the least recently used artifacts are evicted first.
+ */
+public final class CompilationCache {
+    public static final long DEFAULT_MAX_BYTES = 256L * 1024 * 1024;
+
+    private static final String SOURCE_DIRECTORY = "source";
+    private static final String ARTIFACT_DIRECTORY = "ir";
+    private static final String ARTIFACT_NAME = "program";
+    private static final String[] ARTIFACT_EXTENSIONS = {".ll", ".o", ".out"};
+
+    private final Path directory;
+    private final long maxBytes;
+    private final AtomicLong sourceHits;
+    private final AtomicLong irHits;
+    private final AtomicLong misses;
+
+    /**
+     * Creates a cache in the given directory, which is created if necessary.
+     *
+     * @param directory the cache directory
+     * @param maxBytes the maximum size of all cached artifacts
+     * @throws IOException thrown when the directory could not be created
+     */
+    public CompilationCache(Path directory, long maxBytes) throws IOException {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        Files.createDirectories(directory.resolve(SOURCE_DIRECTORY));
+        Files.createDirectories(directory.resolve(ARTIFACT_DIRECTORY));
+        sourceHits = new AtomicLong();
+        irHits = new AtomicLong();
+        misses = new AtomicLong();
+    }
+
+    /**
+     * @return the default cache directory in the home directory of the user
+     */
+    public static Path getDefaultDirectory() {
+        return Paths.get(System.getProperty("user.home"), ".cache", "myun");
+    }
+
+    /**
+     * Computes a key from the given parts, e.g. the configuration of the compiler and the source code.
+     *
+     * @param parts the parts of the key
+     * @return the hexadecimal SHA-256 hash of the parts
+     */
+    public static String computeKey(byte[]... parts) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported.", e);
+        }
+        for (byte[] part : parts) {
+            // the length separates the parts unambiguously
+            digest.update(Integer.toString(part.length).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) ':');
+            digest.update(part);
+        }
+
+        StringBuilder key = new StringBuilder();
+        for (byte b : digest.digest()) {
+            key.append(String.format("%02x", b));
+        }
+        return key.toString();
+    }
+
+    private Path getSourceEntry(String sourceKey) {
+        return directory.resolve(SOURCE_DIRECTORY).resolve(sourceKey);
+    }
+
+    private Path getArtifactEntry(String irKey) {
+        return directory.resolve(ARTIFACT_DIRECTORY).resolve(irKey);
+    }
+
+    /**
+     * Restores all artifacts of a source whose compilation has been cached.
+     *
+     * @param sourceKey the key of the source and configuration
+     * @param fileName the path of the output files without file extension
+     * @return true iff the artifacts have been restored
+     * @throws IOException thrown when the artifacts could not be copied
+     */
+    public boolean restoreFromSource(String sourceKey, String fileName) throws IOException {
+        Optional<String> irKey = readSourceEntry(sourceKey);
+        if (irKey.isPresent() && restore(irKey.get(), fileName, ARTIFACT_EXTENSIONS)) {
+            sourceHits.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Restores the object file and the executable of cached llvm code, which has already been written.
+     *
+     * @param sourceKey the key of the source and configuration, which will point to the artifacts afterwards
+     * @param irKey the key of the llvm code and the configuration of the external compilers
+     * @param fileName the path of the output files without file extension
+     * @return true iff the artifacts have been restored
+     * @throws IOException thrown when the artifacts could not be copied
+     */
+    public boolean restoreFromIR(String sourceKey, String irKey, String fileName) throws IOException {
+        if (restore(irKey, fileName, ".o", ".out")) {
+            irHits.incrementAndGet();
+            writeSourceEntry(sourceKey, irKey);
+            return true;
+        }
+        misses.incrementAndGet();
+        return false;
+    }
+
+    private Optional<String> readSourceEntry(String sourceKey) throws IOException {
+        try {
+            return Optional.of(new String(Files.readAllBytes(getSourceEntry(sourceKey)), StandardCharsets.UTF_8));
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        }
+    }
+
+    private void writeSourceEntry(String sourceKey, String irKey) throws IOException {
+        Path temporaryFile = Files.createTempFile(directory, "source", ".tmp");
+        Files.write(temporaryFile, irKey.getBytes(StandardCharsets.UTF_8));
+        Files.move(temporaryFile, getSourceEntry(sourceKey), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private boolean restore(String irKey, String fileName, String... extensions) throws IOException {
+        Path entry = getArtifactEntry(irKey);
+        try {
+            for (String extension : extensions) {
+                Files.copy(entry.resolve(ARTIFACT_NAME + extension), Paths.get(fileName + extension),
+                        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+            }
+            // the modification time of an entry is the time of its last use
+            Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+            return true;
+        } catch (NoSuchFileException e) {
+            // the entry has been evicted (maybe concurrently)
+            return false;
+        }
+    }
+
+    /**
+     * Stores the artifacts of a finished compilation and evicts old entries if the cache is too large.
+     *
+     * @param sourceKey the key of the source and configuration
+     * @param irKey the key of the llvm code and the configuration of the external compilers
+     * @param llvmCode the llvm code (which does not have to be written to a file)
+     * @param fileName the path of the output files without file extension
+     * @throws IOException thrown when the artifacts could not be copied
+     */
+    public void store(String sourceKey, String irKey, String llvmCode, String fileName) throws IOException {
+        Path entry = getArtifactEntry(irKey);
+        Path temporaryEntry = Files.createTempDirectory(directory, "entry");
+        Files.write(temporaryEntry.resolve(ARTIFACT_NAME + ".ll"), llvmCode.getBytes(StandardCharsets.UTF_8));
+        for (String extension : new String[]{".o", ".out"}) {
+            Files.copy(Paths.get(fileName + extension), temporaryEntry.resolve(ARTIFACT_NAME + extension),
+                    StandardCopyOption.COPY_ATTRIBUTES);
+        }
+        Files.setLastModifiedTime(temporaryEntry, FileTime.fromMillis(System.currentTimeMillis()));
+        try {
+            Files.move(temporaryEntry, entry, StandardCopyOption.ATOMIC_MOVE);
+        } catch (FileAlreadyExistsException | DirectoryNotEmptyException e) {
+            // another compilation stored the same artifacts in the meantime
+            deleteRecursively(temporaryEntry);
+        }
+        writeSourceEntry(sourceKey, irKey);
+        evict();
+    }
+
+    /**
+     * Removes the least recently used artifacts until the cache is not larger than its maximum size.
+     * Source entries that point to removed artifacts are removed as well.
+     */
+    private synchronized void evict() throws IOException {
+        List<Path> entries;
+        try (Stream<Path> entryStream = Files.list(directory.resolve(ARTIFACT_DIRECTORY))) {
+            entries = entryStream.collect(Collectors.toList());
+        }
+        Map<Path, Long> sizes = new HashMap<>();
+        Map<Path, FileTime> lastUses = new HashMap<>();
+        long totalSize = 0;
+        for (Path entry : entries) {
+            try {
+                long size = 0;
+                for (String extension : ARTIFACT_EXTENSIONS) {
+                    size += Files.size(entry.resolve(ARTIFACT_NAME + extension));
+                }
+                sizes.put(entry, size);
+                lastUses.put(entry, Files.getLastModifiedTime(entry));
+                totalSize += size;
+            } catch (NoSuchFileException e) {
+                // removed concurrently
+                sizes.put(entry, 0L);
+                lastUses.put(entry, FileTime.fromMillis(0));
+            }
+        }
+        if (totalSize <= maxBytes) {
+            return;
+        }
+
+        entries.sort(Comparator.comparing(lastUses::get));
+        Set<String> removedKeys = new HashSet<>();
+        for (Path entry : entries) {
+            if (totalSize <= maxBytes) {
+                break;
+            }
+            deleteRecursively(entry);
+            totalSize -= sizes.get(entry);
+            removedKeys.add(entry.getFileName().toString());
+        }
+
+        try (Stream<Path> sourceEntries = Files.list(directory.resolve(SOURCE_DIRECTORY))) {
+            for (Path sourceEntry : sourceEntries.collect(Collectors.toList())) {
+                Optional<String> irKey = readSourceEntry(sourceEntry.getFileName().toString());
+                if (irKey.isPresent() && removedKeys.contains(irKey.get())) {
+                    Files.deleteIfExists(sourceEntry);
+                }
+            }
+        }
+    }
+
+    private static void deleteRecursively(Path path) throws IOException {
+        try (Stream<Path> files = Files.walk(path)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.deleteIfExists(file);
+            }
+        } catch (NoSuchFileException e) {
+            // already removed
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * @return the hits and misses of this cache object so far
+     */
+    public Statistics getStatistics() {
+        return new Statistics(sourceHits.get(), irHits.get(), misses.get());
+    }
+
+    /**
+     * The hits and misses of a cache.
+     */
+    public static final class Statistics {
+        private final long sourceHits;
+        private final long irHits;
+        private final long misses;
+
+        private Statistics(long sourceHits, long irHits, long misses) {
+            this.sourceHits = sourceHits;
+            this.irHits = irHits;
+            this.misses = misses;
+        }
+
+        /**
+         * @return the number of compilations that were completely skipped
+         */
+        public long getSourceHits() {
+            return sourceHits;
+        }
+
+        /**
+         * @return the number of compilations that skipped the external compilers
+         */
+        public long getIRHits() {
+            return irHits;
+        }
+
+        /**
+         * @return the number of compilations that had to run the external compilers
+         */
+        public long getMisses() {
+            return misses;
+        }
+
+        /**
+         * @return the ratio of compilations that were found in the cache (0 if there were none)
+         */
+        public double getHitRate() {
+            long lookups = sourceHits + irHits + misses;
+            return (lookups == 0) ? 0 : ((sourceHits + irHits) / (double) lookups);
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "Cache: %d source hits, %d IR hits, %d misses (hit rate %.1f%%)",
+                    sourceHits, irHits, misses, 100 * getHitRate());
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package myun.compiler;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Measures the wall time and the bytes allocated by the current thread for each phase of a compilation.
+ * Work that a phase does on other threads (e.g. the parser threads) has to be added with
+ * {@link #addAllocatedBytes(long)}.
+ * The allocated bytes are only available on JVMs that support thread allocation counters (like HotSpot), otherwise
+ * they are reported as -1. They are also unknown for the steps of external processes, which are measured from
+ * another thread.
+ */
+public final class CompilationTimer {
+    private final String fileName;
+    private final List<Phase> phases;
+    private String currentPhase;
+    private long phaseStartTime;
+    private long phaseStartBytes;
+    // the bytes allocated on other threads for the current phase or -1 if they are unknown
+    private long phaseOtherBytes;
+    private int processes;
+
+    /**
+     * Creates a timer for the compilation of the given file.
+     *
+     * @param fileName the compiled file
+     */
+    public CompilationTimer(String fileName) {
+        this.fileName = fileName;
+        phases = new ArrayList<>();
+    }
+
+    /**
+     * Starts measuring a new phase. A phase that is still running is ended first.
+     *
+     * @param name the name of the phase
+     */
+    public void startPhase(String name) {
+        if (currentPhase != null) {
+            endPhase();
+        }
+        currentPhase = name;
+        phaseStartBytes = getAllocatedBytes();
+        phaseOtherBytes = 0;
+        phaseStartTime = System.nanoTime();
+    }
+
+    /**
+     * Ends the current phase.
+     */
+    public void endPhase() {
+        long wallNanos = System.nanoTime() - phaseStartTime;
+        long allocatedBytes = getAllocatedBytes();
+        if ((allocatedBytes >= 0) && (phaseOtherBytes >= 0)) {
+            allocatedBytes += phaseOtherBytes - phaseStartBytes;
+        }
+        else {
+            allocatedBytes = -1;
+        }
+        phases.add(new Phase(currentPhase, wallNanos, allocatedBytes));
+        currentPhase = null;
+    }
+
+    /**
+     * Adds the bytes that were allocated on other threads for the current phase.
+     *
+     * @param allocatedBytes the allocated bytes or -1 if they are unknown, so that the phase reports them as unknown
+     */
+    public void addAllocatedBytes(long allocatedBytes) {
+        phaseOtherBytes = ((phaseOtherBytes < 0) || (allocatedBytes < 0)) ? -1 : (phaseOtherBytes + allocatedBytes);
+    }
+
+    /**
+     * Adds a phase that was measured somewhere else, e.g. on another thread.
+     *
+     * @param name the name of the phase
+     * @param wallNanos the wall time of the phase in nanoseconds
+     * @param allocatedBytes the allocated bytes or -1 if they are unknown
+     */
+    public void addPhase(String name, long wallNanos, long allocatedBytes) {
+        phases.add(new Phase(name, wallNanos, allocatedBytes));
+    }
+
+    /**
+     * Counts an external process (llc or gcc) that has been started for the compilation.
+     */
+    public void countProcess() {
+        processes++;
+    }
+
+    /**
+     * @return the number of external processes that have been started
+     */
+    public int getProcesses() {
+        return processes;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    /**
+     * @return the finished phases in the order they were ended
+     */
+    public List<Phase> getPhases() {
+        return Collections.unmodifiableList(phases);
+    }
+
+    /**
+     * @return the total wall time of all finished phases in nanoseconds
+     */
+    public long getTotalNanos() {
+        return phases.stream().mapToLong(Phase::getWallNanos).sum();
+    }
+
+    /**
+     * @return the bytes allocated by the current thread so far or -1 if this is not supported
+     */
+    public static long getAllocatedBytes() {
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        if (!(threadBean instanceof com.sun.management.ThreadMXBean)) {
+            return -1;
+        }
+        com.sun.management.ThreadMXBean allocationBean = (com.sun.management.ThreadMXBean) threadBean;
+        if (!allocationBean.isThreadAllocatedMemorySupported() || !allocationBean.isThreadAllocatedMemoryEnabled()) {
+            return -1;
+        }
+        return allocationBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Formats the phases as a human-readable table.
+     *
+     * @return the report
+     */
+    public String toText() {
+        StringBuilder report = new StringBuilder();
+        report.append("Timings for ").append(fileName).append(":\n");
+        for (Phase phase : phases) {
+            report.append(String.format(Locale.ROOT, "  %-14s %10.3f ms %12s%n", phase.name,
+                    phase.wallNanos / 1.0e6, formatBytes(phase.allocatedBytes)));
+        }
+        report.append(String.format(Locale.ROOT, "  %-14s %10.3f ms %12s%n", "total", getTotalNanos() / 1.0e6,
+                processes + ((processes == 1) ? " process" : " processes")));
+        return report.toString();
+    }
+
+    private static String formatBytes(long bytes) {
+        if (bytes < 0) {
+            return "n/a";
+        }
+        if (bytes < 1024) {
+            return bytes + " B";
+        }
+        if (bytes < (1024 * 1024)) {
+            return String.format(Locale.ROOT, "%.1f KiB", bytes / 1024.0);
+        }
+        return String.format(Locale.ROOT, "%.1f MiB", bytes / (1024.0 * 1024.0));
+    }
+
+    /**
+     * Formats the phases as a JSON object.
+     *
+     * @return the report
+     */
+    public String toJSON() {
+        StringBuilder report = new StringBuilder();
+        report.append("{\"file\":").append(quote(fileName)).append(",\"phases\":[");
+        for (int i = 0; i < phases.size(); i++) {
+            Phase phase = phases.get(i);
+            if (i > 0) {
+                report.append(',');
+            }
+            report.append("{\"name\":").append(quote(phase.name)).
+                    append(",\"wallNanos\":").append(phase.wallNanos).
+                    append(",\"allocatedBytes\":").append(phase.allocatedBytes).append('}');
+        }
+        report.append("],\"totalNanos\":").append(getTotalNanos()).
+                append(",\"processes\":").append(processes).append('}');
+        return report.toString();
+    }
+
+    private static String quote(String text) {
+        StringBuilder quoted = new StringBuilder("\"");
+        for (char c : text.toCharArray()) {
+            if ((c == '"') || (c == '\\')) {
+                quoted.append('\\').append(c);
+            }
+            else if (c < ' ') {
+                quoted.append(String.format("\\u%04x", (int) c));
+            }
+            else {
+                quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    /**
+     * A measured phase of the compilation.
+     */
+    public static final class Phase {
+        private final String name;
+        private final long wallNanos;
+        private final long allocatedBytes;
+
+        private Phase(String name, long wallNanos, long allocatedBytes) {
+            this.name = name;
+            this.wallNanos = wallNanos;
+            this.allocatedBytes = allocatedBytes;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getWallNanos() {
+            return wallNanos;
+        }
+
+        public long getAllocatedBytes() {
+            return allocatedBytes;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package myun.compiler;
+
+import java.io.*;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Forwards a compile request to a running {@link CompileServer}.
+ * @noinspection UseOfSystemOutOrSystemErr
+ */
+public final class CompileClient {
+    private CompileClient() {
+    }
+
+    /**
+     * Lets the server compile a file.
+     *
+     * @param socketPath the path of the socket file of the server
+     * @param args the command line arguments of {@link MyunCompiler#main(String...)}, the input file should be absolute
+     * @param output where the output of the compiler is printed
+     * @return the exit code of the compilation
+     * @throws IOException thrown when the server could not be reached
+     */
+    public static int compile(Path socketPath, List<String> args, PrintStream output) throws IOException {
+        for (String arg : args) {
+            if (arg.isEmpty() || arg.contains("\n")) {
+                throw new IllegalArgumentException("Arguments must not be empty or contain line breaks.");
+            }
+        }
+
+        try (SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX)) {
+            channel.connect(UnixDomainSocketAddress.of(socketPath));
+            Writer writer = new OutputStreamWriter(Channels.newOutputStream(channel), StandardCharsets.UTF_8);
+            for (String arg : args) {
+                writer.write(arg + '\n');
+            }
+            writer.write('\n');
+            writer.flush();
+
+            // the last line is the exit code, everything before is output of the compiler
+            BufferedReader reader = new BufferedReader(new InputStreamReader(Channels.newInputStream(channel),
+                    StandardCharsets.UTF_8));
+            String previousLine = null;
+            String line = reader.readLine();
+            while (line != null) {
+                if (previousLine != null) {
+                    output.println(previousLine);
+                }
+                previousLine = line;
+                line = reader.readLine();
+            }
+            if (previousLine == null) {
+                throw new IOException("The server closed the connection without a response.");
+            }
+            return Integer.parseInt(previousLine);
+        }
+    }
+
+    /**
+     * Sends a compile request.
+     *
+     * @param args the path of the socket file followed by the command line arguments of
+     *             {@link MyunCompiler#main(String...)}
+     */
+    public static void main(String... args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: <socket path> <input file> [llc gcc optimization level [flags]]");
+            System.exit(1);
+        }
+
+        // the server might run in another directory
+        List<String> compilerArgs = new ArrayList<>(Arrays.asList(args).subList(1, args.length));
+        compilerArgs.set(0, Paths.get(compilerArgs.get(0)).toAbsolutePath().toString());
+        System.exit(compile(Paths.get(args[0]), compilerArgs, System.out));
+    }
+}
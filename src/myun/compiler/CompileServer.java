@@ -0,0 +1,149 @@
+package myun.compiler;
+
+import myun.MyunException;
+
+import java.io.*;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A long-lived compiler process that accepts compile requests on a local Unix domain socket.
+ * Since the JVM keeps running, the classes of the compiler, the DFA caches of the ANTLR parser, and the
+ * {@link myun.scope.MyunCoreScope} are only initialized once and reused by all requests.
+ * <p>
+ * A request consists of the command line arguments of {@link MyunCompiler#main(String...)}, one per line, followed by
+ * an empty line. The response contains the output of the compiler (debug information or timings) and, as the last
+ * line, the exit code of the compilation. Requests are served concurrently.
+ * @noinspection UseOfSystemOutOrSystemErr
+ */
+public final class CompileServer implements Closeable {
+    private final Path socketPath;
+    private final ServerSocketChannel serverChannel;
+    private final ExecutorService requestPool;
+
+    /**
+     * Creates a server listening on the given socket. An existing (stale) socket file is replaced.
+     *
+     * @param socketPath the path of the socket file
+     * @throws IOException thrown when the socket could not be created
+     */
+    public CompileServer(Path socketPath) throws IOException {
+        this.socketPath = socketPath;
+        Files.deleteIfExists(socketPath);
+        serverChannel = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        serverChannel.bind(UnixDomainSocketAddress.of(socketPath));
+        requestPool = Executors.newCachedThreadPool();
+    }
+
+    /**
+     * Accepts requests until the server is closed.
+     *
+     * @throws IOException thrown when a connection could not be accepted
+     */
+    public void serve() throws IOException {
+        while (true) {
+            SocketChannel channel;
+            try {
+                channel = serverChannel.accept();
+            } catch (ClosedChannelException e) {
+                return;
+            }
+            requestPool.execute(() -> handleRequest(channel));
+        }
+    }
+
+    private static void handleRequest(SocketChannel channel) {
+        // closing the streams closes the channel
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(Channels.newInputStream(channel),
+                     StandardCharsets.UTF_8));
+             PrintStream output = new PrintStream(Channels.newOutputStream(channel), true, "utf-8")) {
+            List<String> args = new ArrayList<>();
+            String line = reader.readLine();
+            while ((line != null) && !line.isEmpty()) {
+                args.add(line);
+                line = reader.readLine();
+            }
+            output.println(compile(args, output));
+        } catch (IOException e) {
+            // the client is gone, so there is nobody to report to
+        }
+    }
+
+    /**
+     * Compiles a file with the given command line arguments.
+     *
+     * @param args the command line arguments of {@link MyunCompiler#main(String...)}
+     * @param output where the output of the compiler and errors are printed
+     * @return the exit code
+     */
+    static int compile(List<String> args, PrintStream output) {
+        if (args.isEmpty()) {
+            output.println("Missing input file.");
+            return 1;
+        }
+
+        try {
+            MyunCompiler compiler = MyunCompiler.fromCommandLine(args.subList(1, args.size()));
+            compiler.setOutput(output);
+            compiler.compileFromFile(args.get(0));
+            return 0;
+        } catch (IllegalArgumentException | MyunException | UnsuccessfulCompilationException | IOException e) {
+            output.println(e.getMessage());
+            return 1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            output.println("The compilation was interrupted.");
+            return 1;
+        } catch (RuntimeException e) {
+            // a failure of the compiler itself is reported to the client as well instead of dropping the connection
+            output.println("The compilation failed: " + e);
+            return 1;
+        }
+    }
+
+    /**
+     * Stops accepting requests and removes the socket file. Running requests are finished.
+     *
+     * @throws IOException thrown when the socket could not be closed
+     */
+    @Override
+    public void close() throws IOException {
+        serverChannel.close();
+        requestPool.shutdown();
+        Files.deleteIfExists(socketPath);
+    }
+
+    /**
+     * Starts a server.
+     *
+     * @param args the path of the socket file
+     */
+    public static void main(String... args) throws IOException {
+        if (args.length != 1) {
+            System.out.println("Missing socket path.");
+            System.exit(1);
+        }
+
+        CompileServer server = new CompileServer(Paths.get(args[0]));
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                server.close();
+            } catch (IOException e) {
+                System.err.println("Could not close the server: " + e.getMessage());
+            }
+        }));
+        server.serve();
+    }
+}
@@ -0,0 +1,56 @@
+package myun.compiler;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * Optional flags of the Myun compiler, which can be passed as additional command line arguments.
+ */
+public enum CompilerFlag {
+    // prints the parsed program and the generated llvm code
+    DEBUG("-debug"),
+    // keeps mutable variables in registers (SSA form) instead of stack slots
+    SSA("-ssa"),
+    // moves loop invariant calls out of loops
+    LICM("-licm"),
+    // inlines calls of small functions, the size threshold can be given as "-inline=<nodes>"
+    INLINE("-inline"),
+    // prints the wall time and allocated bytes of each compilation phase
+    TIMINGS("-timings"),
+    // prints the timings as JSON
+    TIMINGS_JSON("-timings-json"),
+    // reuses the artifacts of unchanged files, the directory and size (in MiB) can be given as "-cache=<directory>"
+    // and "-cache-size=<size>"
+    CACHE("-cache"),
+    // writes the generated llvm code to a .ll file next to the source file (also done in debug mode)
+    KEEP_IR("-keep-ir"),
+    // lets llc emit an assembly file (.s), which is assembled separately, instead of an object file
+    EMIT_ASSEMBLY("-emit-asm"),
+    // parses the function definitions of a file concurrently
+    PARALLEL_PARSE("-parallel-parse"),
+    // lexes with the hand-written lexer instead of the one generated by ANTLR
+    FAST_LEXER("-fast-lexer"),
+    // loads the AST of unchanged files from binary snapshots instead of parsing them, the directory can be given as
+    // "-ast-snapshots=<directory>"
+    AST_SNAPSHOTS("-ast-snapshots");
+
+    private final String argument;
+
+    CompilerFlag(String argument) {
+        this.argument = argument;
+    }
+
+    public String getArgument() {
+        return argument;
+    }
+
+    /**
+     * Returns the flag for the given command line argument.
+     *
+     * @param argument the command line argument, e.g. "-debug"
+     * @return the flag or empty if there is none for this argument
+     */
+    public static Optional<CompilerFlag> fromArgument(String argument) {
+        return Arrays.stream(values()).filter(flag -> flag.argument.equals(argument)).findFirst();
+    }
+}
@@ -0,0 +1,186 @@
+package myun.compiler;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An external process of the compile chain, e.g. llc or gcc.
+ * Its standard output and error are read on background threads while it runs, so a process that writes a lot of
+ * diagnostics never blocks on a full pipe. Its exit is observed asynchronously. The process is killed when it exceeds
+ * its timeout or when the future of its result is cancelled.
+ */
+final class ExternalProcess {
+    private static final ExecutorService STREAM_READERS = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "myun-process-output");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final String step;
+    private final Process process;
+    private final CompletableFuture<String> output;
+    private final CompletableFuture<String> errors;
+    private long inputClosedTime;
+
+    private ExternalProcess(String step, Process process) {
+        this.step = step;
+        this.process = process;
+        output = readAsync(process.getInputStream());
+        errors = readAsync(process.getErrorStream());
+        inputClosedTime = System.nanoTime();
+    }
+
+    /**
+     * Starts a process. Its standard input stays open until {@link #writeInput(InputWriter)} is called.
+     *
+     * @param step the name of the step in the compile chain, e.g. "llc"
+     * @param command the program and its arguments
+     * @return the running process
+     * @throws IOException thrown when the process could not be started
+     */
+    static ExternalProcess start(String step, List<String> command) throws IOException {
+        return new ExternalProcess(step, new ProcessBuilder(command).start());
+    }
+
+    /**
+     * Starts a process that does not read any input.
+     *
+     * @param step the name of the step in the compile chain, e.g. "link"
+     * @param command the program and its arguments
+     * @return the running process
+     * @throws IOException thrown when the process could not be started
+     */
+    static ExternalProcess startWithoutInput(String step, List<String> command) throws IOException {
+        ExternalProcess externalProcess = start(step, command);
+        externalProcess.writeInput(input -> {
+        });
+        return externalProcess;
+    }
+
+    private static CompletableFuture<String> readAsync(InputStream stream) {
+        return CompletableFuture.supplyAsync(() -> {
+            try (InputStream input = stream) {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                byte[] buffer = new byte[8192];
+                int length = input.read(buffer);
+                while (length >= 0) {
+                    bytes.write(buffer, 0, length);
+                    length = input.read(buffer);
+                }
+                return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                // the stream is closed when the process is killed
+                return "";
+            }
+        }, STREAM_READERS);
+    }
+
+    /**
+     * Writes the standard input of the process and closes it.
+     *
+     * @param writer writes the input
+     * @throws IOException thrown when the input could not be written, e.g. because the process exited early
+     */
+    void writeInput(InputWriter writer) throws IOException {
+        try (Writer input = new BufferedWriter(new OutputStreamWriter(process.getOutputStream(),
+                StandardCharsets.UTF_8))) {
+            writer.writeTo(input);
+        } finally {
+            inputClosedTime = System.nanoTime();
+        }
+    }
+
+    /**
+     * Observes the exit of the process.
+     * The future fails with an {@link UnsuccessfulCompilationException} if the process exits with an error or does
+     * not finish in time.
+     *
+     * @param timeoutMillis the maximum time the process may run after its input has been written, 0 for no limit
+     * @return the result of the process, cancelling it kills the process
+     */
+    CompletableFuture<Result> finish(long timeoutMillis) {
+        CompletableFuture<Result> result = new CompletableFuture<>();
+        process.onExit().thenCombine(output, (exitedProcess, outputText) -> outputText).
+                thenCombine(errors, (outputText, errorText) -> {
+                    long wallNanos = System.nanoTime() - inputClosedTime;
+                    if (process.exitValue() != 0) {
+                        result.completeExceptionally(new UnsuccessfulCompilationException(errorText.isEmpty() ?
+                                step + " failed with exit code " + process.exitValue() + '.' : errorText));
+                    }
+                    else {
+                        result.complete(new Result(step, wallNanos, outputText, errorText));
+                    }
+                    return null;
+                });
+        if (timeoutMillis > 0) {
+            CompletableFuture.delayedExecutor(timeoutMillis, TimeUnit.MILLISECONDS).execute(() ->
+                    result.completeExceptionally(new UnsuccessfulCompilationException(
+                            step + " did not finish within " + timeoutMillis + " ms.")));
+        }
+        result.whenComplete((finishedResult, error) -> {
+            if (error != null) {
+                process.destroyForcibly();
+            }
+        });
+        return result;
+    }
+
+    /**
+     * @return true iff the process has not exited yet
+     */
+    boolean isAlive() {
+        return process.isAlive();
+    }
+
+    /**
+     * Writes the standard input of a process.
+     */
+    @FunctionalInterface
+    interface InputWriter {
+        void writeTo(Writer input) throws IOException;
+    }
+
+    /**
+     * The result of a successful process.
+     */
+    static final class Result {
+        private final String step;
+        private final long wallNanos;
+        private final String output;
+        private final String errors;
+
+        private Result(String step, long wallNanos, String output, String errors) {
+            this.step = step;
+            this.wallNanos = wallNanos;
+            this.output = output;
+            this.errors = errors;
+        }
+
+        String getStep() {
+            return step;
+        }
+
+        /**
+         * @return the time from the end of the input to the exit of the process in nanoseconds
+         */
+        long getWallNanos() {
+            return wallNanos;
+        }
+
+        String getOutput() {
+            return output;
+        }
+
+        /**
+         * @return the standard error, e.g. warnings
+         */
+        String getErrors() {
+            return errors;
+        }
+    }
+}
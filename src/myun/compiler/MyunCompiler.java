@@ -1,36 +1,177 @@
 package myun.compiler;
 
 import myun.AST.*;
+import myun.AST.constraints.ConstraintChecker;
+import myun.optimization.ConstantFolder;
+import myun.optimization.DeadCodeEliminator;
+import myun.optimization.FunctionInliner;
+import myun.optimization.LoopInvariantCodeMotion;
 import myun.scope.MyunCoreScope;
 import myun.scope.ScopeInitializer;
 import myun.type.inference.TypeInferrer;
 
 import java.io.*;
-import java.util.stream.Collectors;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.CodeSource;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Stream;
 
 /**
  * Compiles a myun source file to LLVM code.
  * @noinspection UseOfSystemOutOrSystemErr
  */
 final public class MyunCompiler {
-    private static final String DEFAULT_LLVM_COMPILER = "llc";
-    private static final String DEFAULT_ASSEMBLY_COMPILER = "gcc";
-    private static final int DEFAULT_OPT_LEVEL = 0;
+    static final String DEFAULT_LLVM_COMPILER = "llc";
+    static final String DEFAULT_ASSEMBLY_COMPILER = "gcc";
+    static final int DEFAULT_OPT_LEVEL = 0;
+    // the maximum run time of each external process in seconds
+    private static final String PROCESS_TIMEOUT_ARGUMENT = "-process-timeout=";
+    // part of the cache keys, has to be changed whenever the generated code changes
+    static final String VERSION = "0.2";
+    // the newest modification time of the compiler classes (computed once)
+    private static volatile Long compilerTimestamp;
 
     private final String llvmCompiler;
     private final String assemblyCompiler;
     private final int optimizationLevel;
+    private final Set<CompilerFlag> flags;
     private final boolean debug;
+    private int inlineThreshold;
+    // where debug information and timings are printed
+    private PrintStream output;
+    // the cache for compiled files or null if there is none
+    private CompilationCache cache;
+    // the maximum run time of each external process in milliseconds, 0 for no limit
+    private long processTimeout;
+    // the directory of the AST snapshots if they are enabled
+    private Path snapshotDirectory;
 
-    private MyunCompiler(String llvmCompiler, String assemblyCompiler, int optimizationLevel, boolean debug) {
+    private MyunCompiler(String llvmCompiler, String assemblyCompiler, int optimizationLevel, Set<CompilerFlag> flags) {
         this.llvmCompiler = llvmCompiler;
         this.assemblyCompiler = assemblyCompiler;
         this.optimizationLevel = optimizationLevel;
-        this.debug = debug;
+        this.flags = flags;
+        debug = flags.contains(CompilerFlag.DEBUG);
+        inlineThreshold = FunctionInliner.DEFAULT_THRESHOLD;
+        output = System.out;
+        snapshotDirectory = CompilationCache.getDefaultDirectory().resolve("ast");
     }
 
-    public static MyunCompiler getDefaultMyunCompiler() {
-        return new MyunCompiler(DEFAULT_LLVM_COMPILER, DEFAULT_ASSEMBLY_COMPILER, DEFAULT_OPT_LEVEL, false);
+    /**
+     * Creates a compiler with the default llvm compiler, assembly compiler, and optimization level.
+     *
+     * @param flags optional compiler flags
+     * @return the compiler
+     */
+    public static MyunCompiler getDefaultMyunCompiler(CompilerFlag... flags) {
+        return new MyunCompiler(DEFAULT_LLVM_COMPILER, DEFAULT_ASSEMBLY_COMPILER, DEFAULT_OPT_LEVEL, toSet(flags));
+    }
+
+    private static Set<CompilerFlag> toSet(CompilerFlag... flags) {
+        Set<CompilerFlag> flagSet = EnumSet.noneOf(CompilerFlag.class);
+        flagSet.addAll(Arrays.asList(flags));
+        return flagSet;
+    }
+
+    /**
+     * Creates a compiler from command line arguments.
+     *
+     * @param llvmCompiler the llvm compiler command
+     * @param assemblyCompiler the assembly compiler command
+     * @param optimizationLevel the optimization level of the llvm compiler
+     * @param flagArguments the flag arguments, e.g. "-debug" or "-inline=20"
+     * @return the compiler
+     * @throws IllegalArgumentException thrown when a flag argument is unknown
+     */
+    static MyunCompiler fromArguments(String llvmCompiler, String assemblyCompiler, int optimizationLevel,
+                                      List<String> flagArguments) {
+        Set<CompilerFlag> flags = EnumSet.noneOf(CompilerFlag.class);
+        Optional<Integer> inlineThreshold = Optional.empty();
+        Path cacheDirectory = CompilationCache.getDefaultDirectory();
+        long cacheSize = CompilationCache.DEFAULT_MAX_BYTES;
+        String inlinePrefix = CompilerFlag.INLINE.getArgument() + '=';
+        String cachePrefix = CompilerFlag.CACHE.getArgument() + '=';
+        String cacheSizePrefix = CompilerFlag.CACHE.getArgument() + "-size=";
+        String snapshotPrefix = CompilerFlag.AST_SNAPSHOTS.getArgument() + '=';
+        Optional<Path> snapshotDirectory = Optional.empty();
+        Optional<Long> processTimeout = Optional.empty();
+        for (String argument : flagArguments) {
+            if (argument.startsWith(inlinePrefix)) {
+                inlineThreshold = Optional.of(Integer.parseInt(argument.substring(inlinePrefix.length())));
+                flags.add(CompilerFlag.INLINE);
+                continue;
+            }
+            if (argument.startsWith(cachePrefix)) {
+                cacheDirectory = Paths.get(argument.substring(cachePrefix.length()));
+                flags.add(CompilerFlag.CACHE);
+                continue;
+            }
+            if (argument.startsWith(cacheSizePrefix)) {
+                cacheSize = Long.parseLong(argument.substring(cacheSizePrefix.length())) * 1024 * 1024;
+                flags.add(CompilerFlag.CACHE);
+                continue;
+            }
+            if (argument.startsWith(snapshotPrefix)) {
+                snapshotDirectory = Optional.of(Paths.get(argument.substring(snapshotPrefix.length())));
+                flags.add(CompilerFlag.AST_SNAPSHOTS);
+                continue;
+            }
+            if (argument.startsWith(PROCESS_TIMEOUT_ARGUMENT)) {
+                processTimeout = Optional.of(Long.parseLong(argument.substring(PROCESS_TIMEOUT_ARGUMENT.length())));
+                continue;
+            }
+            Optional<CompilerFlag> flag = CompilerFlag.fromArgument(argument);
+            if (!flag.isPresent()) {
+                throw new IllegalArgumentException("Unknown flag " + argument + '.');
+            }
+            flags.add(flag.get());
+        }
+
+        MyunCompiler compiler = new MyunCompiler(llvmCompiler, assemblyCompiler, optimizationLevel, flags);
+        inlineThreshold.ifPresent(compiler::setInlineThreshold);
+        processTimeout.ifPresent(seconds -> compiler.setProcessTimeout(seconds * 1000));
+        snapshotDirectory.ifPresent(compiler::setSnapshotDirectory);
+        if (flags.contains(CompilerFlag.CACHE)) {
+            try {
+                compiler.setCache(new CompilationCache(cacheDirectory, cacheSize));
+            } catch (IOException e) {
+                throw new IllegalArgumentException("Could not create the cache in " + cacheDirectory + '.', e);
+            }
+        }
+        return compiler;
+    }
+
+    /**
+     * Creates a compiler from the command line arguments of {@link #main(String...)} (without the input file).
+     *
+     * @param args the llvm compiler, assembly compiler, optimization level, and flags, or nothing for the defaults
+     * @return the compiler
+     * @throws IllegalArgumentException thrown when the arguments are invalid
+     */
+    static MyunCompiler fromCommandLine(List<String> args) {
+        if (args.size() < 3) {
+            return getDefaultMyunCompiler();
+        }
+        int optimizationLevel;
+        try {
+            optimizationLevel = Integer.parseInt(args.get(2));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid optimization level " + args.get(2) + '.', e);
+        }
+        return fromArguments(args.get(0), args.get(1), optimizationLevel, args.subList(3, args.size()));
     }
 
     public static void main(String... args) throws IOException, InterruptedException {
@@ -41,23 +182,70 @@ final public class MyunCompiler {
         String inputFile = args[0];
 
         MyunCompiler compiler;
-        if (args.length >= 4) {
-            String llvmCompiler = args[1];
-            String assemblyCompiler = args[2];
-            int optimizationLevel = Integer.parseInt(args[3]);
-            boolean debug = false;
-            if ((args.length == 5) && "-debug".equals(args[4])) {
-                debug = true;
-            }
-            compiler = new MyunCompiler(llvmCompiler, assemblyCompiler, optimizationLevel, debug);
-        }
-        else {
-            compiler = getDefaultMyunCompiler();
+        try {
+            compiler = fromCommandLine(Arrays.asList(args).subList(1, args.length));
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            System.exit(1);
+            return;
         }
 
         compiler.compileFromFile(inputFile);
     }
 
+    /**
+     * Sets the maximum size (in AST nodes) of the functions that are inlined if the inline flag is set.
+     *
+     * @param inlineThreshold the maximum number of AST nodes in the body of an inlined function
+     */
+    public void setInlineThreshold(int inlineThreshold) {
+        this.inlineThreshold = inlineThreshold;
+    }
+
+    /**
+     * Sets the stream the debug information and timings are printed to (the standard output by default).
+     *
+     * @param output the output stream
+     */
+    void setOutput(PrintStream output) {
+        this.output = output;
+    }
+
+    /**
+     * Sets the cache for compiled files. The cache is not used for the whole compilation in debug mode, so that the
+     * debug information is always printed.
+     *
+     * @param cache the cache
+     */
+    public void setCache(CompilationCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Sets the maximum time each external process (llc or gcc) may run before it is killed.
+     *
+     * @param processTimeout the timeout in milliseconds, 0 for no limit (the default)
+     */
+    public void setProcessTimeout(long processTimeout) {
+        this.processTimeout = processTimeout;
+    }
+
+    /**
+     * Sets the directory of the AST snapshots, which are used if the AST snapshot flag is set.
+     *
+     * @param snapshotDirectory the directory (by default in the cache directory)
+     */
+    public void setSnapshotDirectory(Path snapshotDirectory) {
+        this.snapshotDirectory = snapshotDirectory;
+    }
+
+    /**
+     * @return the cache for compiled files or empty if there is none
+     */
+    public Optional<CompilationCache> getCache() {
+        return Optional.ofNullable(cache);
+    }
+
     /**
      * Compiles myun code from a file and writes the resulting llvm ir code to an output file.
      *
@@ -66,9 +254,25 @@ final public class MyunCompiler {
      * @throws IOException thrown when the file could not be loaded or written to
      */
     public String compileFromFile(String inputFile) throws IOException, InterruptedException {
-        // generate the AST
-        ASTGenerator astGen = new ASTGenerator();
-        ASTCompileUnit program = astGen.parseFile(inputFile);
+        CompilationTimer timer = new CompilationTimer(inputFile);
+        TranslatedFile translatedFile = translateFile(inputFile, timer);
+
+        // compile the llvm code
+        String outputFile = compileTranslatedFile(translatedFile, timer);
+        reportTimings(timer);
+        return outputFile;
+    }
+
+    /**
+     * Runs the front end of the compiler, i.e. it compiles myun code from a file to llvm ir code and writes it to
+     * an output file next to the input file.
+     *
+     * @param inputFile the path to the input file
+     * @param timer the timer that measures the phases
+     * @return the translated file
+     * @throws IOException thrown when the file could not be loaded or written to
+     */
+    TranslatedFile translateFile(String inputFile, CompilationTimer timer) throws IOException {
         String fileName;
         if (inputFile.endsWith(".myun")) {
             fileName = inputFile.substring(0, inputFile.length() - 1 - "myun".length());
@@ -76,51 +280,381 @@ final public class MyunCompiler {
             fileName = inputFile;
         }
 
+        // an unchanged file does not have to be compiled again
+        String sourceKey = null;
+        if (cache != null) {
+            timer.startPhase("cache lookup");
+            sourceKey = computeSourceKey(inputFile);
+            boolean restored = !debug && cache.restoreFromSource(sourceKey, fileName);
+            timer.endPhase();
+            if (restored) {
+                return new TranslatedFile(fileName, sourceKey, null);
+            }
+        }
+
+        // generate the AST
+        timer.startPhase("parse");
+        ASTGenerator astGen = new ASTGenerator();
+        astGen.setParallelParsing(flags.contains(CompilerFlag.PARALLEL_PARSE));
+        astGen.setHandWrittenLexer(flags.contains(CompilerFlag.FAST_LEXER));
+        if (flags.contains(CompilerFlag.AST_SNAPSHOTS)) {
+            astGen.setSnapshotDirectory(snapshotDirectory);
+        }
+        ASTCompileUnit program = astGen.parseFile(inputFile, false);
+        timer.addAllocatedBytes(astGen.getParserAllocatedBytes());
+
+        // check the context-sensitive constraints
+        timer.startPhase("constraints");
+        new ConstraintChecker().check(program);
+
         // init the scopes
+        timer.startPhase("scopes");
         ScopeInitializer.initScopes(program, MyunCoreScope.getInstance());
 
         // infer the types
+        timer.startPhase("types");
         TypeInferrer typeInferrer = new TypeInferrer();
         typeInferrer.inferTypes(program);
 
+        // optimize the AST
+        if (flags.contains(CompilerFlag.INLINE)) {
+            timer.startPhase("inline");
+            new FunctionInliner(inlineThreshold).optimize(program);
+        }
+        timer.startPhase("fold");
+        new ConstantFolder().optimize(program);
+        timer.startPhase("dce");
+        new DeadCodeEliminator().optimize(program);
+        if (flags.contains(CompilerFlag.LICM)) {
+            timer.startPhase("licm");
+            new LoopInvariantCodeMotion().optimize(program);
+        }
+        timer.endPhase();
+
         // print the source code
         if (debug) {
             MyunPrettyPrinter prettyPrinter = new MyunPrettyPrinter();
-            System.out.println(prettyPrinter.toString(program));
+            output.println(prettyPrinter.toString(program));
+            output.println(typeInferrer.getResolutionStatistics());
+        }
+
+        return new TranslatedFile(fileName, sourceKey, program);
+    }
+
+    /**
+     * Computes the cache key of a source file, which includes everything that influences the generated code.
+     */
+    private String computeSourceKey(String inputFile) throws IOException {
+        String configuration = VERSION + ' ' + getCompilerTimestamp() + ' ' + flags.contains(CompilerFlag.SSA) + ' ' +
+                flags.contains(CompilerFlag.LICM) + ' ' + (flags.contains(CompilerFlag.INLINE) ? inlineThreshold : -1);
+        return CompilationCache.computeKey(configuration.getBytes(StandardCharsets.UTF_8), getToolchainKey(),
+                Files.readAllBytes(Paths.get(inputFile)));
+    }
+
+    private byte[] getToolchainKey() {
+        return (llvmCompiler + ' ' + assemblyCompiler + ' ' + optimizationLevel).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return the newest modification time of the compiler classes, so that a rebuilt compiler does not use old
+     * artifacts
+     */
+    private static long getCompilerTimestamp() {
+        if (compilerTimestamp == null) {
+            long timestamp = 0;
+            CodeSource codeSource = MyunCompiler.class.getProtectionDomain().getCodeSource();
+            if (codeSource != null) {
+                try (Stream<Path> files = Files.walk(Paths.get(codeSource.getLocation().toURI()))) {
+                    timestamp = files.mapToLong(file -> file.toFile().lastModified()).max().orElse(0);
+                } catch (IOException | URISyntaxException | IllegalArgumentException e) {
+                    // the compiler is not loaded from the file system, so only the version is used
+                }
+            }
+            compilerTimestamp = timestamp;
+        }
+        return compilerTimestamp;
+    }
+
+    /**
+     * Runs the back end of the compiler and waits until the executable has been written.
+     *
+     * @param translatedFile the result of the front end
+     * @param timer the timer that measures the phases
+     * @return the output file path
+     * @throws IOException thrown when a file could not be written to
+     * @throws UnsuccessfulCompilationException thrown when one of the external compilers fails
+     * @throws InterruptedException thrown when the thread is interrupted, the external compilers are killed then
+     * @see #compileTranslatedFileAsync(TranslatedFile, CompilationTimer)
+     */
+    String compileTranslatedFile(TranslatedFile translatedFile, CompilationTimer timer)
+            throws IOException, InterruptedException {
+        CompletableFuture<String> outputFile = compileTranslatedFileAsync(translatedFile, timer);
+        try {
+            return outputFile.get();
+        } catch (InterruptedException e) {
+            outputFile.cancel(true);
+            throw e;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Runs the back end of the compiler, i.e. it translates the AST of the front end to llvm ir code and compiles
+     * it to an executable.
+     * The llvm compiler reads the code from its standard input. Unless the code is needed as a whole (for the cache,
+     * the debug output, or the .ll file), each function is passed to the llvm compiler as soon as it is translated.
+     * The object file and the executable are taken from the cache if the same llvm code has been compiled before.
+     * The method returns as soon as the code has been passed to the llvm compiler, so the caller can translate the
+     * next file while the external compilers are still running. The timer must not be used until the future is
+     * completed.
+     *
+     * @param translatedFile the result of the front end
+     * @param timer the timer that measures the phases
+     * @return the output file path, cancelling the future kills the running external compiler
+     * @throws IOException thrown when a file could not be written to
+     */
+    CompletableFuture<String> compileTranslatedFileAsync(TranslatedFile translatedFile, CompilationTimer timer)
+            throws IOException {
+        String fileName = translatedFile.getFileName();
+        if (translatedFile.isCompiled()) {
+            return CompletableFuture.completedFuture(fileName + ".out");
+        }
+
+        MyunToLLVMTranslator llvmTranslator = new MyunToLLVMTranslator(flags.contains(CompilerFlag.SSA));
+        ASTCompileUnit program = translatedFile.getProgram();
+        boolean keepIR = debug || flags.contains(CompilerFlag.KEEP_IR);
+        if ((cache == null) && !keepIR) {
+            return runCompileChain(fileName, llvmInput -> llvmTranslator.translateToLLVM(program, llvmInput),
+                    "translate", timer);
         }
 
         // compile the code
-        MyunToLLVMTranslator llvmTranslator = new MyunToLLVMTranslator();
+        timer.startPhase("translate");
         String llvmCode = llvmTranslator.translateToLLVM(program);
+        timer.endPhase();
         if (debug) {
-            System.out.println("### Compiled to: ");
-            System.out.println(llvmCode);
+            output.println("### Compiled to: ");
+            output.println(llvmCode);
         }
 
         // write it to the output file
-        String outputFile = fileName+".ll";
-        Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(outputFile), "utf-8"));
-        writer.write(llvmCode);
-        writer.close();
+        if (keepIR) {
+            timer.startPhase("write");
+            String outputFile = fileName+".ll";
+            Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(outputFile), "utf-8"));
+            writer.write(llvmCode);
+            writer.close();
+            timer.endPhase();
+        }
 
-        // compile the llvm code
-        runCompileChain(fileName);
-        return fileName+".out";
-    }
-
-    private void runCompileChain(String fileName) throws IOException, InterruptedException {
-        Runtime rt = Runtime.getRuntime();
-        String[] execCodes = {llvmCompiler+" -O"+optimizationLevel+ ' ' +fileName+".ll",
-                assemblyCompiler+" -c "+fileName+".s -o "+fileName+".o",
-                assemblyCompiler+ ' ' +fileName+".o -o "+fileName+".out"};
-        for (String execCode : execCodes) {
-            Process compileProcess = rt.exec(execCode);
-            int compileRet = compileProcess.waitFor();
-            if (compileRet != 0) {
-                String error = new BufferedReader(new InputStreamReader(compileProcess.getErrorStream()))
-                        .lines().collect(Collectors.joining("\n"));
-                throw new UnsuccessfulCompilationException(error);
+        if (cache == null) {
+            return runCompileChain(fileName, llvmInput -> llvmInput.write(llvmCode), null, timer);
+        }
+
+        timer.startPhase("cache lookup");
+        String irKey = CompilationCache.computeKey(getToolchainKey(), llvmCode.getBytes(StandardCharsets.UTF_8));
+        boolean restored = cache.restoreFromIR(translatedFile.getSourceKey(), irKey, fileName);
+        timer.endPhase();
+        if (restored) {
+            return CompletableFuture.completedFuture(fileName + ".out");
+        }
+
+        return runCompileChain(fileName, llvmInput -> llvmInput.write(llvmCode), null, timer).
+                thenApply(outputFile -> {
+                    timer.startPhase("cache store");
+                    try {
+                        cache.store(translatedFile.getSourceKey(), irKey, llvmCode, fileName);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    timer.endPhase();
+                    return outputFile;
+                });
+    }
+
+    /**
+     * Prints the timings if one of the timing flags is set.
+     *
+     * @param timer the timer of a finished compilation
+     */
+    void reportTimings(CompilationTimer timer) {
+        if (flags.contains(CompilerFlag.TIMINGS)) {
+            output.print(timer.toText());
+        }
+        if (flags.contains(CompilerFlag.TIMINGS_JSON)) {
+            output.println(timer.toJSON());
+        }
+        if ((cache != null) && (debug || flags.contains(CompilerFlag.TIMINGS))) {
+            output.println(cache.getStatistics());
+        }
+    }
+
+    /**
+     * Compiles llvm ir code to an executable.
+     * The llvm code is written on the calling thread, the remaining steps run when the previous one has finished.
+     * The durations of the steps are added to the timer.
+     *
+     * @param fileName the path of the output files without file extension
+     * @param llvmCode writes the llvm ir code to the standard input of the llvm compiler
+     * @param inputPhase the name of the phase in which the code is written or null if it belongs to the llc phase
+     * @param timer the timer that measures the phases
+     * @return the output file path, cancelling the future kills the running external compiler
+     * @throws IOException thrown when the llvm compiler could not be started
+     */
+    private CompletableFuture<String> runCompileChain(String fileName, ExternalProcess.InputWriter llvmCode,
+                                                      String inputPhase, CompilationTimer timer) throws IOException {
+        // the llvm compiler reads the code from its standard input ("-") and usually emits the object file itself,
+        // which saves the assembly file and the process of the assembler
+        boolean emitAssembly = flags.contains(CompilerFlag.EMIT_ASSEMBLY);
+        List<String> llcCommand = splitCommand(llvmCompiler);
+        llcCommand.add("-O" + optimizationLevel);
+        if (!emitAssembly) {
+            llcCommand.add("-filetype=obj");
+        }
+        llcCommand.addAll(Arrays.asList("-", "-o", fileName + (emitAssembly ? ".s" : ".o")));
+        ExternalProcess llcProcess = ExternalProcess.start("llc", llcCommand);
+        timer.countProcess();
+        if (inputPhase != null) {
+            timer.startPhase(inputPhase);
+        }
+        long inputStartTime = System.nanoTime();
+        IOException inputError = null;
+        try {
+            llcProcess.writeInput(llvmCode);
+        } catch (IOException e) {
+            // the llvm compiler might have stopped early because of an error, which is reported instead
+            inputError = e;
+        }
+        // the writing belongs to the llc phase unless it has its own phase
+        long inputNanos = (inputPhase != null) ? 0 : (System.nanoTime() - inputStartTime);
+        if (inputPhase != null) {
+            timer.endPhase();
+        }
+
+        CompileChain chain = new CompileChain(timer);
+        IOException llcInputError = inputError;
+        CompletableFuture<ExternalProcess.Result> steps = chain.run(llcProcess, inputNanos).thenApply(result -> {
+            if (llcInputError != null) {
+                throw new UncheckedIOException(llcInputError);
             }
+            return result;
+        });
+        if (emitAssembly) {
+            steps = steps.thenCompose(result -> chain.run("assemble", assemblyCompiler, "-c", fileName + ".s",
+                    "-o", fileName + ".o"));
+        }
+        steps = steps.thenCompose(result -> chain.run("link", assemblyCompiler, fileName + ".o",
+                "-o", fileName + ".out"));
+        steps.whenComplete((result, error) -> {
+            if (error != null) {
+                chain.result.completeExceptionally((error instanceof CompletionException) ? error.getCause() : error);
+            }
+            else {
+                chain.result.complete(fileName + ".out");
+            }
+        });
+        return chain.result;
+    }
+
+    private static List<String> splitCommand(String command) {
+        return new ArrayList<>(Arrays.asList(command.trim().split("\\s+")));
+    }
+
+    /**
+     * The external processes of the compilation of one file, which run one after another.
+     * Cancelling the result kills the process that is currently running.
+     */
+    private final class CompileChain {
+        private final CompilationTimer timer;
+        private final CompletableFuture<String> result;
+        private volatile CompletableFuture<ExternalProcess.Result> runningStep;
+
+        private CompileChain(CompilationTimer timer) {
+            this.timer = timer;
+            result = new CompletableFuture<>();
+            result.whenComplete((outputFile, error) -> {
+                CompletableFuture<ExternalProcess.Result> step = runningStep;
+                if (result.isCancelled() && (step != null)) {
+                    step.cancel(true);
+                }
+            });
+        }
+
+        CompletableFuture<ExternalProcess.Result> run(String step, String program, String... arguments) {
+            if (result.isDone()) {
+                return CompletableFuture.failedFuture(new CancellationException());
+            }
+            List<String> command = splitCommand(program);
+            command.addAll(Arrays.asList(arguments));
+            try {
+                ExternalProcess process = ExternalProcess.startWithoutInput(step, command);
+                timer.countProcess();
+                return run(process, 0);
+            } catch (IOException e) {
+                return CompletableFuture.failedFuture(new UncheckedIOException(e));
+            }
+        }
+
+        CompletableFuture<ExternalProcess.Result> run(ExternalProcess process, long inputNanos) {
+            CompletableFuture<ExternalProcess.Result> step = process.finish(processTimeout);
+            runningStep = step;
+            if (result.isCancelled()) {
+                step.cancel(true);
+            }
+            return step.thenApply(stepResult -> {
+                timer.addPhase(stepResult.getStep(), inputNanos + stepResult.getWallNanos(), -1);
+                return stepResult;
+            });
+        }
+    }
+
+    /**
+     * The result of the front end of the compiler.
+     */
+    static final class TranslatedFile {
+        private final String fileName;
+        private final String sourceKey;
+        private final ASTCompileUnit program;
+
+        private TranslatedFile(String fileName, String sourceKey, ASTCompileUnit program) {
+            this.fileName = fileName;
+            this.sourceKey = sourceKey;
+            this.program = program;
+        }
+
+        /**
+         * @return the path of the output files without file extension
+         */
+        String getFileName() {
+            return fileName;
+        }
+
+        /**
+         * @return the cache key of the source file or null if there is no cache
+         */
+        String getSourceKey() {
+            return sourceKey;
+        }
+
+        /**
+         * @return the optimized AST of the program or null if the file has been restored from the cache
+         */
+        ASTCompileUnit getProgram() {
+            return program;
+        }
+
+        /**
+         * @return true iff the executable has already been restored from the cache
+         */
+        boolean isCompiled() {
+            return program == null;
         }
     }
 }
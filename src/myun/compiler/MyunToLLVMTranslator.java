@@ -2,11 +2,14 @@ package myun.compiler;
 
 import myun.AST.*;
 import myun.NotImplementedException;
+import myun.scope.CallTarget;
 import myun.scope.LLVMInstruction;
-import myun.scope.MyunCoreScope;
 import myun.scope.TypeNotInferredException;
 import myun.type.*;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -14,12 +17,39 @@ import java.util.stream.Collectors;
  * Translates Myun code to LLVM code.
  * <p>
  * All visit methods write their translated code to the llvmCode string builder.
- * Visit methods for statements return the last computed value.
- * Visit methods for expressions return the line of code that yields the result value when evaluated in LLVM.
+ * If the code is streamed, the code of each finished function is passed on to the output and removed from the builder.
+ * Visit methods for expressions push the line of code that yields the result value when evaluated in LLVM.
  * Visit methods for types simply return their LLVM type name.
  * </p>
+ * <p>
+ * Statements and expressions are translated with explicit stacks ({@link ASTTraversal}), so that deeply nested code
+ * cannot overflow the call stack. Visit methods only schedule the translation of their children.
+ * </p>
+ * <p>
+ * By default, mutable variables are stored in stack slots.
+ * In SSA mode, the translator instead keeps track of the current value of each variable and merges the values
+ * with phi instructions where the control flow joins, so that no alloca, load, or store is emitted at all.
+ * </p>
  */
-class MyunToLLVMTranslator implements ASTExpressionVisitor<String>, ASTNonExpressionVisitor, TypeVisitor<String> {
+class MyunToLLVMTranslator implements ASTExpressionVisitor<Void>, ASTNonExpressionVisitor, TypeVisitor<String> {
+    // calling convention of all myun functions (allows guaranteed tail calls)
+    private static final String CALLING_CONVENTION = "fastcc";
+
+    // suffix of the incoming parameter registers of functions that jump back to their start for tail recursion
+    private static final String PARAMETER_SUFFIX = ".arg";
+
+    // whether mutable variables are kept in registers (SSA form) instead of stack slots
+    private final boolean ssa;
+
+    // translates the statements of the program
+    private final ASTTraversal traversal;
+
+    // translates a single expression (within a statement)
+    private final ASTTraversal expressionTraversal;
+
+    // stores the values of the translated expressions
+    private final Deque<String> values;
+
     // stores the index of the next free register
     private int nextRegister;
 
@@ -29,23 +59,73 @@ class MyunToLLVMTranslator implements ASTExpressionVisitor<String>, ASTNonExpres
     // stores the previous label
     private String prevLabel;
 
+    // whether the current basic block has already been terminated (e.g. by a return or break)
+    private boolean blockTerminated;
+
     // stores the actual llvm code
     private StringBuilder llvmCode;
 
+    // receives the code of every finished function if the code is streamed (null otherwise)
+    private Writer output;
+
     // stores a mapping of iteration variables to current registers
     private Map<String, String> itVarMap;
 
     // stores the label of the current loop exit
     private Stack<String> currentLoopExit;
 
-    // stores a mapping of function headers to actual llvm functions
+    // stores the edges (and variable values) that jump to the current loop exit
+    private Stack<List<IncomingEdge>> currentLoopExitEdges;
+
+    // stores a mapping of declared variables of the current function to their stack slots
+    private Map<ASTVariable, String> stackSlots;
+    private List<ASTVariable> localVariables;
+    private final DeclarationCollector declarationCollector;
+
+    // stores the current value of each variable of the current function (SSA mode only)
+    private Map<ASTVariable, String> currentValues;
+
+    // stores a mapping of function definitions to actual llvm functions
     private int nextFuncID;
-    private Map<FuncHeader, String> funcNames;
+    private Map<ASTFuncDef, String> funcNames;
+
+    // the function that is currently translated (null for the script)
+    private ASTFuncDef currentFunction;
+
+    // stores the edges (and parameter values) of self recursive tail calls, which jump back to the function start
+    private List<IncomingEdge> tailRecursionEdges;
 
     /**
-     * Creates a new Myun to LLVM translator.
+     * A control flow edge into a join point together with the variable values at the end of the source block.
+     */
+    private static final class IncomingEdge {
+        private final String label;
+        private final Map<ASTVariable, String> values;
+
+        private IncomingEdge(String label, Map<ASTVariable, String> values) {
+            this.label = label;
+            this.values = values;
+        }
+    }
+
+    /**
+     * Creates a new Myun to LLVM translator which stores mutable variables on the stack.
      */
     MyunToLLVMTranslator() {
+        this(false);
+    }
+
+    /**
+     * Creates a new Myun to LLVM translator.
+     *
+     * @param ssa whether mutable variables should be kept in registers (SSA form) instead of stack slots
+     */
+    MyunToLLVMTranslator(boolean ssa) {
+        this.ssa = ssa;
+        traversal = new ASTTraversal();
+        expressionTraversal = new ASTTraversal();
+        values = new ArrayDeque<>();
+        declarationCollector = new DeclarationCollector();
         init();
     }
 
@@ -57,16 +137,58 @@ class MyunToLLVMTranslator implements ASTExpressionVisitor<String>, ASTNonExpres
      */
     String translateToLLVM(ASTCompileUnit myunProgram) {
         init();
+        output = null;
+        translate(myunProgram);
+        return llvmCode.toString();
+    }
+
+    /**
+     * Translates a given myun program to llvm IR code and writes the code of each function to the output as soon as
+     * the function is finished, e.g. so that the llvm compiler can already read it.
+     *
+     * @param myunProgram the myun program
+     * @param output the output for the llvm IR code
+     * @throws IOException thrown when the code could not be written
+     */
+    void translateToLLVM(ASTCompileUnit myunProgram, Writer output) throws IOException {
+        init();
+        this.output = output;
+        try {
+            translate(myunProgram);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            this.output = null;
+        }
+    }
 
+    private void translate(ASTCompileUnit myunProgram) {
         // declare IO functions
         llvmCode.append("@.str = private unnamed_addr constant [6 x i8] c\"%lld\\0A\\00\", align 1\n");
         llvmCode.append("@.str.1 = private unnamed_addr constant [7 x i8] c\"%.15e\\0A\\00\", align 1\n");
         // FIXME: add support for procedures that don't return anything and make print a procedure
         // TODO: import statements? so that this header does not get included every time
         llvmCode.append("declare i32 @printf(i8*, ...)\n\n");
+        flushFinishedCode();
 
-        myunProgram.accept(this);
-        return llvmCode.toString();
+        traversal.run(() -> myunProgram.accept(this));
+        flushFinishedCode();
+    }
+
+    /**
+     * Writes the code generated so far to the output if the code is streamed.
+     * May only be called between functions, since phi instructions are inserted into the code of the current function.
+     */
+    private void flushFinishedCode() {
+        if (output == null) {
+            return;
+        }
+        try {
+            output.append(llvmCode);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        llvmCode.setLength(0);
     }
 
     /**
@@ -74,13 +196,21 @@ class MyunToLLVMTranslator implements ASTExpressionVisitor<String>, ASTNonExpres
      */
     private void init() {
         llvmCode = new StringBuilder();
+        values.clear();
         nextRegister = 0;
         nextLabelID = 0;
         prevLabel = "entry"; // functions always start with an entry label
+        blockTerminated = false;
         itVarMap = new HashMap<>();
         currentLoopExit = new Stack<>();
+        currentLoopExitEdges = new Stack<>();
+        stackSlots = new IdentityHashMap<>();
+        localVariables = new ArrayList<>();
+        currentValues = new IdentityHashMap<>();
         nextFuncID = 0;
-        funcNames = new HashMap<>();
+        funcNames = new IdentityHashMap<>();
+        currentFunction = null;
+        tailRecursionEdges = new ArrayList<>();
     }
 
     /**
@@ -101,6 +231,40 @@ class MyunToLLVMTranslator implements ASTExpressionVisitor<String>, ASTNonExpres
         return nextLabelID;
     }
 
+    /**
+     * Starts a new basic block with the given label.
+     *
+     * @param label the label
+     */
+    private void emitLabel(String label) {
+        llvmCode.append(label).append(":\n");
+        prevLabel = label;
+        blockTerminated = false;
+    }
+
+    /**
+     * Jumps to the given label, unless the current basic block has already been terminated.
+     *
+     * @param label the label
+     */
+    private void emitJump(String label) {
+        if (!blockTerminated) {
+            llvmCode.append("\tbr label %").append(label).append('\n');
+            blockTerminated = true;
+        }
+    }
+
+    /**
+     * Generates code for the given expression.
+     *
+     * @param expr the expression
+     * @return the line of code that yields the result
+     */
+    private String translateExpression(ASTExpression expr) {
+        expressionTraversal.run(() -> expr.accept(this));
+        return values.pop();
+    }
+
     /**
      * Generates code for the given expression and packs it into a new register if necessary.
      *
@@ -108,10 +272,32 @@ class MyunToLLVMTranslator implements ASTExpressionVisitor<String>, ASTNonExpres
      * @return the register or constant which holds the result
      */
     private String getConstantOrRegister(ASTExpression expr) {
-        String val = expr.accept(this);
+        expressionTraversal.run(() -> scheduleConstantOrRegister(expr));
+        return values.pop();
+    }
 
+    /**
+     * Schedules the code generation for the given (nested) expression, which pushes the register or constant that
+     * holds the result.
+     *
+     * @param expr the expression
+     */
+    private void scheduleConstantOrRegister(ASTExpression expr) {
+        expressionTraversal.then(() -> expr.accept(this));
+        expressionTraversal.then(() -> values.push(toConstantOrRegister(expr, values.pop())));
+    }
+
+    /**
+     * Packs the value of the given expression into a new register if necessary.
+     *
+     * @param expr the expression
+     * @param val the line of code that yields the value of the expression
+     * @return the register or constant which holds the result
+     */
+    private String toConstantOrRegister(ASTExpression expr, String val) {
         if ((expr instanceof ASTFuncCall) ||
-                ((expr instanceof ASTVariable) && expr.getScope().getActualVariable((ASTVariable) expr).isAssignable())) {
+                (!ssa && (expr instanceof ASTVariable) &&
+                        expr.getScope().getActualVariable((ASTVariable) expr).isAssignable())) {
             String tmp = getNextRegister();
             llvmCode.append('\t').append(tmp).append(" = ").append(val).append('\n');
             val = tmp;
@@ -132,36 +318,180 @@ class MyunToLLVMTranslator implements ASTExpressionVisitor<String>, ASTNonExpres
     }
 
     /**
-     * Retrieves the name of the actual LLVM function for that specific function header.
+     * Declares all variables declared in the given function or script body.
+     * Unless in SSA mode, their stack slots are allocated once at the current position, which must be the entry
+     * block of the function, so that loop bodies do not allocate new stack space in every iteration.
+     *
+     * @param body the function or script body
+     * @param params the parameters of the function, whose names must not be reused
+     */
+    private void declareLocalVariables(ASTBlock body, List<ASTVariable> params) {
+        stackSlots = new IdentityHashMap<>();
+        currentValues = new IdentityHashMap<>();
+        localVariables = declarationCollector.collectDeclarations(body);
+        Set<String> usedNames = params.stream().map(ASTVariable::getName).collect(Collectors.toSet());
+
+        for (ASTVariable var : localVariables) {
+            // variables in different scopes might have the same name (e.g. in two subsequent for-loops)
+            // so we append a suffix, since myun does not allow variables to contain dots
+            String slot = var.getName();
+            int suffix = 0;
+            while (usedNames.contains(slot)) {
+                suffix++;
+                slot = var.getName() + '.' + suffix;
+            }
+            usedNames.add(slot);
+            stackSlots.put(var, '%' + slot);
+
+            if (!ssa) {
+                String type = var.getType().accept(this);
+                llvmCode.append('\t').append('%').append(slot).append(" = alloca ").append(type).append('\n');
+            }
+        }
+    }
+
+    /**
+     * @param var a declared (assignable) variable
+     * @return the stack slot of that variable
+     */
+    private String getStackSlot(ASTVariable var) {
+        return stackSlots.getOrDefault(var, '%' + var.getName());
+    }
+
+    /**
+     * Sets the variable to the given value, either by storing it in its stack slot or by remembering it (SSA mode).
+     *
+     * @param var the variable
+     * @param value the register or constant holding the new value
+     */
+    private void setVariable(ASTVariable var, String value) {
+        if (ssa) {
+            currentValues.put(var, value);
+        }
+        else {
+            String type = var.getType().accept(this);
+            llvmCode.append("\tstore ").append(type).append(' ').append(value).append(", ").
+                    append(type).append("* ").append(getStackSlot(var)).append('\n');
+        }
+    }
+
+    /**
+     * @return an edge from the current basic block with a snapshot of the current variable values
+     */
+    private IncomingEdge currentEdge() {
+        return new IncomingEdge(prevLabel, new IdentityHashMap<>(currentValues));
+    }
+
+    /**
+     * Merges the variable values of all incoming edges at the current position (start of the join block)
+     * and emits phi instructions where the values differ (SSA mode only).
+     *
+     * @param edges the incoming edges
+     * @param fallback the variable values to use if there are no incoming edges, i.e. the join is unreachable
+     */
+    private void mergeValues(List<IncomingEdge> edges, Map<ASTVariable, String> fallback) {
+        if (edges.isEmpty()) {
+            currentValues = new IdentityHashMap<>(fallback);
+            return;
+        }
+
+        Map<ASTVariable, String> merged = new IdentityHashMap<>();
+        for (ASTVariable var : localVariables) {
+            if (edges.stream().noneMatch(edge -> edge.values.containsKey(var))) {
+                continue;
+            }
+
+            // if all values are the same, we do not need a phi instruction
+            List<String> values = edges.stream().map(edge -> edge.values.getOrDefault(var, "undef")).
+                    collect(Collectors.toList());
+            if (values.stream().distinct().count() == 1) {
+                merged.put(var, values.get(0));
+                continue;
+            }
+
+            String phi = getNextRegister();
+            llvmCode.append('\t').append(phi).append(" = phi ").append(var.getType().accept(this));
+            for (int i = 0; i < edges.size(); i++) {
+                llvmCode.append(" [").append(values.get(i)).append(", %").append(edges.get(i).label).append(']');
+                if (i < (edges.size() - 1)) {
+                    llvmCode.append(',');
+                }
+            }
+            llvmCode.append('\n');
+            merged.put(var, phi);
+        }
+        currentValues = merged;
+    }
+
+    /**
+     * Prepares the loop header for SSA mode: every variable that is changed in the loop body gets a phi register,
+     * whose phi instruction is inserted later by {@link #closeLoopHeader} once the back edge is known.
+     *
+     * @param body the loop body
+     * @return the variables changed in the loop body (empty if not in SSA mode)
+     */
+    private List<ASTVariable> openLoopHeader(ASTBlock body) {
+        if (!ssa) {
+            return Collections.emptyList();
+        }
+
+        List<ASTVariable> loopVariables = declarationCollector.collectAssignedVariables(body);
+        loopVariables.forEach(var -> currentValues.put(var, getNextRegister()));
+        return loopVariables;
+    }
+
+    /**
+     * Inserts the phi instructions of the loop variables at the start of the loop header (SSA mode only).
+     *
+     * @param phiPosition the position in the llvm code right after the loop header label
+     * @param loopVariables the variables changed in the loop body
+     * @param headerValues the variable values in the loop header, i.e. the phi registers of the loop variables
+     * @param entry the edge entering the loop
+     * @param backEdge the edge jumping back to the loop header or null if there is none
+     */
+    private void closeLoopHeader(int phiPosition, List<ASTVariable> loopVariables, Map<ASTVariable, String> headerValues,
+                                 IncomingEdge entry, IncomingEdge backEdge) {
+        StringBuilder phis = new StringBuilder();
+        for (ASTVariable var : loopVariables) {
+            String phi = headerValues.get(var);
+            phis.append('\t').append(phi).append(" = phi ").append(var.getType().accept(this));
+            phis.append(" [").append(entry.values.getOrDefault(var, "undef")).append(", %").append(entry.label);
+            phis.append(']');
+            if (backEdge != null) {
+                phis.append(", [").append(backEdge.values.getOrDefault(var, "undef")).append(", %");
+                phis.append(backEdge.label).append(']');
+            }
+            phis.append('\n');
+        }
+        llvmCode.insert(phiPosition, phis);
+    }
+
+    /**
+     * Retrieves the name of the actual LLVM function for that specific function definition.
      * If none has been assigned yet, a new one will be created.
      *
-     * @param header the function header
+     * @param funcDef the function definition
      * @return a unique name
      */
-    private String getNameForFunction(FuncHeader header) {
-        if (funcNames.containsKey(header)) {
-            return funcNames.get(header);
+    private String getNameForFunction(ASTFuncDef funcDef) {
+        if (funcNames.containsKey(funcDef)) {
+            return funcNames.get(funcDef);
         }
         else {
             nextFuncID++;
             // we begin actual function names with an underscore, because myun does not allow
             // function names to start with an underscore, so there will never be any name collisions
-            String realName = "_"+header.getName()+nextFuncID;
-            funcNames.put(header, realName);
+            String realName = "_"+funcDef.getName()+nextFuncID;
+            funcNames.put(funcDef, realName);
             return realName;
         }
     }
 
     @Override
     public void visit(ASTAssignment node) {
-        // compute the expression value and type
+        // compute the expression value and store it in the variable
         String exprVal = getConstantOrRegister(node.getExpr());
-        String varName = node.getVariable().getName();
-        String type = node.getVariable().getType().accept(this);
-
-        // store the expression in the stack variable
-        llvmCode.append("\tstore ").append(type).append(' ').append(exprVal).append(", ").
-                append(type).append("* %").append(varName).append('\n');
+        setVariable(node.getVariable(), exprVal);
     }
 
     @Override
@@ -182,73 +512,90 @@ class MyunToLLVMTranslator implements ASTExpressionVisitor<String>, ASTNonExpres
 
     @Override
     public void visit(ASTBlock node) {
-        node.getStatements().forEach(stmt -> stmt.accept(this));
-        node.getFuncReturn().ifPresent(funcRet -> funcRet.accept(this));
-        node.getLoopBreak().ifPresent(loopBreak -> loopBreak.accept(this));
+        node.getStatements().forEach(stmt -> traversal.then(() -> stmt.accept(this)));
+        node.getFuncReturn().ifPresent(funcRet -> traversal.then(() -> funcRet.accept(this)));
+        node.getLoopBreak().ifPresent(loopBreak -> traversal.then(() -> loopBreak.accept(this)));
     }
 
     @Override
     public void visit(ASTBranch node) {
         // suffix for the labels unique for this branch
         int labelID = getNextLabelID();
+        Map<ASTVariable, String> valuesBefore = new IdentityHashMap<>(currentValues);
+        List<IncomingEdge> joinEdges = new ArrayList<>();
 
-        llvmCode.append("\tbr label %if").append(labelID).append("_0\n");
+        emitJump("if" + labelID + "_0");
         for (int i = 0; i < node.getConditions().size(); i++) {
             String suffix = labelID + "_" + i;
             String nextSuffix = labelID + "_" + (i+1);
-
-            // evaluate the if condition
-            llvmCode.append("if").append(suffix).append(":\n");
-            String ifCond = getConstantOrRegister(node.getConditions().get(i));
-
-            // compare then jump
-            llvmCode.append("\tbr i1 ").append(ifCond);
-            llvmCode.append(", label %then").append(suffix);
-            llvmCode.append(", label %if").append(nextSuffix).append('\n');
-
-            // block of the current branch
-            llvmCode.append("then").append(suffix).append(":\n");
-            prevLabel = "then"+suffix;
-            node.getBlocks().get(i).accept(this);
-            llvmCode.append("\tbr label %ifCont").append(labelID).append('\n');
+            ASTExpression condition = node.getConditions().get(i);
+            ASTBlock block = node.getBlocks().get(i);
+
+            traversal.then(() -> {
+                // evaluate the if condition
+                emitLabel("if" + suffix);
+                String ifCond = getConstantOrRegister(condition);
+
+                // compare then jump
+                llvmCode.append("\tbr i1 ").append(ifCond);
+                llvmCode.append(", label %then").append(suffix);
+                llvmCode.append(", label %if").append(nextSuffix).append('\n');
+
+                // block of the current branch
+                emitLabel("then" + suffix);
+                currentValues = new IdentityHashMap<>(valuesBefore);
+            });
+            traversal.then(() -> block.accept(this));
+            traversal.then(() -> {
+                if (!blockTerminated) {
+                    joinEdges.add(currentEdge());
+                }
+                emitJump("ifCont" + labelID);
+            });
         }
         String elseSuffix = labelID + "_" + node.getConditions().size();
 
         // else-block
-        llvmCode.append("if").append(elseSuffix).append(":\n");
-        prevLabel = "if"+elseSuffix;
-        node.getElseBlock().ifPresent(b -> b.accept(this));
+        traversal.then(() -> {
+            emitLabel("if" + elseSuffix);
+            currentValues = new IdentityHashMap<>(valuesBefore);
+        });
+        node.getElseBlock().ifPresent(b -> traversal.then(() -> b.accept(this)));
+        traversal.then(() -> {
+            if (!blockTerminated) {
+                joinEdges.add(currentEdge());
+            }
 
-        // go on with the control flow
-        llvmCode.append("\tbr label %ifCont").append(labelID).append('\n');
-        llvmCode.append("ifCont").append(labelID).append(":\n");
-        prevLabel = "ifCont" + labelID;
+            // go on with the control flow
+            emitJump("ifCont" + labelID);
+            emitLabel("ifCont" + labelID);
+            if (ssa) {
+                mergeValues(joinEdges, valuesBefore);
+            }
+        });
     }
 
     @Override
     public void visit(ASTCompileUnit node) {
-        node.getFuncDefs().forEach(funcDef -> funcDef.accept(this));
-        node.getScript().accept(this);
+        for (ASTFuncDef funcDef : node.getFuncDefs()) {
+            traversal.then(() -> funcDef.accept(this));
+            traversal.then(this::flushFinishedCode);
+        }
+        traversal.then(() -> node.getScript().accept(this));
     }
 
     @Override
-    public <CT> String visit(ASTConstant<CT> node) {
-        return node.getValue().toString();
+    public <CT> Void visit(ASTConstant<CT> node) {
+        values.push(node.getValue().toString());
+        return null;
     }
 
     @Override
     public void visit(ASTDeclaration node) {
-        // compute the expression value and type
+        // compute the expression value and initialize the variable
+        // (the stack space has already been allocated in the entry block)
         String exprVal = getConstantOrRegister(node.getExpr());
-        String varName = node.getVariable().getName();
-        String type = node.getVariable().getType().accept(this);
-
-        // allocate space for this variable on the stack if it is a declaration
-        llvmCode.append("\t%").append(varName).append(" = alloca ").append(type).append('\n');
-
-        // initialize the value
-        llvmCode.append("\tstore ").append(type).append(' ').append(exprVal).append(", ").
-                append(type).append("* %").append(varName).append('\n');
+        setVariable(node.getVariable(), exprVal);
     }
 
     @Override
@@ -258,20 +605,24 @@ class MyunToLLVMTranslator implements ASTExpressionVisitor<String>, ASTNonExpres
         String itType = node.getVariable().getType().accept(this);
         int labelID = getNextLabelID();
 
-        // start the loop
-        llvmCode.append("\tbr label %loop").append(labelID).append('\n');
-        llvmCode.append("loop").append(labelID).append(":\n");
-
-        // set var to from
+        // set var to from and evaluate the upper bound (before entering the loop)
+        // the bounds are evaluated exactly once, so that the loop header does not re-evaluate them in every iteration
         String fromVal = getConstantOrRegister(node.getFrom());
+        String toVal = getConstantOrRegister(node.getTo());
+        IncomingEdge entryEdge = currentEdge();
+
+        // start the loop
+        emitJump("loop" + labelID);
+        emitLabel("loop" + labelID);
+        int phiPosition = llvmCode.length();
+        List<ASTVariable> loopVariables = openLoopHeader(node.getBlock());
 
         // generate the phi instruction for our iteration variable
         llvmCode.append('\t').append(itVar).append(" = phi ").append(itType);
-        llvmCode.append(" [").append(fromVal).append(", %").append(prevLabel).append("],");
+        llvmCode.append(" [").append(fromVal).append(", %").append(entryEdge.label).append("],");
         llvmCode.append(" [").append(nextIt).append(", %loopIncr").append(labelID).append("]\n");
 
         // check if i reached the to-value yet
-        String toVal = getConstantOrRegister(node.getTo());
         String cmpResult = getNextRegister();
         llvmCode.append('\t').append(cmpResult).append(" = icmp sle ").append(PrimitiveTypes.LLVM_INT);
         llvmCode.append(' ').append(itVar).append(", ").append(toVal).append('\n');
@@ -280,106 +631,331 @@ class MyunToLLVMTranslator implements ASTExpressionVisitor<String>, ASTNonExpres
         llvmCode.append("\tbr i1 ").append(cmpResult);
         llvmCode.append(", label %loopBody").append(labelID);
         llvmCode.append(", label %loopCont").append(labelID).append('\n');
+        List<IncomingEdge> exitEdges = new ArrayList<>();
+        exitEdges.add(currentEdge());
+        Map<ASTVariable, String> headerValues = currentEdge().values;
 
         // loop body
-        llvmCode.append("loopBody").append(labelID).append(":\n");
-        prevLabel = "loopBody"+labelID;
+        emitLabel("loopBody" + labelID);
         currentLoopExit.push("loopCont"+labelID);
-        node.getBlock().accept(this);
-
-        // increment the iteration variable
-        llvmCode.append("\tbr label %loopIncr").append(labelID).append('\n');
-        llvmCode.append("loopIncr").append(labelID).append(":\n");
-        llvmCode.append('\t').append(nextIt).append(" = add ").append(PrimitiveTypes.LLVM_INT).append(" 1, ").append
-                (itVar).append('\n');
-        llvmCode.append("\tbr label %loop").append(labelID).append('\n');
+        currentLoopExitEdges.push(exitEdges);
+        traversal.then(() -> node.getBlock().accept(this));
+        traversal.then(() -> {
+            currentLoopExit.pop();
+            currentLoopExitEdges.pop();
+
+            // increment the iteration variable
+            // (if the body never reaches the increment, the values of the loop header are still valid)
+            Map<ASTVariable, String> latchValues = blockTerminated ? headerValues : currentValues;
+            emitJump("loopIncr" + labelID);
+            emitLabel("loopIncr" + labelID);
+            llvmCode.append('\t').append(nextIt).append(" = add ").append(PrimitiveTypes.LLVM_INT).append(" 1, ").append
+                    (itVar).append('\n');
+            emitJump("loop" + labelID);
+            if (ssa) {
+                closeLoopHeader(phiPosition, loopVariables, headerValues, entryEdge,
+                        new IncomingEdge("loopIncr" + labelID, latchValues));
+            }
 
-        // loop end
-        llvmCode.append("loopCont").append(labelID).append(":\n");
-        prevLabel = "loopCont" + labelID;
-        currentLoopExit.pop();
+            // loop end
+            emitLabel("loopCont" + labelID);
+            if (ssa) {
+                mergeValues(exitEdges, headerValues);
+            }
+        });
     }
 
     @Override
-    public String visit(ASTFuncCall node) {
-        // we need the return type and argument types of the function call
-        List<MyunType> argTypes = node.getArgs().stream().map(ASTExpression::getType).collect(Collectors.toList());
-        FuncHeader header = new FuncHeader(node.getFunction(), argTypes);
-        MyunType retType = node.getScope().getFunctionInfo(header, node.getSourcePosition()).getType().getReturnType();
-
-        // retrieve the appropriate llvm instruction
+    public Void visit(ASTFuncCall node) {
+        // retrieve the appropriate llvm instruction or the called function
+        CallTarget target = getTarget(node);
         StringBuilder callBuilder = new StringBuilder();
-        Optional<LLVMInstruction> llvmInstruction = MyunCoreScope.getLLVMInstruction(node.getFunction(), argTypes);
+        Optional<LLVMInstruction> llvmInstruction = target.getLLVMInstruction();
+        if (llvmInstruction.isPresent() && isShortCircuitOperator(node.getFunction())) {
+            shortCircuit(node);
+            return null;
+        }
         if (llvmInstruction.isPresent()) {
             callBuilder.append(llvmInstruction.get().getInstruction()).append(' ');
         } else {
-            callBuilder.append("call ").append(retType.accept(this)).append(" @").append(getNameForFunction(header)).append('(');
+            callBuilder.append("call ").append(CALLING_CONVENTION).append(' ');
+            callBuilder.append(target.getReturnType().accept(this));
+            callBuilder.append(" @").append(getNameForFunction(target.getFuncDef().get())).append('(');
         }
 
         // go through the function arguments and create code to evaluate the expressions
-        for (int i = 0; i < node.getArgs().size(); i++) {
-            ASTExpression arg = node.getArgs().get(i);
+        // (generate code for the argument evaluation if necessary)
+        node.getArgs().forEach(this::scheduleConstantOrRegister);
+        expressionTraversal.then(() -> {
+            // the values of the arguments are on top of the stack, the last one first
+            String[] argVals = new String[node.getArgs().size()];
+            for (int i = argVals.length - 1; i >= 0; i--) {
+                argVals[i] = values.pop();
+            }
 
-            // generate code for the argument evaluation if necessary
-            String argVal = getConstantOrRegister(arg);
+            for (int i = 0; i < node.getArgs().size(); i++) {
+                ASTExpression arg = node.getArgs().get(i);
 
-            // for native llvm instructions we do not need to annotate the type
-            if (!llvmInstruction.isPresent() || llvmInstruction.get().isNeedsTypes()) {
-                callBuilder.append(arg.getType().accept(this));
-                callBuilder.append(' ');
-            }
+                // for native llvm instructions we do not need to annotate the type
+                if (!llvmInstruction.isPresent() || llvmInstruction.get().isNeedsTypes()) {
+                    callBuilder.append(arg.getType().accept(this));
+                    callBuilder.append(' ');
+                }
 
-            // now actually add the argument to the call
-            callBuilder.append(argVal);
+                // now actually add the argument to the call
+                callBuilder.append(argVals[i]);
 
-            if (i < (node.getArgs().size() - 1)) {
-                callBuilder.append(", ");
+                if (i < (node.getArgs().size() - 1)) {
+                    callBuilder.append(", ");
+                }
             }
-        }
-        if (!llvmInstruction.isPresent() || llvmInstruction.get().isNeedsClosingParenthesis()) {
-            callBuilder.append(')');
-        }
+            if (!llvmInstruction.isPresent() || llvmInstruction.get().isNeedsClosingParenthesis()) {
+                callBuilder.append(')');
+            }
+
+            // finally, we can push our call instruction
+            values.push(callBuilder.toString());
+        });
+        return null;
+    }
+
+    /**
+     * Returns the function that is called by a call.
+     * The type inference has usually stored it on the call already, only ambiguous calls are looked up again.
+     *
+     * @param funcCall the function call
+     * @return the called function
+     */
+    private static CallTarget getTarget(ASTFuncCall funcCall) {
+        return funcCall.getTarget().orElseGet(() -> {
+            List<MyunType> argTypes = funcCall.getArgs().stream().map(ASTExpression::getType).
+                    collect(Collectors.toList());
+            return CallTarget.resolve(funcCall.getScope(), new FuncHeader(funcCall.getFunction(), argTypes),
+                    funcCall.getSourcePosition());
+        });
+    }
+
+    private static boolean isShortCircuitOperator(String function) {
+        return "and".equals(function) || "or".equals(function);
+    }
+
+    /**
+     * Generates code for the boolean operators and/or, which only evaluate their right operand if the left operand
+     * does not decide the result already.
+     * The result is merged with a phi instruction, so this method must push the phi instruction itself
+     * (it is placed right at the start of the continuation block).
+     *
+     * @param node the call of and/or
+     */
+    private void shortCircuit(ASTFuncCall node) {
+        boolean isAnd = "and".equals(node.getFunction());
+        int labelID = getNextLabelID();
 
-        // finally, we can return our call instruction
-        return callBuilder.toString();
+        // evaluate the left operand; for and we only need the right one if it is true, for or if it is false
+        scheduleConstantOrRegister(node.getArgs().get(0));
+        expressionTraversal.then(() -> {
+            String lhsVal = values.pop();
+            String lhsLabel = prevLabel;
+            llvmCode.append("\tbr i1 ").append(lhsVal);
+            if (isAnd) {
+                llvmCode.append(", label %scRhs").append(labelID).append(", label %scCont").append(labelID);
+                llvmCode.append('\n');
+            } else {
+                llvmCode.append(", label %scCont").append(labelID).append(", label %scRhs").append(labelID);
+                llvmCode.append('\n');
+            }
+            blockTerminated = true;
+
+            // evaluate the right operand
+            emitLabel("scRhs" + labelID);
+            scheduleConstantOrRegister(node.getArgs().get(1));
+            expressionTraversal.then(() -> {
+                String rhsVal = values.pop();
+                String rhsLabel = prevLabel;
+                emitJump("scCont" + labelID);
+
+                // if we skipped the right operand, the result is the value of the left operand
+                emitLabel("scCont" + labelID);
+                values.push("phi " + PrimitiveTypes.LLVM_BOOL + " [" + (isAnd ? "false" : "true") + ", %" + lhsLabel +
+                        "], [" + rhsVal + ", %" + rhsLabel + ']');
+            });
+        });
     }
 
     @Override
     public void visit(ASTFuncDef node) {
-        FuncHeader header = new FuncHeader(node.getName(),
-                node.getParameters().stream().map(ASTExpression::getType).collect(Collectors.toList()));
+        currentFunction = node;
+        tailRecursionEdges = new ArrayList<>();
+        boolean tailRecursive = containsSelfTailCall(node.getBlock());
 
         // function definition
         MyunType returnType = node.getReturnType();
-        llvmCode.append("define ").append(returnType.accept(this)).append(" @").append(getNameForFunction(header));
+        llvmCode.append("define ").append(CALLING_CONVENTION).append(' ').append(returnType.accept(this));
+        llvmCode.append(" @").append(getNameForFunction(node));
 
         // params
+        // (if the function calls itself in tail position, the actual parameter registers are defined in the loop below)
         llvmCode.append('(');
         for (int i = 0; i < node.getParameters().size(); i++) {
             ASTVariable paramVar = node.getParameters().get(i);
             MyunType paramType = paramVar.getType();
 
-            llvmCode.append(paramType.accept(this)).append(' ').append(paramVar.accept(this));
+            llvmCode.append(paramType.accept(this)).append(' ').append(translateExpression(paramVar));
+            if (tailRecursive) {
+                llvmCode.append(PARAMETER_SUFFIX);
+            }
 
             if (i < (node.getParameters().size() - 1)) {
                 llvmCode.append(", ");
             }
         }
         llvmCode.append(") {\n");
-        llvmCode.append("entry:\n");
-        prevLabel = "entry";
+        emitLabel("entry");
+        declareLocalVariables(node.getBlock(), node.getParameters());
+
+        // self recursive tail calls jump back to this block instead of calling the function again
+        int phiPosition = llvmCode.length();
+        if (tailRecursive) {
+            emitJump("tailRecursion");
+            emitLabel("tailRecursion");
+            phiPosition = llvmCode.length();
+        }
 
-        node.getBlock().accept(this);
+        traversal.then(() -> node.getBlock().accept(this));
+
+        int paramPhiPosition = phiPosition;
+        traversal.then(() -> {
+            if (!blockTerminated) {
+                llvmCode.append("\tunreachable\n");
+            }
+            if (tailRecursive) {
+                insertParameterPhis(paramPhiPosition, node.getParameters());
+            }
+            llvmCode.append("}\n\n");
+            currentFunction = null;
+        });
+    }
+
+    /**
+     * Checks if the given block (or any nested block) of the current function returns a call of the current function
+     * itself.
+     *
+     * @param block the block
+     * @return true iff there is a self recursive tail call
+     */
+    private boolean containsSelfTailCall(ASTBlock block) {
+        // the nested blocks are checked with a worklist instead of recursion
+        Deque<ASTBlock> blocks = new ArrayDeque<>();
+        blocks.push(block);
+        while (!blocks.isEmpty()) {
+            ASTBlock current = blocks.pop();
+            boolean selfTailCall = current.getFuncReturn().map(ASTFuncReturn::getExpr).
+                    filter(expr -> (expr instanceof ASTFuncCall) && isSelfCall((ASTFuncCall) expr)).isPresent();
+            if (selfTailCall) {
+                return true;
+            }
+
+            for (ASTStatement stmt : current.getStatements()) {
+                if (stmt instanceof ASTBranch) {
+                    ((ASTBranch) stmt).getBlocks().forEach(blocks::push);
+                }
+                else if (stmt instanceof ASTWhileLoop) {
+                    blocks.push(((ASTWhileLoop) stmt).getBlock());
+                }
+                else if (stmt instanceof ASTForLoop) {
+                    blocks.push(((ASTForLoop) stmt).getBlock());
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks if the given call calls the function that is currently translated.
+     *
+     * @param funcCall the function call
+     * @return true iff the current function calls itself
+     */
+    private boolean isSelfCall(ASTFuncCall funcCall) {
+        List<MyunType> argTypes = funcCall.getArgs().stream().map(ASTExpression::getType).collect(Collectors.toList());
+        return (currentFunction != null) &&
+                currentFunction.getHeader().equals(new FuncHeader(funcCall.getFunction(), argTypes));
+    }
+
+    /**
+     * Checks if the given call can be marked as musttail, i.e. the prototypes of the called function and the
+     * current function match.
+     *
+     * @param funcCall the function call
+     * @return true iff the call can be a guaranteed tail call
+     */
+    private boolean hasMatchingPrototype(ASTFuncCall funcCall) {
+        List<MyunType> argTypes = funcCall.getArgs().stream().map(ASTExpression::getType).collect(Collectors.toList());
+        return currentFunction.getHeader().getParameterTypes().equals(argTypes) &&
+                currentFunction.getReturnType().equals(funcCall.getType());
+    }
 
-        llvmCode.append("\tunreachable\n");
-        llvmCode.append("}\n\n");
+    /**
+     * Inserts the phi instructions for the parameters at the start of the tail recursion block.
+     *
+     * @param phiPosition the position right after the tail recursion label
+     * @param parameters the parameters of the current function
+     */
+    private void insertParameterPhis(int phiPosition, List<ASTVariable> parameters) {
+        StringBuilder phis = new StringBuilder();
+        for (ASTVariable param : parameters) {
+            String paramReg = translateExpression(param);
+            phis.append('\t').append(paramReg).append(" = phi ").append(param.getType().accept(this));
+            phis.append(" [").append(paramReg).append(PARAMETER_SUFFIX).append(", %entry]");
+            for (IncomingEdge edge : tailRecursionEdges) {
+                phis.append(", [").append(edge.values.get(param)).append(", %").append(edge.label).append(']');
+            }
+            phis.append('\n');
+        }
+        llvmCode.insert(phiPosition, phis);
     }
 
     @Override
     public void visit(ASTFuncReturn node) {
         MyunType retType = node.getExpr().getType();
-        String retVal = getConstantOrRegister(node.getExpr());
+        String retVal;
+        if ((node.getExpr() instanceof ASTFuncCall) && isSelfCall((ASTFuncCall) node.getExpr())) {
+            // self recursion in tail position: simply jump back to the start with the new arguments
+            tailRecursion((ASTFuncCall) node.getExpr());
+            return;
+        }
+        else if ((node.getExpr() instanceof ASTFuncCall) && (currentFunction != null) &&
+                isUserFunctionCall((ASTFuncCall) node.getExpr())) {
+            // calls of other functions in tail position are tail calls, which are guaranteed if the prototypes match
+            String tailMarker = hasMatchingPrototype((ASTFuncCall) node.getExpr()) ? "musttail " : "tail ";
+            String callVal = translateExpression(node.getExpr());
+            retVal = getNextRegister();
+            llvmCode.append('\t').append(retVal).append(" = ").append(tailMarker).append(callVal).append('\n');
+        }
+        else {
+            retVal = getConstantOrRegister(node.getExpr());
+        }
         llvmCode.append("\tret ").append(retType.accept(this)).append(' ').append(retVal).append('\n');
+        blockTerminated = true;
+    }
+
+    private static boolean isUserFunctionCall(ASTFuncCall funcCall) {
+        return !getTarget(funcCall).getLLVMInstruction().isPresent();
+    }
+
+    /**
+     * Generates the jump back to the start of the current function for a self recursive tail call.
+     *
+     * @param funcCall the self recursive call
+     */
+    private void tailRecursion(ASTFuncCall funcCall) {
+        // first evaluate all arguments, since they might depend on the current parameter values
+        Map<ASTVariable, String> argValues = new IdentityHashMap<>();
+        for (int i = 0; i < funcCall.getArgs().size(); i++) {
+            argValues.put(currentFunction.getParameters().get(i), getConstantOrRegister(funcCall.getArgs().get(i)));
+        }
+        tailRecursionEdges.add(new IncomingEdge(prevLabel, argValues));
+        emitJump("tailRecursion");
     }
 
     @Override
@@ -399,35 +975,50 @@ class MyunToLLVMTranslator implements ASTExpressionVisitor<String>, ASTNonExpres
 
     @Override
     public void visit(ASTLoopBreak node) {
-        llvmCode.append("\tbr label %").append(currentLoopExit.peek()).append('\n');
+        currentLoopExitEdges.peek().add(currentEdge());
+        emitJump(currentLoopExit.peek());
     }
 
     @Override
     public void visit(ASTScript node) {
         // the script is our main function and always returns 0
         llvmCode.append("define ").append(PrimitiveTypes.LLVM_INT).append(" @main() {\n");
-        llvmCode.append("entry:\n");
-        prevLabel = "entry";
-        node.getBlock().accept(this);
-        llvmCode.append("\tret ").append(PrimitiveTypes.LLVM_INT).append(" 0\n");
-        llvmCode.append("}\n");
+        emitLabel("entry");
+        declareLocalVariables(node.getBlock(), Collections.emptyList());
+        traversal.then(() -> node.getBlock().accept(this));
+        traversal.then(() -> {
+            if (!blockTerminated) {
+                llvmCode.append("\tret ").append(PrimitiveTypes.LLVM_INT).append(" 0\n");
+            }
+            llvmCode.append("}\n");
+        });
     }
 
     @Override
     public void visit(ASTProcCall node) {
         // get a dummy register
         String tmp = getNextRegister();
-        String callVal = node.getFuncCall().accept(this);
+        String callVal = translateExpression(node.getFuncCall());
 
         llvmCode.append('\t').append(tmp).append(" = ").append(callVal).append('\n');
     }
 
     @Override
-    public String visit(ASTVariable node) {
+    public Void visit(ASTVariable node) {
+        values.push(getVariableValue(node));
+        return null;
+    }
+
+    private String getVariableValue(ASTVariable node) {
         if (node.isAssignable()) {
+            if (ssa) {
+                // in SSA mode we simply take the current value of the variable
+                return currentValues.getOrDefault(node, "undef");
+            }
+
             // for mutable variables we need to load the value from the stack
             String type = node.getType().accept(this);
-            return "load " + type + ", " +  type + "* %" + node.getName();
+            return "load " + type + ", " +  type + "* " + getStackSlot(node);
         }
         else if (itVarMap.containsKey(node.getName())) {
             // for unmutable register we need to be careful about iteration variables
@@ -444,10 +1035,13 @@ class MyunToLLVMTranslator implements ASTExpressionVisitor<String>, ASTNonExpres
     @Override
     public void visit(ASTWhileLoop node) {
         int labelID = getNextLabelID();
+        IncomingEdge entryEdge = currentEdge();
 
         // start the loop
-        llvmCode.append("\tbr label %loop").append(labelID).append('\n');
-        llvmCode.append("loop").append(labelID).append(":\n");
+        emitJump("loop" + labelID);
+        emitLabel("loop" + labelID);
+        int phiPosition = llvmCode.length();
+        List<ASTVariable> loopVariables = openLoopHeader(node.getBlock());
 
         // check the condition
         String condVal = getConstantOrRegister(node.getCondition());
@@ -460,17 +1054,31 @@ class MyunToLLVMTranslator implements ASTExpressionVisitor<String>, ASTNonExpres
         llvmCode.append("\tbr i1 ").append(cmpResult);
         llvmCode.append(", label %loopBody").append(labelID);
         llvmCode.append(", label %loopCont").append(labelID).append('\n');
+        List<IncomingEdge> exitEdges = new ArrayList<>();
+        exitEdges.add(currentEdge());
+        Map<ASTVariable, String> headerValues = currentEdge().values;
 
         // loop body
-        llvmCode.append("loopBody").append(labelID).append(":\n");
-        prevLabel = "loopBody"+labelID;
+        emitLabel("loopBody" + labelID);
         currentLoopExit.push("loopCont"+labelID);
-        node.getBlock().accept(this);
-        llvmCode.append("\tbr label %loop").append(labelID).append('\n');
+        currentLoopExitEdges.push(exitEdges);
+        traversal.then(() -> node.getBlock().accept(this));
+        traversal.then(() -> {
+            currentLoopExit.pop();
+            currentLoopExitEdges.pop();
+
+            // jump back to the loop header (unless the body always breaks or returns)
+            IncomingEdge backEdge = blockTerminated ? null : currentEdge();
+            emitJump("loop" + labelID);
+            if (ssa) {
+                closeLoopHeader(phiPosition, loopVariables, headerValues, entryEdge, backEdge);
+            }
 
-        // loop end
-        llvmCode.append("loopCont").append(labelID).append(":\n");
-        prevLabel = "loopCont" + labelID;
-        currentLoopExit.pop();
+            // loop end
+            emitLabel("loopCont" + labelID);
+            if (ssa) {
+                mergeValues(exitEdges, headerValues);
+            }
+        });
     }
 }
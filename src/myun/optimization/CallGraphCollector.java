@@ -0,0 +1,142 @@
+package myun.optimization;
+
+import myun.AST.*;
+import myun.scope.MyunCoreScope;
+import myun.type.FuncHeader;
+import myun.type.MyunType;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Collects all user-defined functions that can be reached from the script via (transitive) calls.
+ */
+final class CallGraphCollector implements ASTVisitor<Void> {
+    private final ASTTraversal traversal;
+    private Set<ASTFuncDef> reachableFunctions;
+    private Deque<ASTFuncDef> unvisitedFunctions;
+
+    CallGraphCollector() {
+        traversal = new ASTTraversal();
+        reachableFunctions = Collections.newSetFromMap(new IdentityHashMap<>());
+        unvisitedFunctions = new ArrayDeque<>();
+    }
+
+    /**
+     * Collects the functions that are called by the script, the functions called by those functions, and so on.
+     *
+     * @param script the script, which is the root of the call graph
+     * @return the reachable function definitions
+     */
+    Set<ASTFuncDef> collectReachableFunctions(ASTScript script) {
+        reachableFunctions = Collections.newSetFromMap(new IdentityHashMap<>());
+        unvisitedFunctions = new ArrayDeque<>();
+
+        traversal.run(() -> script.accept(this));
+        while (!unvisitedFunctions.isEmpty()) {
+            ASTFuncDef funcDef = unvisitedFunctions.pop();
+            traversal.run(() -> funcDef.accept(this));
+        }
+        return reachableFunctions;
+    }
+
+    private Void visitChild(ASTNode child) {
+        traversal.then(() -> child.accept(this));
+        return null;
+    }
+
+    @Override
+    public Void visit(ASTAssignment node) {
+        return visitChild(node.getExpr());
+    }
+
+    @Override
+    public Void visit(ASTBlock node) {
+        node.getStatements().forEach(this::visitChild);
+        node.getFuncReturn().ifPresent(this::visitChild);
+        return null;
+    }
+
+    @Override
+    public Void visit(ASTBranch node) {
+        node.getConditions().forEach(this::visitChild);
+        node.getBlocks().forEach(this::visitChild);
+        return null;
+    }
+
+    @Override
+    public Void visit(ASTCompileUnit node) {
+        return null;
+    }
+
+    @Override
+    public <CT> Void visit(ASTConstant<CT> node) {
+        return null;
+    }
+
+    @Override
+    public Void visit(ASTDeclaration node) {
+        return visitChild(node.getExpr());
+    }
+
+    @Override
+    public Void visit(ASTForLoop node) {
+        visitChild(node.getFrom());
+        visitChild(node.getTo());
+        return visitChild(node.getBlock());
+    }
+
+    @Override
+    public Void visit(ASTFuncCall node) {
+        node.getArgs().forEach(this::visitChild);
+
+        // core functions have no definition
+        List<MyunType> argTypes = node.getArgs().stream().map(ASTExpression::getType).collect(Collectors.toList());
+        if (MyunCoreScope.getLLVMInstruction(node.getFunction(), argTypes).isPresent()) {
+            return null;
+        }
+
+        FuncHeader header = new FuncHeader(node.getFunction(), argTypes);
+        ASTFuncDef funcDef = node.getScope().getFunctionInfo(header, node.getSourcePosition()).getFuncDef();
+        if (reachableFunctions.add(funcDef)) {
+            unvisitedFunctions.push(funcDef);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(ASTFuncDef node) {
+        return visitChild(node.getBlock());
+    }
+
+    @Override
+    public Void visit(ASTFuncReturn node) {
+        return visitChild(node.getExpr());
+    }
+
+    @Override
+    public Void visit(ASTLoopBreak node) {
+        return null;
+    }
+
+    @Override
+    public Void visit(ASTScript node) {
+        return visitChild(node.getBlock());
+    }
+
+    @Override
+    public Void visit(ASTProcCall node) {
+        return visitChild(node.getFuncCall());
+    }
+
+    @Override
+    public Void visit(ASTVariable node) {
+        return null;
+    }
+
+    @Override
+    public Void visit(ASTWhileLoop node) {
+        visitChild(node.getCondition());
+        return visitChild(node.getBlock());
+    }
+}
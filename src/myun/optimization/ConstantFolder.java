@@ -0,0 +1,335 @@
+package myun.optimization;
+
+import myun.AST.*;
+import myun.scope.MyunCoreScope;
+import myun.type.MyunType;
+import myun.type.inference.ExpressionTypeInferrer;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Folds calls of core operators on constants and propagates variables that are never re-assigned after being
+ * declared with a constant.
+ * Operations whose result is not well-defined at compile time (integer division by zero or overflowing integer
+ * division) or cannot be written as an llvm constant (infinite or NaN floats) are left for the runtime.
+ */
+public final class ConstantFolder implements ASTExpressionVisitor<Void>, ASTNonExpressionVisitor {
+    private final ASTTraversal traversal;
+    // the folded expressions, pushed by the expression visits
+    private final Deque<ASTExpression> foldedExpressions;
+    private final DeclarationCollector declarationCollector;
+    private final ExpressionTypeInferrer expressionTypeInferrer;
+    // variables of the current function that are assigned after their declaration
+    private Set<ASTVariable> reassignedVariables;
+    // constant values of the variables of the current function that can be propagated
+    private Map<ASTVariable, Object> constantVariables;
+
+    public ConstantFolder() {
+        traversal = new ASTTraversal();
+        foldedExpressions = new ArrayDeque<>();
+        declarationCollector = new DeclarationCollector();
+        expressionTypeInferrer = new ExpressionTypeInferrer();
+        reassignedVariables = Collections.newSetFromMap(new IdentityHashMap<>());
+        constantVariables = new IdentityHashMap<>();
+    }
+
+    /**
+     * Folds the constant expressions of the program in place.
+     * The types of the program must have been inferred already.
+     *
+     * @param program the program
+     */
+    public void optimize(ASTCompileUnit program) {
+        traversal.run(() -> program.accept(this));
+    }
+
+    /**
+     * Prepares the propagation of constants for the given function or script body.
+     *
+     * @param body the function or script body
+     */
+    private void foldBody(ASTBlock body) {
+        reassignedVariables = Collections.newSetFromMap(new IdentityHashMap<>());
+        reassignedVariables.addAll(declarationCollector.collectReassignedVariables(body));
+        constantVariables = new IdentityHashMap<>();
+        traversal.then(() -> body.accept(this));
+    }
+
+    private ASTExpression fold(ASTExpression expr) {
+        traversal.run(() -> expr.accept((ASTExpressionVisitor<Void>) this));
+        return foldedExpressions.pop();
+    }
+
+    private ASTConstant<Object> createConstant(SourcePosition sourcePos, Object value, ASTNode original) {
+        ASTConstant<Object> constant = new ASTConstant<>(sourcePos, value);
+        constant.setScope(original.getScope());
+        constant.accept(expressionTypeInferrer);
+        return constant;
+    }
+
+    @Override
+    public <CT> Void visit(ASTConstant<CT> node) {
+        foldedExpressions.push(node);
+        return null;
+    }
+
+    @Override
+    public Void visit(ASTFuncCall node) {
+        node.getArgs().forEach(arg -> traversal.then(() -> arg.accept((ASTExpressionVisitor<Void>) this)));
+        traversal.then(() -> foldedExpressions.push(foldCall(node)));
+        return null;
+    }
+
+    private ASTExpression foldCall(ASTFuncCall node) {
+        // the folded arguments are on top of the stack, the last one first
+        for (int i = node.getArgs().size() - 1; i >= 0; i--) {
+            node.setArg(i, foldedExpressions.pop());
+        }
+
+        // only core operators can be evaluated at compile time
+        List<MyunType> argTypes = node.getArgs().stream().map(ASTExpression::getType).collect(Collectors.toList());
+        if (!node.getArgs().stream().allMatch(arg -> arg instanceof ASTConstant) ||
+                !MyunCoreScope.getLLVMInstruction(node.getFunction(), argTypes).isPresent()) {
+            return node;
+        }
+
+        List<Object> args = node.getArgs().stream().map(arg -> toRuntimeValue(((ASTConstant<?>) arg).getValue())).
+                collect(Collectors.toList());
+        Optional<Object> result = evaluate(node.getFunction(), args);
+        if (result.isPresent()) {
+            return createConstant(node.getSourcePosition(), result.get(), node);
+        }
+        return node;
+    }
+
+    @Override
+    public Void visit(ASTVariable node) {
+        if (constantVariables.containsKey(node)) {
+            foldedExpressions.push(createConstant(node.getSourcePosition(), constantVariables.get(node), node));
+        }
+        else {
+            foldedExpressions.push(node);
+        }
+        return null;
+    }
+
+    @Override
+    public void visit(ASTAssignment node) {
+        node.setExpr(fold(node.getExpr()));
+    }
+
+    @Override
+    public void visit(ASTBlock node) {
+        node.getStatements().forEach(stmt -> traversal.then(() -> stmt.accept(this)));
+
+        // every use of a propagated variable is replaced, so its declaration is not needed anymore
+        traversal.then(() -> node.getStatements().removeIf(stmt -> (stmt instanceof ASTDeclaration) &&
+                constantVariables.containsKey(((ASTDeclaration) stmt).getVariable())));
+        node.getFuncReturn().ifPresent(fR -> traversal.then(() -> fR.accept(this)));
+    }
+
+    @Override
+    public void visit(ASTBranch node) {
+        for (int i = 0; i < node.getConditions().size(); i++) {
+            node.setCondition(i, fold(node.getConditions().get(i)));
+        }
+        node.getBlocks().forEach(b -> traversal.then(() -> b.accept(this)));
+    }
+
+    @Override
+    public void visit(ASTCompileUnit node) {
+        node.getFuncDefs().forEach(funcDef -> traversal.then(() -> funcDef.accept(this)));
+        traversal.then(() -> node.getScript().accept(this));
+    }
+
+    @Override
+    public void visit(ASTDeclaration node) {
+        node.setExpr(fold(node.getExpr()));
+
+        if ((node.getExpr() instanceof ASTConstant) && !reassignedVariables.contains(node.getVariable())) {
+            constantVariables.put(node.getVariable(), ((ASTConstant<?>) node.getExpr()).getValue());
+        }
+    }
+
+    @Override
+    public void visit(ASTForLoop node) {
+        node.setFrom(fold(node.getFrom()));
+        node.setTo(fold(node.getTo()));
+        traversal.then(() -> node.getBlock().accept(this));
+    }
+
+    @Override
+    public void visit(ASTFuncDef node) {
+        foldBody(node.getBlock());
+    }
+
+    @Override
+    public void visit(ASTFuncReturn node) {
+        node.setExpr(fold(node.getExpr()));
+    }
+
+    @Override
+    public void visit(ASTLoopBreak node) {
+    }
+
+    @Override
+    public void visit(ASTProcCall node) {
+        ASTFuncCall funcCall = node.getFuncCall();
+        for (int i = 0; i < funcCall.getArgs().size(); i++) {
+            funcCall.setArg(i, fold(funcCall.getArgs().get(i)));
+        }
+    }
+
+    @Override
+    public void visit(ASTScript node) {
+        foldBody(node.getBlock());
+    }
+
+    @Override
+    public void visit(ASTWhileLoop node) {
+        node.setCondition(fold(node.getCondition()));
+        traversal.then(() -> node.getBlock().accept(this));
+    }
+
+    /**
+     * Converts a constant value to the value the generated code computes with (i64 and double).
+     * Float constants are written in their decimal representation, which is then parsed as a double.
+     *
+     * @param value the value of a constant
+     * @return the value as long, double, or boolean
+     */
+    private static Object toRuntimeValue(Object value) {
+        if (value instanceof Integer) {
+            return ((Integer) value).longValue();
+        }
+        else if (value instanceof Float) {
+            return Double.parseDouble(value.toString());
+        }
+        return value;
+    }
+
+    /**
+     * Evaluates a call of a core operator.
+     *
+     * @param function the name of the operator
+     * @param args the (runtime) values of the arguments
+     * @return the result or empty if the call cannot be evaluated at compile time
+     */
+    private static Optional<Object> evaluate(String function, List<Object> args) {
+        if (args.stream().allMatch(arg -> arg instanceof Long)) {
+            return evaluateInt(function, args.stream().map(arg -> (Long) arg).collect(Collectors.toList()));
+        }
+        else if (args.stream().allMatch(arg -> arg instanceof Double)) {
+            return evaluateFloat(function, args.stream().map(arg -> (Double) arg).collect(Collectors.toList()));
+        }
+        else if (args.stream().allMatch(arg -> arg instanceof Boolean)) {
+            return evaluateBool(function, args.stream().map(arg -> (Boolean) arg).collect(Collectors.toList()));
+        }
+        return Optional.empty();
+    }
+
+    /** @noinspection OverlyComplexMethod */
+    private static Optional<Object> evaluateInt(String function, List<Long> args) {
+        if (args.size() == 1) {
+            return "negate".equals(function) ? Optional.of(-args.get(0)) : Optional.empty();
+        }
+
+        long lhs = args.get(0);
+        long rhs = args.get(1);
+        switch (function) {
+            case "plus":
+                return Optional.of(lhs + rhs);
+            case "minus":
+                return Optional.of(lhs - rhs);
+            case "mult":
+                return Optional.of(lhs * rhs);
+            case "div":
+            case "mod":
+                // division by zero and the overflowing division are undefined in llvm (and trap at runtime)
+                if ((rhs == 0) || ((lhs == Long.MIN_VALUE) && (rhs == -1))) {
+                    return Optional.empty();
+                }
+                return Optional.of("div".equals(function) ? (lhs / rhs) : (lhs % rhs));
+            case "is":
+                return Optional.of(lhs == rhs);
+            case "isLess":
+                return Optional.of(lhs < rhs);
+            case "isLessEq":
+                return Optional.of(lhs <= rhs);
+            case "isGreater":
+                return Optional.of(lhs > rhs);
+            case "isGreaterEq":
+                return Optional.of(lhs >= rhs);
+            default:
+                return Optional.empty();
+        }
+    }
+
+    /** @noinspection OverlyComplexMethod */
+    private static Optional<Object> evaluateFloat(String function, List<Double> args) {
+        Double result;
+        if (args.size() == 1) {
+            result = "negate".equals(function) ? -args.get(0) : null;
+        }
+        else {
+            double lhs = args.get(0);
+            double rhs = args.get(1);
+            switch (function) {
+                case "plus":
+                    result = lhs + rhs;
+                    break;
+                case "minus":
+                    result = lhs - rhs;
+                    break;
+                case "mult":
+                    result = lhs * rhs;
+                    break;
+                case "div":
+                    result = lhs / rhs;
+                    break;
+                case "mod":
+                    result = lhs % rhs;
+                    break;
+                // the comparisons are ordered, i.e. false if one operand is NaN (as in Java)
+                case "is":
+                    return Optional.of(lhs == rhs);
+                case "isLess":
+                    return Optional.of(lhs < rhs);
+                case "isLessEq":
+                    return Optional.of(lhs <= rhs);
+                case "isGreater":
+                    return Optional.of(lhs > rhs);
+                case "isGreaterEq":
+                    return Optional.of(lhs >= rhs);
+                default:
+                    result = null;
+            }
+        }
+
+        // infinity and NaN cannot be written as decimal llvm constants
+        if ((result == null) || result.isInfinite() || result.isNaN()) {
+            return Optional.empty();
+        }
+        return Optional.of(result);
+    }
+
+    private static Optional<Object> evaluateBool(String function, List<Boolean> args) {
+        if (args.size() == 1) {
+            return "not".equals(function) ? Optional.of(!args.get(0)) : Optional.empty();
+        }
+
+        boolean lhs = args.get(0);
+        boolean rhs = args.get(1);
+        switch (function) {
+            case "and":
+                return Optional.of(lhs && rhs);
+            case "or":
+                return Optional.of(lhs || rhs);
+            case "is":
+                return Optional.of(lhs == rhs);
+            default:
+                return Optional.empty();
+        }
+    }
+}
@@ -0,0 +1,277 @@
+package myun.optimization;
+
+import myun.AST.*;
+import myun.type.PrimitiveTypes;
+
+import java.util.*;
+
+/**
+ * Removes code that can never be executed: branches and loops whose conditions are constant, statements after
+ * branches that always return or break, and functions that cannot be reached from the script.
+ * Should run after constant folding, so that as many conditions as possible are constant.
+ */
+public final class DeadCodeEliminator implements ASTNonExpressionVisitor {
+    private final ASTTraversal traversal;
+    private final CallGraphCollector callGraphCollector;
+    private final DeclarationCollector declarationCollector;
+
+    public DeadCodeEliminator() {
+        traversal = new ASTTraversal();
+        callGraphCollector = new CallGraphCollector();
+        declarationCollector = new DeclarationCollector();
+    }
+
+    /**
+     * Removes the dead code of the program in place.
+     * The types of the program must have been inferred already.
+     *
+     * @param program the program
+     */
+    public void optimize(ASTCompileUnit program) {
+        traversal.run(() -> program.accept(this));
+    }
+
+    private static boolean isConstant(ASTExpression expr, boolean value) {
+        return (expr instanceof ASTConstant) && Objects.equals(((ASTConstant<?>) expr).getValue(), value);
+    }
+
+    private static boolean isEmptyRange(ASTExpression from, ASTExpression to) {
+        return (from instanceof ASTConstant) && (to instanceof ASTConstant) &&
+                (((Number) ((ASTConstant<?>) to).getValue()).longValue() <
+                        ((Number) ((ASTConstant<?>) from).getValue()).longValue());
+    }
+
+    /**
+     * Checks if the execution of the given branch never continues after the branch, because each of its blocks
+     * (including an else block) always returns or breaks out of a loop, possibly in a branch at the end of the block.
+     *
+     * @param branch the branch
+     * @return true iff the branch never falls through
+     */
+    private static boolean alwaysTerminates(ASTBranch branch) {
+        // the nested branches at the ends of the blocks are checked with a worklist instead of recursion
+        Deque<ASTBranch> branches = new ArrayDeque<>();
+        branches.push(branch);
+        while (!branches.isEmpty()) {
+            ASTBranch current = branches.pop();
+            if (!current.getElseBlock().isPresent()) {
+                return false;
+            }
+            for (ASTBlock block : current.getBlocks()) {
+                if (block.getFuncReturn().isPresent() || block.getLoopBreak().isPresent()) {
+                    continue;
+                }
+                List<ASTStatement> statements = block.getStatements();
+                if (statements.isEmpty() || !(statements.get(statements.size() - 1) instanceof ASTBranch)) {
+                    return false;
+                }
+                branches.push((ASTBranch) statements.get(statements.size() - 1));
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Creates declarations for all variables that are declared in removed code.
+     * Branches and while loops do not open a new scope, so these variables might still be used after the removed
+     * code. Reading them would have been undefined, so they are simply initialized with a default value.
+     *
+     * @param removedBlock the removed code
+     * @return the declarations with default values
+     */
+    private List<ASTStatement> keepDeclarations(ASTBlock removedBlock) {
+        List<ASTStatement> declarations = new ArrayList<>();
+        for (ASTVariable variable : declarationCollector.collectDeclarations(removedBlock)) {
+            Object defaultValue;
+            if (PrimitiveTypes.MYUN_INT.equals(variable.getType())) {
+                defaultValue = 0;
+            }
+            else if (PrimitiveTypes.MYUN_FLOAT.equals(variable.getType())) {
+                defaultValue = 0.0f;
+            }
+            else {
+                defaultValue = false;
+            }
+
+            ASTConstant<Object> constant = new ASTConstant<>(variable.getSourcePosition(), defaultValue);
+            constant.setScope(variable.getScope());
+            constant.setType(variable.getType());
+            ASTDeclaration declaration = new ASTDeclaration(variable.getSourcePosition(), variable, constant);
+            declaration.setScope(variable.getScope());
+            declarations.add(declaration);
+        }
+        return declarations;
+    }
+
+    private List<ASTStatement> keepDeclarations(List<ASTStatement> removedStatements, SourcePosition sourcePos) {
+        return keepDeclarations(new ASTBlock(sourcePos, removedStatements, null, null));
+    }
+
+    /**
+     * Removes the blocks of a branch whose conditions are constant.
+     *
+     * @param node the branch
+     * @return the statements the branch should be replaced with
+     */
+    private List<ASTStatement> simplifyBranch(ASTBranch node) {
+        List<ASTExpression> conditions = node.getConditions();
+        List<ASTBlock> blocks = node.getBlocks();
+        List<ASTStatement> replacement = new ArrayList<>();
+        int i = 0;
+        while (i < conditions.size()) {
+            if (isConstant(conditions.get(i), false)) {
+                // this block can never be executed
+                replacement.addAll(keepDeclarations(blocks.get(i)));
+                conditions.remove(i);
+                blocks.remove(i);
+            }
+            else if (isConstant(conditions.get(i), true)) {
+                // the blocks after this one can never be executed, so this block is the new else block
+                List<ASTBlock> removedBlocks = blocks.subList(i + 1, blocks.size());
+                removedBlocks.forEach(b -> replacement.addAll(keepDeclarations(b)));
+                removedBlocks.clear();
+                conditions.subList(i, conditions.size()).clear();
+            }
+            else {
+                i++;
+            }
+        }
+
+        if (!conditions.isEmpty()) {
+            replacement.add(node);
+            return replacement;
+        }
+        if (!node.getElseBlock().isPresent()) {
+            return replacement;
+        }
+
+        // only the else block is left
+        ASTBlock elseBlock = node.getElseBlock().get();
+        if (!elseBlock.getFuncReturn().isPresent() && !elseBlock.getLoopBreak().isPresent()) {
+            replacement.addAll(elseBlock.getStatements());
+            return replacement;
+        }
+
+        // a return or break can only be at the end of a block, so we keep the block with a trivial condition
+        ASTConstant<Boolean> always = new ASTConstant<>(node.getSourcePosition(), true);
+        always.setScope(node.getScope());
+        always.setType(PrimitiveTypes.MYUN_BOOL);
+        conditions.add(always);
+        replacement.add(node);
+        return replacement;
+    }
+
+    @Override
+    public void visit(ASTAssignment node) {
+    }
+
+    @Override
+    public void visit(ASTBlock node) {
+        traversal.then(() -> visitStatement(node, 0));
+    }
+
+    /**
+     * Visits the statement at the given index of the block and then simplifies it.
+     */
+    private void visitStatement(ASTBlock node, int i) {
+        if (i < node.getStatements().size()) {
+            ASTStatement stmt = node.getStatements().get(i);
+            traversal.then(() -> stmt.accept(this));
+            traversal.then(() -> simplifyStatement(node, i));
+        }
+    }
+
+    /**
+     * Simplifies the visited statement at the given index of the block and continues with the next statement.
+     */
+    private void simplifyStatement(ASTBlock node, int i) {
+        List<ASTStatement> statements = node.getStatements();
+        ASTStatement stmt = statements.get(i);
+
+        // replace the statement by its remaining parts
+        List<ASTStatement> replacement = Collections.singletonList(stmt);
+        if (stmt instanceof ASTBranch) {
+            replacement = simplifyBranch((ASTBranch) stmt);
+        }
+        else if ((stmt instanceof ASTWhileLoop) && isConstant(((ASTWhileLoop) stmt).getCondition(), false)) {
+            replacement = keepDeclarations(((ASTWhileLoop) stmt).getBlock());
+        }
+        else if ((stmt instanceof ASTForLoop) &&
+                isEmptyRange(((ASTForLoop) stmt).getFrom(), ((ASTForLoop) stmt).getTo())) {
+            // (for loops have their own scope)
+            replacement = Collections.emptyList();
+        }
+        if ((replacement.size() != 1) || (replacement.get(0) != stmt)) {
+            statements.remove(i);
+            statements.addAll(i, replacement);
+            traversal.then(() -> visitStatement(node, i));
+            return;
+        }
+
+        // nothing after a branch that always returns or breaks can be executed
+        int next = i + 1;
+        if ((stmt instanceof ASTBranch) && alwaysTerminates((ASTBranch) stmt)) {
+            List<ASTStatement> removedStatements = statements.subList(i + 1, statements.size());
+            List<ASTStatement> declarations = keepDeclarations(new ArrayList<>(removedStatements),
+                    stmt.getSourcePosition());
+            removedStatements.clear();
+            statements.addAll(declarations);
+            next += declarations.size();
+        }
+        int nextStatement = next;
+        traversal.then(() -> visitStatement(node, nextStatement));
+    }
+
+    @Override
+    public void visit(ASTBranch node) {
+        node.getBlocks().forEach(b -> traversal.then(() -> b.accept(this)));
+    }
+
+    @Override
+    public void visit(ASTCompileUnit node) {
+        node.getFuncDefs().forEach(funcDef -> traversal.then(() -> funcDef.accept(this)));
+        traversal.then(() -> node.getScript().accept(this));
+
+        // only keep the functions that can (still) be called from the script
+        traversal.then(() -> {
+            Set<ASTFuncDef> reachable = callGraphCollector.collectReachableFunctions(node.getScript());
+            node.getFuncDefs().removeIf(funcDef -> !reachable.contains(funcDef));
+        });
+    }
+
+    @Override
+    public void visit(ASTDeclaration node) {
+    }
+
+    @Override
+    public void visit(ASTForLoop node) {
+        traversal.then(() -> node.getBlock().accept(this));
+    }
+
+    @Override
+    public void visit(ASTFuncDef node) {
+        traversal.then(() -> node.getBlock().accept(this));
+    }
+
+    @Override
+    public void visit(ASTFuncReturn node) {
+    }
+
+    @Override
+    public void visit(ASTLoopBreak node) {
+    }
+
+    @Override
+    public void visit(ASTProcCall node) {
+    }
+
+    @Override
+    public void visit(ASTScript node) {
+        traversal.then(() -> node.getBlock().accept(this));
+    }
+
+    @Override
+    public void visit(ASTWhileLoop node) {
+        traversal.then(() -> node.getBlock().accept(this));
+    }
+}
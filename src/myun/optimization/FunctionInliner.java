@@ -0,0 +1,538 @@
+package myun.optimization;
+
+import myun.AST.*;
+import myun.scope.CallTarget;
+import myun.scope.LLVMInstruction;
+import myun.scope.Scope;
+import myun.type.MyunType;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Replaces calls of small user functions by a copy of their body.
+ * The arguments and the result are stored in new variables that are declared right before the statement with the
+ * call, and all variables of the copied body are renamed, so that they cannot collide with the variables of the
+ * caller.
+ * A function can be inlined if
+ * <ul>
+ *     <li>its body (in AST nodes) is not larger than the threshold,</li>
+ *     <li>it only returns at the end of its body,</li>
+ *     <li>it is not (directly or indirectly) recursive, i.e. it is not currently being inlined.</li>
+ * </ul>
+ * Since the body is executed before the rest of the statement, a call is only inlined if it is always evaluated
+ * and nothing with side effects is evaluated before it in the same statement.
+ * Calls that the type inference has not resolved (e.g. in functions that are never called, whose parameter types are
+ * unknown) are left alone.
+ */
+public final class FunctionInliner implements ASTNonExpressionVisitor {
+    public static final int DEFAULT_THRESHOLD = 40;
+
+    // the name of the introduced variables is not a valid identifier, so they cannot clash with user variables
+    private static final String VARIABLE_PREFIX = "inl.";
+
+    private final int threshold;
+    private final ASTTraversal traversal;
+    // the expressions that replace the visited expressions, pushed while inlining the calls of an expression
+    private final Deque<ASTExpression> inlinedExpressions;
+    private final NodeCounter nodeCounter;
+    // the functions that are currently optimized or inlined, used to detect recursion
+    private final Deque<ASTFuncDef> activeFunctions;
+    // the statements that have to be inserted before the current statement
+    private List<ASTStatement> insertedStatements;
+    // whether something with side effects is evaluated before the current expression in the current statement
+    private boolean sideEffectBefore;
+    // whether the current statement is replaced by the inserted statements
+    private boolean removeStatement;
+    // the scope of the current statement, in which new variables are declared
+    private Scope currentScope;
+    private int nextInlineID;
+
+    /**
+     * Creates an inliner with the default threshold.
+     */
+    public FunctionInliner() {
+        this(DEFAULT_THRESHOLD);
+    }
+
+    /**
+     * Creates an inliner.
+     *
+     * @param threshold the maximum number of AST nodes in the body of an inlined function
+     */
+    public FunctionInliner(int threshold) {
+        this.threshold = threshold;
+        traversal = new ASTTraversal();
+        inlinedExpressions = new ArrayDeque<>();
+        nodeCounter = new NodeCounter();
+        activeFunctions = new ArrayDeque<>();
+        insertedStatements = new ArrayList<>();
+        sideEffectBefore = false;
+        removeStatement = false;
+        nextInlineID = 0;
+    }
+
+    /**
+     * Inlines the calls of small functions in the whole program.
+     * The types of the program must have been inferred already.
+     *
+     * @param program the program
+     */
+    public void optimize(ASTCompileUnit program) {
+        traversal.run(() -> program.accept(this));
+    }
+
+    /**
+     * Starts the inlining in a new statement.
+     *
+     * @param stmt the statement
+     */
+    private void startStatement(ASTStatement stmt) {
+        currentScope = stmt.getScope();
+        sideEffectBefore = false;
+    }
+
+    /**
+     * Inlines the calls in the given expression (if possible).
+     *
+     * @param expr the expression, which is always evaluated when the current statement is executed
+     * @return the expression that should be used instead
+     */
+    private ASTExpression inlineCalls(ASTExpression expr) {
+        traversal.run(() -> scheduleInlining(expr));
+        return inlinedExpressions.pop();
+    }
+
+    /**
+     * Schedules the inlining of the calls in the arguments (from left to right) and then of the call itself.
+     * Pushes the expression that should be used instead when it is done.
+     *
+     * @param expr the expression
+     */
+    private void scheduleInlining(ASTExpression expr) {
+        if (!(expr instanceof ASTFuncCall)) {
+            inlinedExpressions.push(expr);
+            return;
+        }
+
+        ASTFuncCall funcCall = (ASTFuncCall) expr;
+        Optional<CallTarget> target = funcCall.getTarget();
+        if (!target.isPresent()) {
+            // the called function is not known, so it might have side effects
+            sideEffectBefore = true;
+            inlinedExpressions.push(funcCall);
+            return;
+        }
+
+        boolean sideEffectBeforeCall = sideEffectBefore;
+        Optional<LLVMInstruction> llvmInstruction = target.get().getLLVMInstruction();
+
+        // the right operand of and/or is not always evaluated
+        if (llvmInstruction.isPresent() && ("and".equals(funcCall.getFunction()) ||
+                "or".equals(funcCall.getFunction()))) {
+            traversal.then(() -> scheduleInlining(funcCall.getArgs().get(0)));
+            traversal.then(() -> {
+                funcCall.setArg(0, inlinedExpressions.pop());
+                sideEffectBefore = true;
+                inlinedExpressions.push(funcCall);
+            });
+            return;
+        }
+
+        funcCall.getArgs().forEach(arg -> traversal.then(() -> scheduleInlining(arg)));
+        traversal.then(() -> {
+            for (int i = funcCall.getArgs().size() - 1; i >= 0; i--) {
+                funcCall.setArg(i, inlinedExpressions.pop());
+            }
+            inlinedExpressions.push(inlineCall(funcCall, target.get(), sideEffectBeforeCall));
+        });
+    }
+
+    private ASTExpression inlineCall(ASTFuncCall funcCall, CallTarget target, boolean sideEffectBeforeCall) {
+        Optional<LLVMInstruction> llvmInstruction = target.getLLVMInstruction();
+        if (llvmInstruction.isPresent()) {
+            sideEffectBefore |= !llvmInstruction.get().isSpeculatable();
+            return funcCall;
+        }
+
+        ASTFuncDef callee = target.getFuncDef().get();
+        sideEffectBefore = true;
+        if (!sideEffectBeforeCall && isInlinable(callee)) {
+            return inline(funcCall, callee);
+        }
+        return funcCall;
+    }
+
+    private boolean isInlinable(ASTFuncDef funcDef) {
+        return !activeFunctions.contains(funcDef) && funcDef.getBlock().getFuncReturn().isPresent() &&
+                !containsNestedReturn(funcDef.getBlock()) && (nodeCounter.countNodes(funcDef.getBlock()) <= threshold);
+    }
+
+    private static boolean containsNestedReturn(ASTBlock block) {
+        // the nested blocks are checked with a worklist instead of recursion
+        Deque<ASTBlock> blocks = new ArrayDeque<>();
+        blocks.push(block);
+        while (!blocks.isEmpty()) {
+            for (ASTStatement stmt : blocks.pop().getStatements()) {
+                List<ASTBlock> nestedBlocks = new ArrayList<>();
+                if (stmt instanceof ASTBranch) {
+                    nestedBlocks.addAll(((ASTBranch) stmt).getBlocks());
+                }
+                else if (stmt instanceof ASTWhileLoop) {
+                    nestedBlocks.add(((ASTWhileLoop) stmt).getBlock());
+                }
+                else if (stmt instanceof ASTForLoop) {
+                    nestedBlocks.add(((ASTForLoop) stmt).getBlock());
+                }
+
+                for (ASTBlock nestedBlock : nestedBlocks) {
+                    if (nestedBlock.getFuncReturn().isPresent()) {
+                        return true;
+                    }
+                    blocks.push(nestedBlock);
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Inserts a copy of the body of the called function before the current statement.
+     *
+     * @param funcCall the call
+     * @param callee the called function
+     * @return the variable that holds the result of the call
+     */
+    private ASTVariable inline(ASTFuncCall funcCall, ASTFuncDef callee) {
+        String prefix = VARIABLE_PREFIX + nextInlineID + '.';
+        nextInlineID++;
+        BodyCopier copier = new BodyCopier(prefix);
+        List<ASTStatement> body = new ArrayList<>();
+
+        // the parameters are simply replaced by variable arguments, since the callee cannot assign them
+        for (int i = 0; i < callee.getParameters().size(); i++) {
+            ASTVariable param = callee.getParameters().get(i);
+            ASTExpression arg = funcCall.getArgs().get(i);
+            if (arg instanceof ASTVariable) {
+                copier.renaming.put(param, (ASTVariable) arg);
+            }
+            else {
+                ASTVariable argVariable = copier.declareCopy(param, true);
+                body.add(createDeclaration(argVariable, arg));
+            }
+        }
+
+        // copy the body and store the returned value
+        ASTBlock calleeBody = callee.getBlock();
+        calleeBody.getStatements().forEach(stmt -> body.add((ASTStatement) stmt.accept(copier)));
+        ASTExpression returnValue = (ASTExpression) calleeBody.getFuncReturn().get().getExpr().accept(copier);
+        // (return is a keyword, so no variable of the callee can have this name)
+        ASTVariable result = copier.declareVariable(prefix + "return", funcCall.getType(), funcCall.getSourcePosition());
+        body.add(createDeclaration(result, returnValue));
+
+        // inline the calls in the copied body as well (but not the callee itself again)
+        List<ASTStatement> outerStatements = insertedStatements;
+        Scope outerScope = currentScope;
+        boolean outerRemoveStatement = removeStatement;
+        activeFunctions.push(callee);
+        ASTBlock copiedBlock = new ASTBlock(funcCall.getSourcePosition(), body, null, null);
+        copiedBlock.setScope(currentScope);
+        traversal.run(() -> copiedBlock.accept(this));
+        activeFunctions.pop();
+        insertedStatements = outerStatements;
+        currentScope = outerScope;
+        removeStatement = outerRemoveStatement;
+        // the inlined body might have side effects
+        sideEffectBefore = true;
+
+        insertedStatements.addAll(body);
+        return result;
+    }
+
+    private ASTDeclaration createDeclaration(ASTVariable variable, ASTExpression expr) {
+        ASTDeclaration declaration = new ASTDeclaration(variable.getSourcePosition(), variable, expr);
+        declaration.setScope(currentScope);
+        return declaration;
+    }
+
+    @Override
+    public void visit(ASTAssignment node) {
+        startStatement(node);
+        node.setExpr(inlineCalls(node.getExpr()));
+    }
+
+    @Override
+    public void visit(ASTBlock node) {
+        traversal.then(() -> visitStatement(node, 0));
+
+        // the statements for the returned expression are placed at the end of the block
+        traversal.then(() -> {
+            insertedStatements = new ArrayList<>();
+            node.getFuncReturn().ifPresent(fR -> fR.accept(this));
+            node.getStatements().addAll(insertedStatements);
+            insertedStatements = new ArrayList<>();
+        });
+    }
+
+    /**
+     * Visits the statement at the given index of the block, inserts the statements of the inlined calls before it,
+     * and then continues with the next statement.
+     */
+    private void visitStatement(ASTBlock node, int i) {
+        List<ASTStatement> statements = node.getStatements();
+        if (i >= statements.size()) {
+            return;
+        }
+        insertedStatements = new ArrayList<>();
+        removeStatement = false;
+        traversal.then(() -> statements.get(i).accept(this));
+
+        traversal.then(() -> {
+            int next;
+            if (removeStatement) {
+                statements.remove(i);
+                statements.addAll(i, insertedStatements);
+                next = i + insertedStatements.size();
+            }
+            else {
+                statements.addAll(i, insertedStatements);
+                next = i + insertedStatements.size() + 1;
+            }
+            traversal.then(() -> visitStatement(node, next));
+        });
+    }
+
+    @Override
+    public void visit(ASTBranch node) {
+        // only the first condition is always evaluated
+        startStatement(node);
+        node.setCondition(0, inlineCalls(node.getConditions().get(0)));
+
+        List<ASTStatement> conditionStatements = insertedStatements;
+        node.getBlocks().forEach(b -> traversal.then(() -> b.accept(this)));
+        traversal.then(() -> {
+            insertedStatements = conditionStatements;
+            removeStatement = false;
+        });
+    }
+
+    @Override
+    public void visit(ASTCompileUnit node) {
+        node.getFuncDefs().forEach(funcDef -> traversal.then(() -> funcDef.accept(this)));
+        traversal.then(() -> node.getScript().accept(this));
+    }
+
+    @Override
+    public void visit(ASTDeclaration node) {
+        startStatement(node);
+        node.setExpr(inlineCalls(node.getExpr()));
+    }
+
+    @Override
+    public void visit(ASTForLoop node) {
+        // the bounds are evaluated once before the loop
+        startStatement(node);
+        node.setFrom(inlineCalls(node.getFrom()));
+        node.setTo(inlineCalls(node.getTo()));
+
+        List<ASTStatement> boundStatements = insertedStatements;
+        traversal.then(() -> node.getBlock().accept(this));
+        traversal.then(() -> {
+            insertedStatements = boundStatements;
+            removeStatement = false;
+        });
+    }
+
+    @Override
+    public void visit(ASTFuncDef node) {
+        // the parameter types of functions that are never called are not inferred, these functions are removed later
+        if (!node.getParameters().stream().allMatch(param -> (param.getType() != null) &&
+                param.getType().isFullyKnown())) {
+            return;
+        }
+
+        activeFunctions.push(node);
+        traversal.then(() -> node.getBlock().accept(this));
+        traversal.then(activeFunctions::pop);
+    }
+
+    @Override
+    public void visit(ASTFuncReturn node) {
+        startStatement(node);
+        node.setExpr(inlineCalls(node.getExpr()));
+    }
+
+    @Override
+    public void visit(ASTLoopBreak node) {
+    }
+
+    @Override
+    public void visit(ASTProcCall node) {
+        startStatement(node);
+        ASTFuncCall funcCall = node.getFuncCall();
+        ASTExpression replacement = inlineCalls(funcCall);
+
+        // the result is not used, so the inserted statements can replace the call completely
+        removeStatement = replacement != funcCall;
+    }
+
+    @Override
+    public void visit(ASTScript node) {
+        traversal.then(() -> node.getBlock().accept(this));
+    }
+
+    @Override
+    public void visit(ASTWhileLoop node) {
+        // the condition is evaluated in every iteration, so we cannot move anything in front of the loop
+        traversal.then(() -> node.getBlock().accept(this));
+        traversal.then(() -> removeStatement = false);
+    }
+
+    /**
+     * Copies the body of an inlined function, renaming all of its variables.
+     * The copied bodies are not larger than the threshold, so the copier simply recurses.
+     */
+    private final class BodyCopier implements ASTVisitor<ASTNode> {
+        private final String prefix;
+        // maps the variables of the callee to the variables of the copy
+        private final Map<ASTVariable, ASTVariable> renaming;
+
+        private BodyCopier(String prefix) {
+            this.prefix = prefix;
+            renaming = new IdentityHashMap<>();
+        }
+
+        private ASTVariable declareVariable(String name, MyunType type, SourcePosition sourcePos) {
+            ASTVariable variable = new ASTVariable(sourcePos, name);
+            variable.setType(type);
+            variable.setAssignable(true);
+            variable.setScope(currentScope);
+            currentScope.declareVariable(variable);
+            return variable;
+        }
+
+        private ASTVariable declareCopy(ASTVariable original, boolean assignable) {
+            ASTVariable variable = declareVariable(prefix + original.getName(), original.getType(),
+                    original.getSourcePosition());
+            variable.setAssignable(assignable);
+            renaming.put(original, variable);
+            return variable;
+        }
+
+        private <T extends ASTNode> T withScope(T node) {
+            node.setScope(currentScope);
+            return node;
+        }
+
+        private <T extends ASTExpression> T withType(T copy, ASTExpression original) {
+            copy.setType(original.getType());
+            return withScope(copy);
+        }
+
+        private ASTExpression copy(ASTExpression expr) {
+            return (ASTExpression) expr.accept(this);
+        }
+
+        private ASTBlock copy(ASTBlock block) {
+            return (ASTBlock) block.accept(this);
+        }
+
+        @Override
+        public ASTNode visit(ASTAssignment node) {
+            return withScope(new ASTAssignment(node.getSourcePosition(), renaming.get(node.getVariable()),
+                    copy(node.getExpr())));
+        }
+
+        @Override
+        public ASTNode visit(ASTBlock node) {
+            List<ASTStatement> statements = node.getStatements().stream().map(stmt -> (ASTStatement) stmt.accept(this)).
+                    collect(Collectors.toCollection(ArrayList::new));
+            ASTFuncReturn funcReturn = node.getFuncReturn().map(fR -> (ASTFuncReturn) fR.accept(this)).orElse(null);
+            ASTLoopBreak loopBreak = node.getLoopBreak().map(lB -> (ASTLoopBreak) lB.accept(this)).orElse(null);
+            return withScope(new ASTBlock(node.getSourcePosition(), statements, funcReturn, loopBreak));
+        }
+
+        @Override
+        public ASTNode visit(ASTBranch node) {
+            List<ASTExpression> conditions = node.getConditions().stream().map(this::copy).
+                    collect(Collectors.toCollection(ArrayList::new));
+            List<ASTBlock> blocks = node.getBlocks().stream().map(this::copy).
+                    collect(Collectors.toCollection(ArrayList::new));
+            return withScope(new ASTBranch(node.getSourcePosition(), conditions, blocks));
+        }
+
+        @Override
+        public ASTNode visit(ASTCompileUnit node) {
+            throw new IllegalArgumentException("Compile units cannot be inlined.");
+        }
+
+        @Override
+        public <CT> ASTNode visit(ASTConstant<CT> node) {
+            return withType(new ASTConstant<>(node.getSourcePosition(), node.getValue()), node);
+        }
+
+        @Override
+        public ASTNode visit(ASTDeclaration node) {
+            ASTExpression expr = copy(node.getExpr());
+            return withScope(new ASTDeclaration(node.getSourcePosition(), declareCopy(node.getVariable(), true), expr));
+        }
+
+        @Override
+        public ASTNode visit(ASTForLoop node) {
+            // like in the callee, the copied loop gets its own scope (so sibling loops can declare the same names)
+            Scope outerScope = currentScope;
+            currentScope = new Scope(outerScope);
+            ASTExpression from = copy(node.getFrom());
+            ASTExpression to = copy(node.getTo());
+            ASTVariable variable = declareCopy(node.getVariable(), false);
+            ASTBlock block = copy(node.getBlock());
+            currentScope = outerScope;
+            return withScope(new ASTForLoop(node.getSourcePosition(), variable, from, to, block));
+        }
+
+        @Override
+        public ASTNode visit(ASTFuncCall node) {
+            List<ASTExpression> args = node.getArgs().stream().map(this::copy).
+                    collect(Collectors.toCollection(ArrayList::new));
+            ASTFuncCall copy = new ASTFuncCall(node.getSourcePosition(), node.getFunction(), args);
+            copy.setTarget(node.getTarget().orElse(null));
+            return withType(copy, node);
+        }
+
+        @Override
+        public ASTNode visit(ASTFuncDef node) {
+            throw new IllegalArgumentException("Function definitions cannot be inlined.");
+        }
+
+        @Override
+        public ASTNode visit(ASTFuncReturn node) {
+            return withScope(new ASTFuncReturn(node.getSourcePosition(), copy(node.getExpr())));
+        }
+
+        @Override
+        public ASTNode visit(ASTLoopBreak node) {
+            return withScope(new ASTLoopBreak(node.getSourcePosition()));
+        }
+
+        @Override
+        public ASTNode visit(ASTScript node) {
+            throw new IllegalArgumentException("Scripts cannot be inlined.");
+        }
+
+        @Override
+        public ASTNode visit(ASTProcCall node) {
+            return withScope(new ASTProcCall((ASTFuncCall) copy(node.getFuncCall())));
+        }
+
+        @Override
+        public ASTNode visit(ASTVariable node) {
+            return renaming.get(node);
+        }
+
+        @Override
+        public ASTNode visit(ASTWhileLoop node) {
+            return withScope(new ASTWhileLoop(node.getSourcePosition(), copy(node.getCondition()),
+                    copy(node.getBlock())));
+        }
+    }
+}
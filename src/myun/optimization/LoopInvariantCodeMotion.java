@@ -0,0 +1,381 @@
+package myun.optimization;
+
+import myun.AST.*;
+import myun.scope.LLVMInstruction;
+import myun.scope.MyunCoreScope;
+import myun.scope.Scope;
+import myun.type.MyunType;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Moves loop invariant calls out of while and for loops.
+ * A call is loop invariant if it is a speculatable core operation (no side effects, cannot trap) and all of its
+ * arguments are constants or variables that are neither declared nor assigned inside of the loop.
+ * Every invariant call is computed once in a new variable that is declared right before the loop.
+ * Since the calls cannot trap, it does not matter if the loop body is never executed.
+ */
+public final class LoopInvariantCodeMotion implements ASTNonExpressionVisitor {
+    // the name of the introduced variables is not a valid identifier, so they cannot clash with user variables
+    private static final String VARIABLE_PREFIX = "licm.";
+
+    private final ASTTraversal traversal;
+    private final DeclarationCollector declarationCollector;
+    private final InvariantHoister invariantHoister;
+    // the declarations introduced by this pass, which can be moved out of outer loops as a whole
+    private final Set<ASTDeclaration> introducedDeclarations;
+    // declarations that have to be inserted right before the currently visited statement
+    private List<ASTDeclaration> hoistedDeclarations;
+    private int nextVariableID;
+
+    public LoopInvariantCodeMotion() {
+        traversal = new ASTTraversal();
+        declarationCollector = new DeclarationCollector();
+        invariantHoister = new InvariantHoister();
+        introducedDeclarations = Collections.newSetFromMap(new IdentityHashMap<>());
+        hoistedDeclarations = new ArrayList<>();
+        nextVariableID = 0;
+    }
+
+    /**
+     * Moves the loop invariant calls of all loops in the program out of their loops.
+     * The types of the program must have been inferred already.
+     *
+     * @param program the program
+     */
+    public void optimize(ASTCompileUnit program) {
+        traversal.run(() -> program.accept(this));
+    }
+
+    @Override
+    public void visit(ASTAssignment node) {
+    }
+
+    @Override
+    public void visit(ASTBlock node) {
+        traversal.then(() -> visitStatement(node, 0));
+    }
+
+    /**
+     * Visits the statement at the given index of the block and then continues with the next statement.
+     */
+    private void visitStatement(ASTBlock node, int i) {
+        List<ASTStatement> statements = node.getStatements();
+        if (i >= statements.size()) {
+            return;
+        }
+        traversal.then(() -> statements.get(i).accept(this));
+        traversal.then(() -> {
+            // place the computations of the invariant calls right before the loop
+            int next = i + 1;
+            if (!hoistedDeclarations.isEmpty()) {
+                statements.addAll(i, hoistedDeclarations);
+                next += hoistedDeclarations.size();
+                hoistedDeclarations = new ArrayList<>();
+            }
+            int nextStatement = next;
+            traversal.then(() -> visitStatement(node, nextStatement));
+        });
+    }
+
+    @Override
+    public void visit(ASTBranch node) {
+        node.getBlocks().forEach(b -> traversal.then(() -> b.accept(this)));
+    }
+
+    @Override
+    public void visit(ASTCompileUnit node) {
+        node.getFuncDefs().forEach(funcDef -> traversal.then(() -> funcDef.accept(this)));
+        traversal.then(() -> node.getScript().accept(this));
+    }
+
+    @Override
+    public void visit(ASTDeclaration node) {
+    }
+
+    @Override
+    public void visit(ASTForLoop node) {
+        // inner loops first, so that their invariant calls can be moved further out
+        traversal.then(() -> node.getBlock().accept(this));
+
+        // the bounds of the loop are only evaluated once anyway
+        traversal.then(() -> {
+            Set<ASTVariable> variantVariables = collectVariantVariables(node.getBlock());
+            variantVariables.add(node.getVariable());
+            hoistedDeclarations = invariantHoister.hoist(node.getBlock(), node.getScope(), variantVariables);
+        });
+    }
+
+    @Override
+    public void visit(ASTFuncDef node) {
+        traversal.then(() -> node.getBlock().accept(this));
+    }
+
+    @Override
+    public void visit(ASTFuncReturn node) {
+    }
+
+    @Override
+    public void visit(ASTLoopBreak node) {
+    }
+
+    @Override
+    public void visit(ASTProcCall node) {
+    }
+
+    @Override
+    public void visit(ASTScript node) {
+        traversal.then(() -> node.getBlock().accept(this));
+    }
+
+    @Override
+    public void visit(ASTWhileLoop node) {
+        traversal.then(() -> node.getBlock().accept(this));
+
+        traversal.then(() -> {
+            Set<ASTVariable> variantVariables = collectVariantVariables(node.getBlock());
+            List<ASTDeclaration> declarations = invariantHoister.hoist(node.getBlock(), node.getScope(),
+                    variantVariables);
+            node.setCondition(invariantHoister.hoist(node.getCondition()));
+            hoistedDeclarations = declarations;
+        });
+    }
+
+    /**
+     * Collects all variables whose value might change from one loop iteration to the next.
+     * (We compare by identity, since variables with the same name in different scopes are different variables.)
+     *
+     * @param loopBody the body of the loop
+     * @return the variables declared or assigned in the loop body
+     */
+    private Set<ASTVariable> collectVariantVariables(ASTBlock loopBody) {
+        Set<ASTVariable> variantVariables = Collections.newSetFromMap(new IdentityHashMap<>());
+        variantVariables.addAll(declarationCollector.collectAssignedVariables(loopBody));
+        return variantVariables;
+    }
+
+    /**
+     * Replaces the invariant calls of a single loop by new variables.
+     */
+    private final class InvariantHoister implements ASTNonExpressionVisitor {
+        private final ASTTraversal traversal;
+        private Set<ASTVariable> variantVariables;
+        private Scope loopScope;
+        private List<ASTDeclaration> declarations;
+
+        InvariantHoister() {
+            traversal = new ASTTraversal();
+        }
+
+        /**
+         * Replaces all invariant calls in the given loop body.
+         *
+         * @param loopBody         the body of the loop
+         * @param loopScope        the scope in which the loop itself is declared
+         * @param variantVariables the variables that might change in the loop
+         * @return the declarations of the new variables, which have to be placed before the loop
+         */
+        List<ASTDeclaration> hoist(ASTBlock loopBody, Scope loopScope, Set<ASTVariable> variantVariables) {
+            this.variantVariables = variantVariables;
+            this.loopScope = loopScope;
+            declarations = new ArrayList<>();
+            traversal.run(() -> loopBody.accept(this));
+            return declarations;
+        }
+
+        /**
+         * Replaces the expression by a new variable if it is invariant, or its largest invariant sub-expressions
+         * otherwise.
+         *
+         * @param expr the expression
+         * @return the expression that should be used instead
+         */
+        ASTExpression hoist(ASTExpression expr) {
+            if (!(expr instanceof ASTFuncCall)) {
+                // constants and variables are not worth moving
+                return expr;
+            }
+
+            ASTFuncCall funcCall = (ASTFuncCall) expr;
+            Set<ASTFuncCall> invariantCalls = collectInvariantCalls(funcCall);
+            if (invariantCalls.contains(funcCall)) {
+                return declareVariableFor(funcCall);
+            }
+            traversal.run(() -> hoistArgs(funcCall, invariantCalls));
+            return funcCall;
+        }
+
+        /**
+         * Replaces the invariant arguments of a variant call, going down the variant arguments in the same order as
+         * the recursive calls of {@link #hoist(ASTExpression)} would (which is the order of the new variables).
+         */
+        private void hoistArgs(ASTFuncCall funcCall, Set<ASTFuncCall> invariantCalls) {
+            for (int i = 0; i < funcCall.getArgs().size(); i++) {
+                ASTExpression arg = funcCall.getArgs().get(i);
+                if (invariantCalls.contains(arg)) {
+                    int index = i;
+                    traversal.then(() -> funcCall.setArg(index, declareVariableFor((ASTFuncCall) arg)));
+                }
+                else if (arg instanceof ASTFuncCall) {
+                    traversal.then(() -> hoistArgs((ASTFuncCall) arg, invariantCalls));
+                }
+            }
+        }
+
+        /**
+         * Collects the invariant calls of the given expression tree bottom-up, so that every sub-expression is only
+         * checked once.
+         *
+         * @param root the root of the expression tree
+         * @return the invariant calls (compared by identity)
+         */
+        private Set<ASTFuncCall> collectInvariantCalls(ASTFuncCall root) {
+            // in pre-order, the arguments of each call come after the call itself
+            List<ASTFuncCall> calls = new ArrayList<>();
+            Deque<ASTFuncCall> unvisitedCalls = new ArrayDeque<>();
+            unvisitedCalls.push(root);
+            while (!unvisitedCalls.isEmpty()) {
+                ASTFuncCall funcCall = unvisitedCalls.pop();
+                calls.add(funcCall);
+                for (ASTExpression arg : funcCall.getArgs()) {
+                    if (arg instanceof ASTFuncCall) {
+                        unvisitedCalls.push((ASTFuncCall) arg);
+                    }
+                }
+            }
+
+            Set<ASTFuncCall> invariantCalls = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (int i = calls.size() - 1; i >= 0; i--) {
+                ASTFuncCall funcCall = calls.get(i);
+                if (isSpeculatable(funcCall) &&
+                        funcCall.getArgs().stream().allMatch(arg -> isInvariant(arg, invariantCalls))) {
+                    invariantCalls.add(funcCall);
+                }
+            }
+            return invariantCalls;
+        }
+
+        private boolean isInvariant(ASTExpression expr, Set<ASTFuncCall> invariantCalls) {
+            if (expr instanceof ASTConstant) {
+                return true;
+            }
+            else if (expr instanceof ASTVariable) {
+                return !variantVariables.contains(expr);
+            }
+            else {
+                return invariantCalls.contains(expr);
+            }
+        }
+
+        private boolean isInvariant(ASTExpression expr) {
+            Set<ASTFuncCall> invariantCalls = (expr instanceof ASTFuncCall) ?
+                    collectInvariantCalls((ASTFuncCall) expr) : Collections.emptySet();
+            return isInvariant(expr, invariantCalls);
+        }
+
+        private boolean isSpeculatable(ASTFuncCall funcCall) {
+            List<MyunType> argTypes = funcCall.getArgs().stream().map(ASTExpression::getType)
+                    .collect(Collectors.toList());
+            return MyunCoreScope.getLLVMInstruction(funcCall.getFunction(), argTypes)
+                    .map(LLVMInstruction::isSpeculatable).orElse(false);
+        }
+
+        private ASTVariable declareVariableFor(ASTFuncCall funcCall) {
+            ASTVariable variable = new ASTVariable(funcCall.getSourcePosition(), VARIABLE_PREFIX + nextVariableID);
+            nextVariableID++;
+            variable.setType(funcCall.getType());
+            variable.setAssignable(true);
+            variable.setScope(loopScope);
+            loopScope.declareVariable(variable);
+
+            ASTDeclaration declaration = new ASTDeclaration(funcCall.getSourcePosition(), variable, funcCall);
+            declaration.setScope(loopScope);
+            declarations.add(declaration);
+            introducedDeclarations.add(declaration);
+            return variable;
+        }
+
+        @Override
+        public void visit(ASTAssignment node) {
+            node.setExpr(hoist(node.getExpr()));
+        }
+
+        @Override
+        public void visit(ASTBlock node) {
+            Set<ASTStatement> movedStatements = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (ASTStatement stmt : node.getStatements()) {
+                traversal.then(() -> {
+                    // a variable introduced for an inner loop can be moved out of this loop as well
+                    if (introducedDeclarations.contains(stmt) && isInvariant(((ASTDeclaration) stmt).getExpr())) {
+                        declarations.add((ASTDeclaration) stmt);
+                        movedStatements.add(stmt);
+                    }
+                    else {
+                        stmt.accept(this);
+                    }
+                });
+            }
+            traversal.then(() -> node.getStatements().removeIf(movedStatements::contains));
+            node.getFuncReturn().ifPresent(fR -> traversal.then(() -> fR.accept(this)));
+        }
+
+        @Override
+        public void visit(ASTBranch node) {
+            for (int i = 0; i < node.getConditions().size(); i++) {
+                node.setCondition(i, hoist(node.getConditions().get(i)));
+            }
+            node.getBlocks().forEach(b -> traversal.then(() -> b.accept(this)));
+        }
+
+        @Override
+        public void visit(ASTCompileUnit node) {
+        }
+
+        @Override
+        public void visit(ASTDeclaration node) {
+            node.setExpr(hoist(node.getExpr()));
+        }
+
+        @Override
+        public void visit(ASTForLoop node) {
+            // the iteration variable of a nested loop changes in every iteration of the outer loop as well
+            variantVariables.add(node.getVariable());
+            node.setFrom(hoist(node.getFrom()));
+            node.setTo(hoist(node.getTo()));
+            traversal.then(() -> node.getBlock().accept(this));
+        }
+
+        @Override
+        public void visit(ASTFuncDef node) {
+        }
+
+        @Override
+        public void visit(ASTFuncReturn node) {
+            node.setExpr(hoist(node.getExpr()));
+        }
+
+        @Override
+        public void visit(ASTLoopBreak node) {
+        }
+
+        @Override
+        public void visit(ASTProcCall node) {
+            // the procedure call itself has side effects, but its arguments might still be invariant
+            ASTFuncCall funcCall = node.getFuncCall();
+            for (int i = 0; i < funcCall.getArgs().size(); i++) {
+                funcCall.setArg(i, hoist(funcCall.getArgs().get(i)));
+            }
+        }
+
+        @Override
+        public void visit(ASTScript node) {
+        }
+
+        @Override
+        public void visit(ASTWhileLoop node) {
+            node.setCondition(hoist(node.getCondition()));
+            traversal.then(() -> node.getBlock().accept(this));
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package myun.optimization;
+
+import myun.AST.*;
+
+/**
+ * Counts the AST nodes of a (sub-)tree, which serves as a simple estimate of the size of the generated code.
+ */
+final class NodeCounter implements ASTVisitor<Void> {
+    private final ASTTraversal traversal;
+    private int count;
+
+    NodeCounter() {
+        traversal = new ASTTraversal();
+        count = 0;
+    }
+
+    /**
+     * @param node the root of the tree
+     * @return the number of nodes in the tree
+     */
+    int countNodes(ASTNode node) {
+        count = 0;
+        traversal.run(() -> node.accept(this));
+        return count;
+    }
+
+    private void visitChild(ASTNode child) {
+        traversal.then(() -> child.accept(this));
+    }
+
+    /**
+     * Counts the visited node and schedules the visits of its children.
+     */
+    private Void count(ASTNode... children) {
+        count++;
+        for (ASTNode child : children) {
+            visitChild(child);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(ASTAssignment node) {
+        return count(node.getExpr());
+    }
+
+    @Override
+    public Void visit(ASTBlock node) {
+        node.getStatements().forEach(this::visitChild);
+        node.getFuncReturn().ifPresent(this::visitChild);
+        node.getLoopBreak().ifPresent(this::visitChild);
+        return count();
+    }
+
+    @Override
+    public Void visit(ASTBranch node) {
+        node.getConditions().forEach(this::visitChild);
+        node.getBlocks().forEach(this::visitChild);
+        return count();
+    }
+
+    @Override
+    public Void visit(ASTCompileUnit node) {
+        node.getFuncDefs().forEach(this::visitChild);
+        return count(node.getScript());
+    }
+
+    @Override
+    public <CT> Void visit(ASTConstant<CT> node) {
+        return count();
+    }
+
+    @Override
+    public Void visit(ASTDeclaration node) {
+        return count(node.getExpr());
+    }
+
+    @Override
+    public Void visit(ASTForLoop node) {
+        return count(node.getFrom(), node.getTo(), node.getBlock());
+    }
+
+    @Override
+    public Void visit(ASTFuncCall node) {
+        node.getArgs().forEach(this::visitChild);
+        return count();
+    }
+
+    @Override
+    public Void visit(ASTFuncDef node) {
+        return count(node.getBlock());
+    }
+
+    @Override
+    public Void visit(ASTFuncReturn node) {
+        return count(node.getExpr());
+    }
+
+    @Override
+    public Void visit(ASTLoopBreak node) {
+        return count();
+    }
+
+    @Override
+    public Void visit(ASTScript node) {
+        return count(node.getBlock());
+    }
+
+    @Override
+    public Void visit(ASTProcCall node) {
+        return count(node.getFuncCall());
+    }
+
+    @Override
+    public Void visit(ASTVariable node) {
+        return count();
+    }
+
+    @Override
+    public Void visit(ASTWhileLoop node) {
+        return count(node.getCondition(), node.getBlock());
+    }
+}
@@ -0,0 +1,70 @@
+package myun.scope;
+
+import myun.AST.ASTFuncDef;
+import myun.AST.SourcePosition;
+import myun.type.FuncHeader;
+import myun.type.FuncType;
+import myun.type.MyunType;
+
+import java.util.Optional;
+
+/**
+ * The function a call has been resolved to: either a builtin function with its LLVM instruction or a user defined
+ * function with its definition.
+ * It is immutable, so the type inference can share it between all calls with the same signature.
+ */
+public final class CallTarget {
+    private final FuncHeader header;
+    // the type of the function at the time of the resolution
+    private final FuncType type;
+    // the instruction of a builtin function (null for user defined functions)
+    private final LLVMInstruction llvmInstruction;
+    // the definition of a user defined function (null for builtin functions)
+    private final ASTFuncDef funcDef;
+
+    private CallTarget(FuncHeader header, FuncType type, LLVMInstruction llvmInstruction, ASTFuncDef funcDef) {
+        this.header = header;
+        this.type = type;
+        this.llvmInstruction = llvmInstruction;
+        this.funcDef = funcDef;
+    }
+
+    /**
+     * Looks up the function with the given header.
+     *
+     * @param scope the scope of the call
+     * @param header the header of the called function
+     * @param sourcePos the position of the call
+     * @return the target of the call
+     * @throws UndeclaredFunctionCalledException thrown when the function has not been declared
+     */
+    public static CallTarget resolve(Scope scope, FuncHeader header, SourcePosition sourcePos) {
+        FunctionInfo functionInfo = scope.getFunctionInfo(header, sourcePos);
+        return new CallTarget(header, functionInfo.getType(), MyunCoreScope.getLLVMInstruction(header).orElse(null),
+                functionInfo.getFuncDef());
+    }
+
+    public FuncHeader getHeader() {
+        return header;
+    }
+
+    public FuncType getType() {
+        return type;
+    }
+
+    /**
+     * @return the return type, which is read from the definition of user defined functions
+     * because it might have been inferred after the resolution
+     */
+    public MyunType getReturnType() {
+        return (funcDef != null) ? funcDef.getReturnType() : type.getReturnType();
+    }
+
+    public Optional<LLVMInstruction> getLLVMInstruction() {
+        return Optional.ofNullable(llvmInstruction);
+    }
+
+    public Optional<ASTFuncDef> getFuncDef() {
+        return Optional.ofNullable(funcDef);
+    }
+}
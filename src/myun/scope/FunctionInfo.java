@@ -2,10 +2,10 @@ package myun.scope;
 
 import myun.AST.ASTFuncDef;
 import myun.type.FuncType;
-import myun.type.MyunType;
 
 /**
  * Stores information about functions.
+ * It is immutable, a function gets new information when its return type has been inferred.
  */
 public class FunctionInfo {
     // the type of this function
@@ -26,8 +26,4 @@ public class FunctionInfo {
     public ASTFuncDef getFuncDef() {
         return originalDefinition;
     }
-
-    public void setReturnType(MyunType returnType) {
-        type.setReturnType(returnType);
-    }
 }
@@ -7,11 +7,14 @@ public class LLVMInstruction {
     private final String instruction;
     private final boolean needsTypes;
     private final boolean needsClosingParenthesis;
+    // true iff the instruction has no side effects and cannot trap, so it may be executed speculatively
+    private final boolean speculatable;
 
-    LLVMInstruction(String instruction, boolean needsTypes, boolean needsClosingParenthesis) {
+    LLVMInstruction(String instruction, boolean needsTypes, boolean needsClosingParenthesis, boolean speculatable) {
         this.instruction = instruction;
         this.needsTypes = needsTypes;
         this.needsClosingParenthesis = needsClosingParenthesis;
+        this.speculatable = speculatable;
     }
 
     public String getInstruction() {
@@ -25,4 +28,8 @@ public class LLVMInstruction {
     public boolean isNeedsClosingParenthesis() {
         return needsClosingParenthesis;
     }
+
+    public boolean isSpeculatable() {
+        return speculatable;
+    }
 }
@@ -12,17 +12,21 @@ import java.util.*;
 /**
  * Offers the predefined scope with all predefined methods.
  * For example, it contains arithmetic methods, such as plus, minus, etc.
+ * The scope is frozen after its construction, so all compilations share it safely.
  */
 public final class MyunCoreScope extends Scope {
     private static final MyunCoreScope instance = new MyunCoreScope();
 
-    private final Map<FuncHeader, LLVMInstruction> llvmInstructions;
+    // unmodifiable after the construction
+    private Map<FuncHeader, LLVMInstruction> llvmInstructions;
 
     private MyunCoreScope() {
         super(null);
         llvmInstructions = new HashMap<>();
         declareOperators();
         declareIO();
+        llvmInstructions = Collections.unmodifiableMap(llvmInstructions);
+        freeze();
     }
 
     public static MyunCoreScope getInstance() {
@@ -54,7 +58,15 @@ public final class MyunCoreScope extends Scope {
     }
 
     private void declareAndSetLLVMOperator(String name, FuncType type, String opCall) {
-        LLVMInstruction instr = new LLVMInstruction(opCall, false, false);
+        LLVMInstruction instr = new LLVMInstruction(opCall, false, false, true);
+        declareAndSetLLVM(name, type, instr);
+    }
+
+    /**
+     * Declares an operator that might trap at runtime (e.g. integer division by zero).
+     */
+    private void declareAndSetLLVMTrappingOperator(String name, FuncType type, String opCall) {
+        LLVMInstruction instr = new LLVMInstruction(opCall, false, false, false);
         declareAndSetLLVM(name, type, instr);
     }
 
@@ -94,10 +106,10 @@ public final class MyunCoreScope extends Scope {
         declareAndSetLLVMOperator("mult",
                 binaryFunction(PrimitiveTypes.MYUN_INT_NAME, PrimitiveTypes.MYUN_INT_NAME, PrimitiveTypes.MYUN_INT_NAME),
                 "mul " + PrimitiveTypes.LLVM_INT);
-        declareAndSetLLVMOperator("div",
+        declareAndSetLLVMTrappingOperator("div",
                 binaryFunction(PrimitiveTypes.MYUN_INT_NAME, PrimitiveTypes.MYUN_INT_NAME, PrimitiveTypes.MYUN_INT_NAME),
                 "sdiv " + PrimitiveTypes.LLVM_INT);
-        declareAndSetLLVMOperator("mod",
+        declareAndSetLLVMTrappingOperator("mod",
                 binaryFunction(PrimitiveTypes.MYUN_INT_NAME, PrimitiveTypes.MYUN_INT_NAME, PrimitiveTypes.MYUN_INT_NAME),
                 "srem " + PrimitiveTypes.LLVM_INT);
 
@@ -151,13 +163,13 @@ public final class MyunCoreScope extends Scope {
                 "([6 x i8], [6 x i8]* @.str, i32 0, i32 0),";
         declareAndSetLLVM("print",
                 unaryFunction(PrimitiveTypes.MYUN_INT_NAME, PrimitiveTypes.MYUN_INT_NAME),
-                new LLVMInstruction(printfInt, true, true));
+                new LLVMInstruction(printfInt, true, true, false));
 
         String printfFloat = "call i32 (i8*, ...) @printf(i8* getelementptr inbounds " +
                 "([7 x i8], [7 x i8]* @.str.1, i32 0, i32 0),";
         declareAndSetLLVM("print",
                 unaryFunction(PrimitiveTypes.MYUN_FLOAT_NAME, PrimitiveTypes.MYUN_INT_NAME),
-                new LLVMInstruction(printfFloat, true, true));
+                new LLVMInstruction(printfFloat, true, true, false));
     }
 
     /**
@@ -168,11 +180,16 @@ public final class MyunCoreScope extends Scope {
      * @return the native LLVM instruction for that call or empty if none found
      */
     public static Optional<LLVMInstruction> getLLVMInstruction(String name, List<MyunType> argTypes) {
-        FuncHeader header = new FuncHeader(name, argTypes);
-        if (instance.llvmInstructions.containsKey(header)) {
-            return Optional.of(instance.llvmInstructions.get(header));
-        } else {
-            return Optional.empty();
-        }
+        return getLLVMInstruction(new FuncHeader(name, argTypes));
+    }
+
+    /**
+     * Returns the native LLVM operation for a given function header.
+     *
+     * @param header the function header
+     * @return the native LLVM instruction for that function or empty if none found
+     */
+    public static Optional<LLVMInstruction> getLLVMInstruction(FuncHeader header) {
+        return Optional.ofNullable(instance.llvmInstructions.get(header));
     }
 }
@@ -3,18 +3,35 @@ package myun.scope;
 import myun.AST.*;
 import myun.type.FuncHeader;
 import myun.type.FuncType;
+import myun.type.MyunType;
 
 import java.util.*;
-import java.util.stream.Collectors;
 
 /**
  * Represents the scope of a code block.
+ * The variables are stored by their (interned) names, so a variable is found with one lookup per enclosing scope.
+ * Every declared variable gets the depth of the scope and the next free slot in it.
+ * The types of the declared functions are indexed by their names as well. The overloads that are visible in a scope
+ * are cached until a function of that scope or a parent scope is declared or gets its return type.
+ * A scope can be frozen, e.g. the {@link MyunCoreScope}, which is shared by concurrent compilations: its maps are
+ * unmodifiable then and lookups do not write anything. Each compilation declares its functions and variables in
+ * its own scopes below.
  * TODO: Why difference between variables and functions? functions are variables too...
  */
 public class Scope {
     private final Scope parent;
-    private final Set<ASTVariable> declaredVariables;
-    private final Map<FuncHeader, FunctionInfo> declaredFunctions;
+    private final int depth;
+    private Map<String, ASTVariable> declaredVariables;
+    private Map<FuncHeader, FunctionInfo> declaredFunctions;
+    // the types of the functions declared in this scope by their names, in the order of their declaration
+    private Map<String, List<FuncType>> declaredOverloads;
+    // the number of declared functions and of their updates
+    private int functionModifications;
+    // the overloads of this and the parent scopes by their names
+    private Map<String, List<FuncType>> visibleOverloads;
+    // the function modifications of this and the parent scopes when the visible overloads were cached
+    private int visibleFunctionModifications;
+    private boolean frozen;
 
     /**
      * Creates a new scope with a given parent.
@@ -23,37 +40,88 @@ public class Scope {
      */
     public Scope(Scope parent) {
         this.parent = parent;
-        declaredVariables = new HashSet<>();
+        depth = (parent == null) ? 0 : (parent.depth + 1);
+        declaredVariables = new HashMap<>();
         declaredFunctions = new HashMap<>();
+        declaredOverloads = new HashMap<>();
+        functionModifications = 0;
+        visibleOverloads = new HashMap<>();
+        visibleFunctionModifications = 0;
+        frozen = false;
     }
 
     /**
-     * Checks if a variable has already been declared in this scope or any parent scope.
+     * Freezes this scope, so that it can be shared by concurrent compilations. The overloads of all functions are
+     * cached in advance. The parent scopes must be frozen already.
+     */
+    void freeze() {
+        for (Scope scope = this; scope != null; scope = scope.parent) {
+            scope.declaredOverloads.keySet().forEach(this::getDeclaredFunctionTypes);
+        }
+        declaredVariables = Collections.unmodifiableMap(declaredVariables);
+        declaredFunctions = Collections.unmodifiableMap(declaredFunctions);
+        declaredOverloads.replaceAll((name, overloads) -> Collections.unmodifiableList(overloads));
+        declaredOverloads = Collections.unmodifiableMap(declaredOverloads);
+        visibleOverloads = Collections.unmodifiableMap(visibleOverloads);
+        frozen = true;
+    }
+
+    private void checkNotFrozen() {
+        if (frozen) {
+            throw new IllegalStateException("A frozen scope cannot be changed.");
+        }
+    }
+
+    /**
+     * @return the number of enclosing scopes
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * @return the number of variables declared in this scope, i.e. the next free slot
+     */
+    public int getVariableCount() {
+        return declaredVariables.size();
+    }
+
+    /**
+     * Looks up a variable in this scope and the parent scopes.
      *
-     * @param var the variable
-     * @return true iff the variable has been declared
+     * @param name the name of the variable
+     * @return the declared variable or null if it has not been declared
      */
-    private boolean isDeclared(ASTVariable var) {
-        return declaredVariables.contains(var) || ((parent != null) && parent.isDeclared(var));
+    private ASTVariable findVariable(String name) {
+        for (Scope scope = this; scope != null; scope = scope.parent) {
+            ASTVariable variable = scope.declaredVariables.get(name);
+            if (variable != null) {
+                return variable;
+            }
+        }
+        return null;
     }
 
     /**
-     * Declares the variable in the current scope.
+     * Declares the variable in the current scope and assigns its depth and slot.
      * Can only be called when the variable has not been declared already.
      *
      * @param variable the variable information
      * @throws IllegalRedefineException thrown when the variable has been declared in this scope already
      */
-    void declareVariable(ASTVariable variable) {
+    public void declareVariable(ASTVariable variable) {
+        checkNotFrozen();
+
         // check for illegal redefinition of the variable
-        if (isDeclared(variable)) {
-            throw new IllegalRedefineException(variable.getName(),
-                    getActualVariable(variable).getSourcePosition(),
+        ASTVariable declared = findVariable(variable.getName());
+        if (declared != null) {
+            throw new IllegalRedefineException(variable.getName(), declared.getSourcePosition(),
                     variable.getSourcePosition());
         }
         else {
-            // add variable to declarations and update type of lhs
-            declaredVariables.add(variable);
+            // add variable to declarations with the next free slot
+            variable.setSlot(depth, declaredVariables.size());
+            declaredVariables.put(variable.getName(), variable);
         }
     }
 
@@ -65,18 +133,11 @@ public class Scope {
      * @return the variable object
      */
     public ASTVariable getActualVariable(ASTVariable copyVar) {
-        for (ASTVariable var : declaredVariables) {
-            if (var.equals(copyVar)) {
-                return var;
-            }
-        }
-
-        if (parent != null) {
-            return parent.getActualVariable(copyVar);
-        }
-        else {
+        ASTVariable variable = findVariable(copyVar.getName());
+        if (variable == null) {
             throw new UndeclaredVariableUsedException(copyVar);
         }
+        return variable;
     }
 
     /**
@@ -101,13 +162,14 @@ public class Scope {
      * @throws IllegalRedefineException thrown when the function has already been declared
      */
     public void declareFunction(FuncHeader funcHeader, ASTFuncDef funcDef) {
+        checkNotFrozen();
         if (isDeclared(funcHeader)) {
             throw new IllegalRedefineException(funcHeader.getName(),
                     getFunctionInfo(funcHeader, funcDef.getSourcePosition()).getFuncDef().getSourcePosition(),
                     funcDef.getSourcePosition());
         }
         else {
-            declaredFunctions.put(funcHeader, new FunctionInfo(funcDef.getType(), funcDef));
+            addFunction(funcHeader, new FunctionInfo(funcDef.getType(), funcDef));
         }
     }
 
@@ -119,15 +181,55 @@ public class Scope {
      * @param sourcePos the position where this function was declared
      */
     void declareFunction(FuncHeader funcHeader, FuncType funcType, SourcePosition sourcePos) {
+        checkNotFrozen();
         if (isDeclared(funcHeader)) {
             throw new IllegalRedefineException(funcHeader.getName(),
                     getFunctionInfo(funcHeader, sourcePos).getFuncDef().getSourcePosition(), sourcePos);
         }
         else {
-            declaredFunctions.put(funcHeader, new FunctionInfo(funcType, null)); // FIXME: null value for optional
+            addFunction(funcHeader, new FunctionInfo(funcType, null)); // FIXME: null value for optional
         }
     }
 
+    private void addFunction(FuncHeader funcHeader, FunctionInfo functionInfo) {
+        declaredFunctions.put(funcHeader, functionInfo);
+        declaredOverloads.computeIfAbsent(funcHeader.getName(), name -> new ArrayList<>()).add(functionInfo.getType());
+        functionModifications++;
+    }
+
+    /**
+     * Sets the inferred return type of a declared function.
+     * Since function types are immutable, the function gets a new type in the scope that declares it.
+     *
+     * @param funcHeader the function header
+     * @param returnType the return type
+     * @param sourcePos the position of the function definition
+     * @throws UndeclaredFunctionCalledException thrown when the function has not been declared
+     */
+    public void setReturnType(FuncHeader funcHeader, MyunType returnType, SourcePosition sourcePos) {
+        for (Scope scope = this; scope != null; scope = scope.parent) {
+            FunctionInfo functionInfo = scope.declaredFunctions.get(funcHeader);
+            if (functionInfo != null) {
+                // e.g. an annotated return type, which keeps the cached overloads valid
+                if (returnType.equals(functionInfo.getType().getReturnType())) {
+                    return;
+                }
+                scope.checkNotFrozen();
+                FuncType type = new FuncType(functionInfo.getType().getParameterTypes(), returnType);
+                scope.declaredFunctions.put(funcHeader, new FunctionInfo(type, functionInfo.getFuncDef()));
+                List<FuncType> overloads = scope.declaredOverloads.get(funcHeader.getName());
+                for (int i = 0; i < overloads.size(); i++) {
+                    if (overloads.get(i) == functionInfo.getType()) {
+                        overloads.set(i, type);
+                    }
+                }
+                scope.functionModifications++;
+                return;
+            }
+        }
+        throw new UndeclaredFunctionCalledException(funcHeader, sourcePos);
+    }
+
     /**
      * Returns the function information for the given function header.
      * The function must have been defined already.
@@ -151,19 +253,44 @@ public class Scope {
 
     /**
      * Returns all known declared types for the function with the given name.
+     * The types of this scope come first, each scope in the order of the declarations.
      * @param function the name of the function
-     * @return all known types
+     * @return all known types (an unmodifiable list, which is shared by the lookups until a function is declared)
      */
-    public Collection<FuncType> getDeclaredFunctionTypes(String function) {
-        Collection<FuncType> knownTypes = declaredFunctions.keySet().stream().
-                filter(header -> function.equals(header.getName())).
-                map(header -> declaredFunctions.get(header).getType()).
-                collect(Collectors.toCollection(HashSet::new));
+    public List<FuncType> getDeclaredFunctionTypes(String function) {
+        if (frozen) {
+            return visibleOverloads.getOrDefault(function, Collections.emptyList());
+        }
+
+        int modifications = 0;
+        for (Scope scope = this; scope != null; scope = scope.parent) {
+            modifications += scope.functionModifications;
+        }
+        // the modifications only increase, so the cache is stale iff their number has changed
+        if (modifications != visibleFunctionModifications) {
+            visibleOverloads.clear();
+            visibleFunctionModifications = modifications;
+        }
+        return visibleOverloads.computeIfAbsent(function, this::collectOverloads);
+    }
 
-        if (parent != null) {
-            knownTypes.addAll(parent.getDeclaredFunctionTypes(function));
+    private List<FuncType> collectOverloads(String function) {
+        // the scopes without overloads of their own share the list of the nearest scope that declares some
+        Scope declaringScope = this;
+        while ((declaringScope != null) && !declaringScope.declaredOverloads.containsKey(function)) {
+            declaringScope = declaringScope.parent;
+        }
+        if (declaringScope == null) {
+            return Collections.emptyList();
+        }
+        if (declaringScope != this) {
+            return declaringScope.getDeclaredFunctionTypes(function);
         }
 
-        return knownTypes;
+        List<FuncType> overloads = new ArrayList<>();
+        for (Scope scope = this; scope != null; scope = scope.parent) {
+            overloads.addAll(scope.declaredOverloads.getOrDefault(function, Collections.emptyList()));
+        }
+        return Collections.unmodifiableList(overloads);
     }
 }
@@ -9,9 +9,11 @@ import myun.type.UnknownType;
  * Also replaces all variable objects that refer to the same variable of a scope with a single unique object.
  */
 public final class ScopeInitializer implements ASTVisitor<Void> {
+    private final ASTTraversal traversal;
     private Scope currentScope;
 
     private ScopeInitializer(Scope parentScope) {
+        traversal = new ASTTraversal();
         currentScope = parentScope;
     }
 
@@ -22,7 +24,27 @@ public final class ScopeInitializer implements ASTVisitor<Void> {
      * @param parentScope the top-most scope
      */
     public static void initScopes(ASTCompileUnit program, Scope parentScope) {
-        program.accept(new ScopeInitializer(parentScope));
+        ScopeInitializer initializer = new ScopeInitializer(parentScope);
+        initializer.traversal.run(() -> program.accept(initializer));
+    }
+
+    private void visitChild(ASTNode child) {
+        traversal.then(() -> child.accept(this));
+    }
+
+    /**
+     * Opens a new scope for the children visited next, which is closed again by {@link #closeScope(Scope)}.
+     *
+     * @return the parent scope
+     */
+    private Scope openScope() {
+        Scope parentScope = currentScope;
+        currentScope = new Scope(parentScope);
+        return parentScope;
+    }
+
+    private void closeScope(Scope parentScope) {
+        traversal.then(() -> currentScope = parentScope);
     }
 
     @Override
@@ -34,12 +56,11 @@ public final class ScopeInitializer implements ASTVisitor<Void> {
             node.setExpr(node.getScope().getActualVariable((ASTVariable) node.getExpr()));
         }
         else {
-            node.getExpr().accept(this);
+            visitChild(node.getExpr());
         }
 
         // replace the lhs variable by its scoped, original variable
-        node.setVariable(node.getScope().getActualVariable(node.getVariable()));
-
+        traversal.then(() -> node.setVariable(node.getScope().getActualVariable(node.getVariable())));
 
         return null;
     }
@@ -47,9 +68,9 @@ public final class ScopeInitializer implements ASTVisitor<Void> {
     @Override
     public Void visit(ASTBlock node) {
         node.setScope(currentScope);
-        node.getStatements().forEach(stmt -> stmt.accept(this));
-        node.getFuncReturn().ifPresent(fR -> fR.accept(this));
-        node.getLoopBreak().ifPresent(lB -> lB.accept(this));
+        node.getStatements().forEach(this::visitChild);
+        node.getFuncReturn().ifPresent(this::visitChild);
+        node.getLoopBreak().ifPresent(this::visitChild);
         return null;
     }
 
@@ -65,25 +86,23 @@ public final class ScopeInitializer implements ASTVisitor<Void> {
                 node.setCondition(i, node.getScope().getActualVariable((ASTVariable) c));
             }
             else {
-                c.accept(this);
+                visitChild(c);
             }
         }
 
-        node.getBlocks().forEach(b -> b.accept(this));
+        node.getBlocks().forEach(this::visitChild);
         return null;
     }
 
     @Override
     public Void visit(ASTCompileUnit node) {
         node.setScope(currentScope);
-        Scope parentScope = currentScope;
 
         // compile units have their own scope
-        currentScope = new Scope(currentScope);
-        node.getFuncDefs().forEach(funcDef -> funcDef.accept(this));
-        node.getScript().accept(this);
-
-        currentScope = parentScope;
+        Scope parentScope = openScope();
+        node.getFuncDefs().forEach(this::visitChild);
+        visitChild(node.getScript());
+        closeScope(parentScope);
         return null;
     }
 
@@ -102,14 +121,16 @@ public final class ScopeInitializer implements ASTVisitor<Void> {
             node.setExpr(node.getScope().getActualVariable((ASTVariable) node.getExpr()));
         }
         else {
-            node.getExpr().accept(this);
+            visitChild(node.getExpr());
         }
 
         // declare the new variable in the scope
-        node.getVariable().accept(this);
-        node.getVariable().setType(new UnknownType());
-        node.getVariable().setAssignable(true);
-        node.getScope().declareVariable(node.getVariable());
+        traversal.then(() -> {
+            node.getVariable().accept(this);
+            node.getVariable().setType(new UnknownType());
+            node.getVariable().setAssignable(true);
+            node.getScope().declareVariable(node.getVariable());
+        });
 
         return null;
     }
@@ -117,10 +138,9 @@ public final class ScopeInitializer implements ASTVisitor<Void> {
     @Override
     public Void visit(ASTForLoop node) {
         node.setScope(currentScope);
-        Scope parentScope = currentScope;
 
         // for loops open their own scope because they declare the iteration variable
-        currentScope = new Scope(parentScope);
+        Scope parentScope = openScope();
 
         // declare the new iteration variable in the scope
         node.getVariable().accept(this);
@@ -133,18 +153,17 @@ public final class ScopeInitializer implements ASTVisitor<Void> {
             node.setFrom(node.getScope().getActualVariable((ASTVariable) node.getFrom()));
         }
         else {
-            node.getFrom().accept(this);
+            visitChild(node.getFrom());
         }
         if (node.getTo() instanceof ASTVariable) {
             node.setTo(node.getScope().getActualVariable((ASTVariable) node.getTo()));
         }
         else {
-            node.getTo().accept(this);
+            visitChild(node.getTo());
         }
 
-        node.getBlock().accept(this);
-
-        currentScope = parentScope;
+        visitChild(node.getBlock());
+        closeScope(parentScope);
         return null;
     }
 
@@ -159,7 +178,7 @@ public final class ScopeInitializer implements ASTVisitor<Void> {
                 node.setArg(i, node.getScope().getActualVariable((ASTVariable) arg));
             }
             else {
-                arg.accept(this);
+                visitChild(arg);
             }
         }
 
@@ -169,11 +188,10 @@ public final class ScopeInitializer implements ASTVisitor<Void> {
     @Override
     public Void visit(ASTFuncDef node) {
         node.setScope(currentScope);
-        Scope parentScope = currentScope;
 
         // function definitions have their own scope
         // so that parameter variables do not interfere with other function parameters
-        currentScope = new Scope(parentScope);
+        Scope parentScope = openScope();
 
         // make the parameters known to the scope with their annotated type
         node.getParameters().forEach(param -> {
@@ -181,9 +199,8 @@ public final class ScopeInitializer implements ASTVisitor<Void> {
             param.setAssignable(false);
             param.getScope().declareVariable(param);
         });
-        node.getBlock().accept(this);
-
-        currentScope = parentScope;
+        visitChild(node.getBlock());
+        closeScope(parentScope);
         return null;
     }
 
@@ -195,7 +212,7 @@ public final class ScopeInitializer implements ASTVisitor<Void> {
             node.setExpr(node.getScope().getActualVariable((ASTVariable) node.getExpr()));
         }
         else {
-            node.getExpr().accept(this);
+            visitChild(node.getExpr());
         }
         return null;
     }
@@ -209,20 +226,18 @@ public final class ScopeInitializer implements ASTVisitor<Void> {
     @Override
     public Void visit(ASTScript node) {
         node.setScope(currentScope);
-        Scope parentScope = currentScope;
 
         // similarly to functions, scripts have their own scope too
-        currentScope = new Scope(parentScope);
-        node.getBlock().accept(this);
-
-        currentScope = parentScope;
+        Scope parentScope = openScope();
+        visitChild(node.getBlock());
+        closeScope(parentScope);
         return null;
     }
 
     @Override
     public Void visit(ASTProcCall node) {
         node.setScope(currentScope);
-        node.getFuncCall().accept(this);
+        visitChild(node.getFuncCall());
         return null;
     }
 
@@ -240,10 +255,10 @@ public final class ScopeInitializer implements ASTVisitor<Void> {
             node.setCondition(node.getScope().getActualVariable((ASTVariable) node.getCondition()));
         }
         else {
-            node.getCondition().accept(this);
+            visitChild(node.getCondition());
         }
 
-        node.getBlock().accept(this);
+        visitChild(node.getBlock());
         return null;
     }
 }
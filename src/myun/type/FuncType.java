@@ -1,13 +1,16 @@
 package myun.type;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
  * Represents a function type.
+ * It is immutable, so function types can be shared by concurrent compilations (e.g. those of the builtin functions).
  */
 public class FuncType implements MyunType {
     private final List<MyunType> parameterTypes;
-    private MyunType returnType;
+    private final MyunType returnType;
 
     /**
      * Creates a new AST type.
@@ -16,7 +19,7 @@ public class FuncType implements MyunType {
      * @param returnType the return type
      */
     public FuncType(List<MyunType> parameterTypes, MyunType returnType) {
-        this.parameterTypes = parameterTypes;
+        this.parameterTypes = Collections.unmodifiableList(new ArrayList<>(parameterTypes));
         this.returnType = returnType;
     }
 
@@ -59,8 +62,4 @@ public class FuncType implements MyunType {
         result = (31 * result) + returnType.hashCode();
         return result;
     }
-
-    public void setReturnType(MyunType returnType) {
-        this.returnType = returnType;
-    }
 }
@@ -1,27 +1,59 @@
 package myun.type.inference;
 
 import myun.AST.*;
+import myun.scope.CallTarget;
 import myun.type.*;
 
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 /**
  * Infers the types of Myun expressions.
+ * The arguments of nested function calls are inferred with an explicit stack, so the type of a call is only returned
+ * when the call is visited from outside; the types of the arguments are read from the nodes.
+ * The overload resolution of a call is cached by the function name and the (interned) argument types, since the same
+ * combinations recur all the time (e.g. plus with two Ints). A cached resolution is valid as long as the scope
+ * returns the same overloads, which it does until a function is declared or gets its return type.
  */
 public class ExpressionTypeInferrer implements ASTExpressionVisitor<MyunType> {
+    private final ASTTraversal traversal;
+    // the resolutions by the function names and the argument types
+    private final Map<FuncHeader, Resolution> resolutions;
+    // the argument types used in the keys of the resolutions
+    private final Map<MyunType, MyunType> internedTypes;
+    private long resolutionHits;
+    private long resolutionMisses;
+
+    public ExpressionTypeInferrer() {
+        traversal = new ASTTraversal();
+        resolutions = new HashMap<>();
+        internedTypes = new HashMap<>();
+        resolutionHits = 0;
+        resolutionMisses = 0;
+    }
+
+    /**
+     * @return the hits and misses of the cached overload resolutions so far
+     */
+    public ResolutionStatistics getResolutionStatistics() {
+        return new ResolutionStatistics(resolutionHits, resolutionMisses);
+    }
+
     @Override
     public <CT> MyunType visit(ASTConstant<CT> node) {
         String javaName = node.getValue().getClass().getSimpleName();
         MyunType type;
         switch (javaName) {
             case "Integer":
+            case "Long":
                 type = PrimitiveTypes.MYUN_INT;
                 break;
             case "Float":
+            case "Double":
                 type = PrimitiveTypes.MYUN_FLOAT;
                 break;
             case "Boolean":
@@ -36,40 +68,134 @@ public class ExpressionTypeInferrer implements ASTExpressionVisitor<MyunType> {
 
     @Override
     public MyunType visit(ASTFuncCall node) {
+        if (!traversal.isRunning()) {
+            traversal.run(() -> node.accept(this));
+            return node.getType();
+        }
+
+        // infer the argument types first
+        node.getArgs().forEach(arg -> traversal.then(() -> arg.accept(this)));
+        traversal.then(() -> inferCallType(node));
+        return null;
+    }
+
+    private void inferCallType(ASTFuncCall node) {
         // retrieve all known types for that function
-        Collection<FuncType> declaredTypes = node.getScope().getDeclaredFunctionTypes(node.getFunction());
+        List<FuncType> declaredTypes = node.getScope().getDeclaredFunctionTypes(node.getFunction());
 
         // collect the parameter types
-        List<MyunType> paramTypes = node.getArgs().stream().map(arg -> arg.accept(this)).collect(Collectors.toList());
+        List<MyunType> paramTypes = new ArrayList<>(node.getArgs().size());
+        for (ASTExpression arg : node.getArgs()) {
+            MyunType argType = arg.getType();
+            // unknown types are not comparable
+            paramTypes.add(((argType == null) || (argType instanceof UnknownType)) ? argType :
+                    internedTypes.computeIfAbsent(argType, type -> type));
+        }
 
+        // argument types that are not fully known might still change, so their resolution is not cached
+        if (!paramTypes.stream().allMatch(type -> (type != null) && type.isFullyKnown())) {
+            resolutionMisses++;
+            node.setType(resolve(node, declaredTypes, paramTypes).returnType);
+            node.setTarget(null);
+            return;
+        }
+
+        FuncHeader signature = new FuncHeader(node.getFunction(), paramTypes);
+        Resolution resolution = resolutions.get(signature);
+        if ((resolution != null) && (resolution.overloads == declaredTypes)) {
+            resolutionHits++;
+        }
+        else {
+            resolutionMisses++;
+            resolution = resolve(node, declaredTypes, paramTypes);
+            resolutions.put(signature, resolution);
+        }
+
+        node.setType(resolution.returnType);
+        node.setTarget(resolution.target);
+    }
+
+    private static Resolution resolve(ASTFuncCall node, List<FuncType> declaredTypes, List<MyunType> paramTypes) {
         // check which functions could be referenced by this call
-        List<MyunType> possibleReturnTypes = new ArrayList<>();
+        List<FuncType> possibleTypes = new ArrayList<>();
         for (FuncType declaredType : declaredTypes) {
             Optional<List<MyunType>> tmp = TypeUnifier.unify(declaredType.getParameterTypes(), paramTypes);
             if (tmp.isPresent()) {
-                possibleReturnTypes.add(declaredType.getReturnType());
+                possibleTypes.add(declaredType);
             }
         }
 
         // determine the return type
-        if (possibleReturnTypes.size() == 0) {
+        if (possibleTypes.size() == 0) {
             throw new CouldNotInferTypeException(node);
         }
 
-        MyunType resultType;
-        if (possibleReturnTypes.size() == 1) {
-            resultType = possibleReturnTypes.get(0);
+        if (possibleTypes.size() == 1) {
+            // the target is looked up once here, so code generation does not have to repeat the lookups
+            FuncType funcType = possibleTypes.get(0);
+            CallTarget target = CallTarget.resolve(node.getScope(),
+                    new FuncHeader(node.getFunction(), funcType.getParameterTypes()), node.getSourcePosition());
+            return new Resolution(declaredTypes, target, funcType.getReturnType());
         }
-        else {
-            resultType = new VariantType(possibleReturnTypes);
-        }
-
-        node.setType(resultType);
-        return resultType;
+        List<MyunType> possibleReturnTypes = new ArrayList<>();
+        possibleTypes.forEach(possibleType -> possibleReturnTypes.add(possibleType.getReturnType()));
+        return new Resolution(declaredTypes, null, new VariantType(possibleReturnTypes));
     }
 
     @Override
     public MyunType visit(ASTVariable node) {
         return node.getType();
     }
+
+    /**
+     * The overload resolution of a call.
+     */
+    private static final class Resolution {
+        // the overloads the call has been resolved against
+        private final List<FuncType> overloads;
+        // the chosen function or null if several overloads match
+        private final CallTarget target;
+        private final MyunType returnType;
+
+        private Resolution(List<FuncType> overloads, CallTarget target, MyunType returnType) {
+            this.overloads = overloads;
+            this.target = target;
+            this.returnType = returnType;
+        }
+    }
+
+    /**
+     * The hits and misses of the cached overload resolutions.
+     */
+    public static final class ResolutionStatistics {
+        private final long hits;
+        private final long misses;
+
+        private ResolutionStatistics(long hits, long misses) {
+            this.hits = hits;
+            this.misses = misses;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        /**
+         * @return the ratio of calls whose resolution was cached (0 if there were none)
+         */
+        public double getHitRate() {
+            long lookups = hits + misses;
+            return (lookups == 0) ? 0 : (hits / (double) lookups);
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "Overload resolution: %d hits, %d misses (hit rate %.1f%%)", hits,
+                    misses, 100 * getHitRate());
+        }
+    }
 }
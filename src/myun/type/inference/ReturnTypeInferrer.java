@@ -8,18 +8,25 @@ import myun.type.UnknownType;
  * Checks if all expressions in function return statements are of the same type as the declared function return type.
  */
 final class ReturnTypeInferrer implements ASTVisitor<Void> {
+    private final ASTTraversal traversal;
     private MyunType currentType;
 
     ReturnTypeInferrer() {
+        traversal = new ASTTraversal();
         currentType = new UnknownType();
     }
 
     MyunType inferReturnType(ASTFuncDef funcDef) {
         currentType = funcDef.getReturnType();
-        funcDef.accept(this);
+        traversal.run(() -> funcDef.accept(this));
         return currentType;
     }
 
+    private Void visitChild(ASTNode child) {
+        traversal.then(() -> child.accept(this));
+        return null;
+    }
+
     @Override
     public Void visit(ASTAssignment node) {
         return null;
@@ -27,14 +34,14 @@ final class ReturnTypeInferrer implements ASTVisitor<Void> {
 
     @Override
     public Void visit(ASTBlock node) {
-        node.getStatements().forEach(stmt -> stmt.accept(this));
-        node.getFuncReturn().ifPresent(fR -> fR.accept(this));
+        node.getStatements().forEach(this::visitChild);
+        node.getFuncReturn().ifPresent(this::visitChild);
         return null;
     }
 
     @Override
     public Void visit(ASTBranch node) {
-        node.getBlocks().forEach(block -> block.accept(this));
+        node.getBlocks().forEach(this::visitChild);
         return null;
     }
 
@@ -55,7 +62,7 @@ final class ReturnTypeInferrer implements ASTVisitor<Void> {
 
     @Override
     public Void visit(ASTForLoop node) {
-        return node.getBlock().accept(this);
+        return visitChild(node.getBlock());
     }
 
     @Override
@@ -65,7 +72,7 @@ final class ReturnTypeInferrer implements ASTVisitor<Void> {
 
     @Override
     public Void visit(ASTFuncDef node) {
-        return node.getBlock().accept(this);
+        return visitChild(node.getBlock());
     }
 
     @Override
@@ -99,6 +106,6 @@ final class ReturnTypeInferrer implements ASTVisitor<Void> {
 
     @Override
     public Void visit(ASTWhileLoop node) {
-        return node.getBlock().accept(this);
+        return visitChild(node.getBlock());
     }
 }
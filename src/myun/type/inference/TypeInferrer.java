@@ -8,10 +8,12 @@ import myun.type.*;
  * Infers types of expressions and functions.
  */
 public class TypeInferrer implements ASTNonExpressionVisitor {
+    private final ASTTraversal traversal;
     private final ExpressionTypeInferrer expressionTypeInferrer;
     private final ReturnTypeInferrer returnTypeInferrer;
 
     public TypeInferrer() {
+        traversal = new ASTTraversal();
         expressionTypeInferrer = new ExpressionTypeInferrer();
         returnTypeInferrer = new ReturnTypeInferrer();
     }
@@ -22,7 +24,14 @@ public class TypeInferrer implements ASTNonExpressionVisitor {
      * @param node the AST node
      */
     public void inferTypes(ASTCompileUnit node) {
-        node.accept(this);
+        traversal.run(() -> node.accept(this));
+    }
+
+    /**
+     * @return the hits and misses of the cached overload resolutions of the function calls
+     */
+    public ExpressionTypeInferrer.ResolutionStatistics getResolutionStatistics() {
+        return expressionTypeInferrer.getResolutionStatistics();
     }
 
     @Override
@@ -46,8 +55,8 @@ public class TypeInferrer implements ASTNonExpressionVisitor {
 
     @Override
     public void visit(ASTBlock node) {
-        node.getStatements().forEach(stmt -> stmt.accept(this));
-        node.getFuncReturn().ifPresent(fR -> fR.accept(this));
+        node.getStatements().forEach(stmt -> traversal.then(() -> stmt.accept(this)));
+        node.getFuncReturn().ifPresent(fR -> traversal.then(() -> fR.accept(this)));
     }
 
     @Override
@@ -62,7 +71,7 @@ public class TypeInferrer implements ASTNonExpressionVisitor {
         });
 
         // then infer the types in the blocks
-        node.getBlocks().forEach(b -> b.accept(this));
+        node.getBlocks().forEach(b -> traversal.then(() -> b.accept(this)));
     }
 
     @Override
@@ -71,10 +80,10 @@ public class TypeInferrer implements ASTNonExpressionVisitor {
         node.getFuncDefs().forEach(this::declareFunction);
 
         // then handle the actual definition with body
-        node.getFuncDefs().forEach(funcDef -> funcDef.accept(this));
+        node.getFuncDefs().forEach(funcDef -> traversal.then(() -> funcDef.accept(this)));
 
         // finally, handle the main script
-        node.getScript().accept(this);
+        traversal.then(() -> node.getScript().accept(this));
     }
 
     @Override
@@ -100,7 +109,7 @@ public class TypeInferrer implements ASTNonExpressionVisitor {
         }
 
         // finally, infer the types in the block
-        node.getBlock().accept(this);
+        traversal.then(() -> node.getBlock().accept(this));
     }
 
     /**
@@ -126,14 +135,18 @@ public class TypeInferrer implements ASTNonExpressionVisitor {
         // so that we can support out-of-order function definitions
 
         // do type inference in the function body
-        node.getBlock().accept(this);
+        traversal.then(() -> node.getBlock().accept(this));
 
         // check if all the return expression types match the actual return type
+        traversal.then(() -> inferReturnType(node));
+    }
+
+    private void inferReturnType(ASTFuncDef node) {
         final MyunType inferedReturnType = returnTypeInferrer.inferReturnType(node);
         MyunType actualReturnType = TypeUnifier.unify(node.getReturnType(), inferedReturnType).
                 orElseThrow(() -> new TypeMismatchException(inferedReturnType, node.getReturnType(), node.getSourcePosition()));
         node.setReturnType(actualReturnType);
-        node.getScope().getFunctionInfo(node.getHeader(), node.getSourcePosition()).setReturnType(actualReturnType);
+        node.getScope().setReturnType(node.getHeader(), actualReturnType, node.getSourcePosition());
     }
 
     @Override
@@ -147,7 +160,7 @@ public class TypeInferrer implements ASTNonExpressionVisitor {
 
     @Override
     public void visit(ASTScript node) {
-        node.getBlock().accept(this);
+        traversal.then(() -> node.getBlock().accept(this));
     }
 
     @Override
@@ -165,6 +178,6 @@ public class TypeInferrer implements ASTNonExpressionVisitor {
             throw new TypeMismatchException(condType, boolType, node.getSourcePosition());
         }
 
-        node.getBlock().accept(this);
+        traversal.then(() -> node.getBlock().accept(this));
     }
 }
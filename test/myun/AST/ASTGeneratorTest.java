@@ -0,0 +1,84 @@
+package myun.AST;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests whether the two-stage parsing creates the same ASTs and errors as full LL parsing.
+ */
+public class ASTGeneratorTest {
+    private ASTGenerator twoStageGenerator;
+    private ASTGenerator fullLLGenerator;
+    private MyunPrettyPrinter printer;
+
+    @Before
+    public void setUp() {
+        twoStageGenerator = new ASTGenerator();
+        fullLLGenerator = new ASTGenerator();
+        fullLLGenerator.setTwoStageParsing(false);
+        printer = new MyunPrettyPrinter();
+    }
+
+    static List<Path> getTestDataFiles() throws IOException {
+        try (Stream<Path> files = Files.walk(Paths.get("testData"))) {
+            return files.filter(file -> file.toString().endsWith(".myun")).sorted().collect(Collectors.toList());
+        }
+    }
+
+    @Test
+    public void twoStageParsingCreatesSameASTs() throws IOException {
+        List<Path> files = getTestDataFiles();
+        assertFalse("There should be test files.", files.isEmpty());
+        for (Path file : files) {
+            String expected;
+            try {
+                expected = printer.toString(fullLLGenerator.parseFile(file.toString(), false));
+            } catch (ParserException e) {
+                assertEquals("The error in " + file + " should be the same.", e.getMessage(),
+                        parseWithError(twoStageGenerator, file));
+                continue;
+            }
+            assertEquals("The AST of " + file + " should be the same.", expected,
+                    printer.toString(twoStageGenerator.parseFile(file.toString(), false)));
+        }
+    }
+
+    private static String parseWithError(ASTGenerator generator, Path file) throws IOException {
+        try {
+            generator.parseFile(file.toString(), false);
+        } catch (ParserException e) {
+            return e.getMessage();
+        }
+        return "no error";
+    }
+
+    @Test
+    public void syntaxErrorsAreReportedWithPosition() {
+        String code = "script main\n    x := 1 + * 2\nend\n";
+        try {
+            twoStageGenerator.parseCode(code, true);
+            fail("The syntax error should be reported.");
+        } catch (ParserException e) {
+            try {
+                fullLLGenerator.parseCode(code, true);
+                fail("The syntax error should be reported.");
+            } catch (ParserException expected) {
+                assertEquals(expected.getMessage(), e.getMessage());
+            }
+            assertTrue(e.getMessage().endsWith("on line 2 at 13"));
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package myun.AST;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests whether AST snapshots restore the parsed ASTs.
+ */
+public class ASTSnapshotTest {
+    private Path workDirectory;
+    private MyunPrettyPrinter printer;
+
+    @Before
+    public void setUp() throws IOException {
+        workDirectory = Files.createTempDirectory("myun");
+        printer = new MyunPrettyPrinter();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(workDirectory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    private void assertRoundTrip(String name, ASTCompileUnit compileUnit) throws IOException {
+        byte[] snapshot = ASTSnapshot.write(compileUnit);
+        ASTCompileUnit restored = ASTSnapshot.read(snapshot);
+        assertEquals("The AST of " + name + " should be restored.", printer.toString(compileUnit),
+                printer.toString(restored));
+        assertEquals("The types of " + name + " should be restored.", printer.debug(compileUnit),
+                printer.debug(restored));
+        // the snapshot contains the source positions as well
+        assertArrayEquals("The snapshot of " + name + " should be stable.", snapshot, ASTSnapshot.write(restored));
+    }
+
+    @Test
+    public void testDataIsRestored() throws IOException {
+        ASTGenerator generator = new ASTGenerator();
+        for (Path file : ASTGeneratorTest.getTestDataFiles()) {
+            ASTCompileUnit compileUnit;
+            try {
+                compileUnit = generator.parseFile(file.toString(), false);
+            } catch (ParserException e) {
+                continue;
+            }
+            assertRoundTrip(file.toString(), compileUnit);
+        }
+    }
+
+    @Test
+    public void generatedCodeIsRestored() throws IOException {
+        String code = ParserBenchmark.generateSource(20, 8, 42);
+        assertRoundTrip("the generated code", new ASTGenerator().parseCode(code, false));
+    }
+
+    @Test
+    public void deeplyNestedCodeIsRestored() throws IOException {
+        StringBuilder code = new StringBuilder("script main\n    x := 0");
+        for (int i = 1; i < 100000; i++) {
+            code.append(" + ").append(i % 10);
+        }
+        code.append('\n');
+        for (int i = 0; i < 10000; i++) {
+            code.append("while x > ").append(i).append(" do\n");
+        }
+        for (int i = 0; i < 10000; i++) {
+            code.append("end\n");
+        }
+        assertRoundTrip("the nested code", new ASTGenerator().parseCode(code.append("end\n").toString(), false));
+    }
+
+    @Test
+    public void identifiersAreInterned() throws IOException {
+        String code = "script main\n    counter := 1\n    counter = counter + 1\nend\n";
+        ASTCompileUnit compileUnit = ASTSnapshot.read(ASTSnapshot.write(new ASTGenerator().parseCode(code, false)));
+        List<ASTStatement> statements = compileUnit.getScript().getBlock().getStatements();
+        String declared = ((ASTDeclaration) statements.get(0)).getVariable().getName();
+        String assigned = ((ASTAssignment) statements.get(1)).getVariable().getName();
+        assertSame(declared, assigned);
+    }
+
+    @Test
+    public void invalidSnapshotsAreRejected() {
+        byte[] snapshot = ASTSnapshot.write(new ASTGenerator().parseCode("script main\n    x := 1\nend\n", false));
+        for (byte[] invalid : Arrays.asList(Arrays.copyOf(snapshot, snapshot.length - 1),
+                Arrays.copyOf(snapshot, snapshot.length + 1), "script main".getBytes(StandardCharsets.UTF_8))) {
+            try {
+                ASTSnapshot.read(invalid);
+                fail("The invalid snapshot should be rejected.");
+            } catch (IOException e) {
+                // expected
+            }
+        }
+    }
+
+    private List<Path> getSnapshotFiles() throws IOException {
+        try (Stream<Path> files = Files.list(workDirectory.resolve("ast"))) {
+            return files.collect(Collectors.toList());
+        }
+    }
+
+    @Test
+    public void unchangedFilesAreLoaded() throws IOException {
+        Path input = workDirectory.resolve("program.myun");
+        Files.write(input, "script main\n    x := 1\nend\n".getBytes(StandardCharsets.UTF_8));
+        ASTGenerator generator = new ASTGenerator();
+        generator.setSnapshotDirectory(workDirectory.resolve("ast"));
+        String expected = printer.toString(generator.parseFile(input.toString()));
+        List<Path> snapshots = getSnapshotFiles();
+        assertEquals(1, snapshots.size());
+
+        // a snapshot of other code shows that the file is loaded instead of parsed
+        ASTCompileUnit other = generator.parseCode("script other\nend\n", false);
+        Files.write(snapshots.get(0), ASTSnapshot.write(other));
+        assertEquals(printer.toString(other), printer.toString(generator.parseFile(input.toString())));
+
+        // a changed file gets a new snapshot
+        Files.write(input, "script main\n    x := 2\nend\n".getBytes(StandardCharsets.UTF_8));
+        assertNotEquals(expected, printer.toString(generator.parseFile(input.toString())));
+        assertEquals(2, getSnapshotFiles().size());
+    }
+
+    @Test
+    public void corruptSnapshotsAreReplaced() throws IOException {
+        Path input = workDirectory.resolve("program.myun");
+        Files.write(input, "script main\n    x := 1\nend\n".getBytes(StandardCharsets.UTF_8));
+        ASTGenerator generator = new ASTGenerator();
+        generator.setSnapshotDirectory(workDirectory.resolve("ast"));
+        String expected = printer.toString(generator.parseFile(input.toString()));
+        Path snapshot = getSnapshotFiles().get(0);
+
+        Files.write(snapshot, new byte[]{1, 2, 3});
+        assertEquals(expected, printer.toString(generator.parseFile(input.toString())));
+        assertEquals(expected, printer.toString(ASTSnapshot.read(Files.readAllBytes(snapshot))));
+    }
+}
@@ -0,0 +1,80 @@
+package myun.AST;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests whether the steps of a traversal run in the order of recursive calls.
+ */
+public class ASTTraversalTest {
+    private final ASTTraversal traversal = new ASTTraversal();
+    private final List<String> visited = new ArrayList<>();
+
+    /**
+     * Visits a complete binary tree of the given depth in pre-order.
+     */
+    private void visit(String node, int depth) {
+        visited.add(node);
+        if (depth > 0) {
+            traversal.then(() -> visit(node + 'l', depth - 1));
+            traversal.then(() -> visit(node + 'r', depth - 1));
+        }
+    }
+
+    @Test
+    public void stepsRunInRecursiveOrder() {
+        traversal.run(() -> visit("", 2));
+        assertEquals(Arrays.asList("", "l", "ll", "lr", "r", "rl", "rr"), visited);
+        assertFalse(traversal.isRunning());
+    }
+
+    @Test
+    public void nestedRunsFinishFirst() {
+        traversal.run(() -> {
+            traversal.then(() -> visited.add("after"));
+            traversal.run(() -> visit("", 1));
+            visited.add("nested");
+        });
+        assertEquals(Arrays.asList("", "l", "r", "nested", "after"), visited);
+    }
+
+    @Test
+    public void deepChainsDoNotOverflow() {
+        int[] count = {0};
+        Runnable[] step = new Runnable[1];
+        step[0] = () -> {
+            if (++count[0] < 1000000) {
+                traversal.then(step[0]);
+            }
+        };
+        traversal.run(step[0]);
+        assertEquals(1000000, count[0]);
+    }
+
+    @Test
+    public void failedStepsDropTheRemainingSteps() {
+        try {
+            traversal.run(() -> {
+                traversal.then(() -> {
+                    throw new IllegalArgumentException();
+                });
+                traversal.then(() -> visited.add("dropped"));
+            });
+            fail("The exception of the step should be thrown.");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        traversal.run(() -> visited.add("next"));
+        assertEquals(Arrays.asList("next"), visited);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void stepsAreOnlyScheduledWhileRunning() {
+        traversal.then(() -> visited.add("never"));
+    }
+}
@@ -0,0 +1,82 @@
+package myun.AST;
+
+import org.antlr.v4.runtime.*;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * Compares the tokens of the hand-written lexer with the tokens of the generated lexer.
+ */
+public class MyunTokenSourceTest {
+    private static List<String> describeTokens(TokenSource tokenSource) {
+        List<String> tokens = new ArrayList<>();
+        Token token;
+        do {
+            token = tokenSource.nextToken();
+            tokens.add(token.getType() + " " + token.getChannel() + ' ' + token.getStartIndex() + '-' +
+                    token.getStopIndex() + " line " + token.getLine() + ':' + token.getCharPositionInLine() + ' ' +
+                    token.getText());
+        } while (token.getType() != Token.EOF);
+        return tokens;
+    }
+
+    private static void assertSameTokens(String name, CharStream expectedInput, CharStream actualInput) {
+        MyunLexer lexer = new MyunLexer(expectedInput);
+        lexer.removeErrorListeners();
+        assertEquals("The tokens of " + name + " should be the same.", describeTokens(lexer),
+                describeTokens(new MyunTokenSource(actualInput)));
+    }
+
+    @Test
+    public void testDataIsLexedLikeByTheGeneratedLexer() throws IOException {
+        List<Path> files = ASTGeneratorTest.getTestDataFiles();
+        assertFalse("There should be test files.", files.isEmpty());
+        for (Path file : files) {
+            assertSameTokens(file.toString(), CharStreams.fromPath(file), MappedCharStream.fromPath(file));
+        }
+    }
+
+    @Test
+    public void generatedCodeIsLexedLikeByTheGeneratedLexer() {
+        String code = ParserBenchmark.generateSource(50, 20, 11);
+        assertSameTokens("the generated code", CharStreams.fromString(code), CharStreams.fromString(code));
+    }
+
+    @Test
+    public void edgeCasesAreLexedLikeByTheGeneratedLexer() {
+        String code = "script s\r\n\tx := 1.5e+3 + 2.0E7 - 3.25e - 1.5e+ + 7 /* comment\n */ // line\n" +
+                "ifx := elseif_2 <= 3 >= 4 -> (Int, Bool) :: Float a_B9/c*d mod e\n" +
+                "y := not true and false or 1 is 2 < 3 > 4 / *spaced\nend /* unterminated";
+        assertSameTokens("the edge cases", CharStreams.fromString(code), CharStreams.fromString(code));
+    }
+
+    @Test(expected = ParserException.class)
+    public void unknownCharactersAreReported() {
+        describeTokens(new MyunTokenSource(CharStreams.fromString("script s\n    x := 1 $ 2\nend")));
+    }
+
+    @Test
+    public void parserCreatesSameAST() throws IOException {
+        ASTGenerator generatedLexer = new ASTGenerator();
+        ASTGenerator handWrittenLexer = new ASTGenerator();
+        handWrittenLexer.setHandWrittenLexer(true);
+        MyunPrettyPrinter printer = new MyunPrettyPrinter();
+        for (Path file : ASTGeneratorTest.getTestDataFiles()) {
+            String expected;
+            try {
+                expected = printer.toString(generatedLexer.parseFile(file.toString(), false));
+            } catch (ParserException e) {
+                continue;
+            }
+            assertEquals("The AST of " + file + " should be the same.", expected,
+                    printer.toString(handWrittenLexer.parseFile(file.toString(), false)));
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package myun.AST;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests whether parsing the function definitions concurrently creates the same ASTs as sequential parsing.
+ */
+public class ParallelParsingTest {
+    private ASTGenerator sequentialGenerator;
+    private ASTGenerator parallelGenerator;
+    private MyunPrettyPrinter printer;
+
+    @Before
+    public void setUp() {
+        sequentialGenerator = new ASTGenerator();
+        parallelGenerator = new ASTGenerator();
+        parallelGenerator.setParallelParsing(true);
+        printer = new MyunPrettyPrinter();
+    }
+
+    /**
+     * @return the source positions of the compile unit, the function definitions, their statements, and the script
+     */
+    private static List<String> getSourcePositions(ASTCompileUnit compileUnit) {
+        List<String> positions = new ArrayList<>();
+        positions.add(compileUnit.getSourcePosition().toString());
+        for (ASTFuncDef funcDef : compileUnit.getFuncDefs()) {
+            positions.add(funcDef.getSourcePosition().toString());
+            funcDef.getBlock().getStatements().forEach(statement ->
+                    positions.add(statement.getSourcePosition().toString()));
+        }
+        positions.add(compileUnit.getScript().getSourcePosition().toString());
+        return positions;
+    }
+
+    private void assertSameAST(String name, ASTCompileUnit expected, ASTCompileUnit actual) {
+        assertEquals("The AST of " + name + " should be the same.", printer.toString(expected),
+                printer.toString(actual));
+        assertEquals("The source positions in " + name + " should be the same.", getSourcePositions(expected),
+                getSourcePositions(actual));
+    }
+
+    @Test
+    public void testDataIsParsedLikeSequentially() throws IOException {
+        for (Path file : ASTGeneratorTest.getTestDataFiles()) {
+            ASTCompileUnit expected;
+            try {
+                expected = sequentialGenerator.parseFile(file.toString(), false);
+            } catch (ParserException e) {
+                continue;
+            }
+            assertSameAST(file.toString(), expected, parallelGenerator.parseFile(file.toString(), false));
+        }
+    }
+
+    @Test
+    public void manyFunctionsAreParsedInSourceOrder() {
+        String code = ParserBenchmark.generateSource(300, 8, 3);
+        assertSameAST("the generated code", sequentialGenerator.parseCode(code, false),
+                parallelGenerator.parseCode(code, false));
+    }
+
+    @Test
+    public void nestedBlocksDoNotSplitFunctions() {
+        String code = "f(x::Int)::Int\n" +
+                "    if x > 0 then\n" +
+                "        for i from 1 to x do\n" +
+                "            while i < 3 do\n                break\n            end\n" +
+                "        end\n" +
+                "    elseif x < 0 then\n        print(x)\n    end\n" +
+                "    return x\nend\n\n" +
+                "/* a comment */ g()::Int\n    return f(1)\nend\n" +
+                "script main\n    print(g())\nend\n";
+        assertSameAST("the nested code", sequentialGenerator.parseCode(code, false),
+                parallelGenerator.parseCode(code, false));
+    }
+
+    @Test
+    public void syntaxErrorsAreReportedLikeSequentially() {
+        String code = "f(x::Int)::Int\n    return x +\nend\n\ng()::Int\n    return 1\nend\n\nscript main\nend\n";
+        try {
+            parallelGenerator.parseCode(code, false);
+            fail("The syntax error should be reported.");
+        } catch (ParserException e) {
+            try {
+                sequentialGenerator.parseCode(code, false);
+                fail("The syntax error should be reported.");
+            } catch (ParserException expected) {
+                assertEquals(expected.getMessage(), e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package myun.AST;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenSource;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+import java.util.function.Function;
+
+/**
+ * Compares the two-stage (SLL first) parsing with full LL parsing on large generated sources with long arithmetic
+ * and boolean expression chains.
+ * The two-stage parsing only pays off if full LL prediction needs full-context lookahead, so the number of these
+ * predictions is reported as well. Finally, the concurrent parsing of the function definitions, the hand-written
+ * lexer, and the loading of an {@link ASTSnapshot} instead of parsing are measured.
+ * Arguments: [number of functions] [operators per expression] [repetitions]
+ * @noinspection UseOfSystemOutOrSystemErr
+ */
+public final class ParserBenchmark {
+    private static final String[] OPERATORS = {"+", "-", "*", "/", "mod", "<", "<=", ">", ">=", "is", "and", "or"};
+
+    private ParserBenchmark() {
+    }
+
+    /**
+     * Generates a program with the given number of functions, each with expressions of the given length.
+     *
+     * @param functions the number of functions
+     * @param chainLength the number of operators per expression
+     * @param seed the seed of the random operators
+     * @return the code
+     */
+    static String generateSource(int functions, int chainLength, long seed) {
+        Random random = new Random(seed);
+        StringBuilder code = new StringBuilder();
+        for (int i = 0; i < functions; i++) {
+            code.append("f").append(i).append("(x::Int, y::Int)::Int\n");
+            for (int statement = 0; statement < 4; statement++) {
+                code.append("    v").append(statement).append(" := ");
+                appendChain(code, random, chainLength);
+                code.append('\n');
+            }
+            code.append("    return ");
+            appendChain(code, random, chainLength);
+            code.append("\nend\n\n");
+        }
+        code.append("script main\n    print(f0(1, 2))\nend\n");
+        return code.toString();
+    }
+
+    private static void appendChain(StringBuilder code, Random random, int chainLength) {
+        code.append('x');
+        for (int i = 0; i < chainLength; i++) {
+            code.append(' ').append(OPERATORS[random.nextInt(OPERATORS.length)]).append(' ');
+            switch (random.nextInt(4)) {
+                case 0:
+                    code.append("(y - ").append(random.nextInt(100)).append(')');
+                    break;
+                case 1:
+                    code.append("-x");
+                    break;
+                case 2:
+                    code.append("f0(x, ").append(random.nextInt(100)).append(')');
+                    break;
+                default:
+                    code.append(random.nextInt(1000));
+            }
+        }
+    }
+
+    private static long measure(ASTGenerator generator, String code, int repetitions) {
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < repetitions; i++) {
+            long start = System.nanoTime();
+            generator.parseCode(code, false);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+
+    /**
+     * @return the number of predictions of a full LL parse that needed the full context
+     */
+    private static long countFullContextPredictions(String code) {
+        MyunParser parser = new MyunParser(new CommonTokenStream(new MyunLexer(CharStreams.fromString(code))));
+        parser.removeErrorListeners();
+        parser.setProfile(true);
+        parser.compileUnit();
+        return Arrays.stream(parser.getParseInfo().getDecisionInfo()).mapToLong(decision -> decision.LL_Fallback).
+                sum();
+    }
+
+    private static long measureLexer(Function<CharStream, TokenSource> lexer, String code, int repetitions) {
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < repetitions; i++) {
+            long start = System.nanoTime();
+            TokenSource tokenSource = lexer.apply(CharStreams.fromString(code));
+            while (tokenSource.nextToken().getType() != Token.EOF) {
+                // only the lexing is measured
+            }
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+
+    private static long measureSnapshotLoad(byte[] snapshot, int repetitions) throws IOException {
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < repetitions; i++) {
+            long start = System.nanoTime();
+            ASTSnapshot.read(snapshot);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+
+    public static void main(String... args) throws IOException {
+        int functions = (args.length > 0) ? Integer.parseInt(args[0]) : 2000;
+        int chainLength = (args.length > 1) ? Integer.parseInt(args[1]) : 30;
+        int repetitions = (args.length > 2) ? Integer.parseInt(args[2]) : 5;
+        String code = generateSource(functions, chainLength, 42);
+
+        ASTGenerator fullLL = new ASTGenerator();
+        fullLL.setTwoStageParsing(false);
+        ASTGenerator twoStage = new ASTGenerator();
+        ASTGenerator parallel = new ASTGenerator();
+        parallel.setParallelParsing(true);
+
+        // the first runs fill the DFA cache of the parser, which is shared by all parser instances
+        String smallCode = generateSource(functions / 10 + 1, chainLength, 7);
+        measure(fullLL, smallCode, repetitions);
+        measure(twoStage, smallCode, repetitions);
+        measure(parallel, smallCode, repetitions);
+        measureLexer(MyunLexer::new, smallCode, repetitions * 4);
+        measureLexer(MyunTokenSource::new, smallCode, repetitions * 4);
+
+        long fullLLNanos = measure(fullLL, code, repetitions);
+        long twoStageNanos = measure(twoStage, code, repetitions);
+        long parallelNanos = measure(parallel, code, repetitions);
+        System.out.printf(Locale.ROOT, "%d functions, %d operators per expression, %.1f KiB%n", functions,
+                chainLength, code.length() / 1024.0);
+        System.out.printf(Locale.ROOT, "full-context predictions in LL mode: %d%n",
+                countFullContextPredictions(code));
+        System.out.printf(Locale.ROOT, "full LL:   %10.3f ms%n", fullLLNanos / 1.0e6);
+        System.out.printf(Locale.ROOT, "SLL first: %10.3f ms (%.2fx)%n", twoStageNanos / 1.0e6,
+                fullLLNanos / (double) twoStageNanos);
+        long generatedLexerNanos = measureLexer(MyunLexer::new, code, repetitions);
+        long handWrittenLexerNanos = measureLexer(MyunTokenSource::new, code, repetitions);
+        System.out.printf(Locale.ROOT, "lexing with MyunLexer:       %10.3f ms%n", generatedLexerNanos / 1.0e6);
+        System.out.printf(Locale.ROOT, "lexing with MyunTokenSource: %10.3f ms (%.2fx)%n", handWrittenLexerNanos / 1.0e6,
+                generatedLexerNanos / (double) handWrittenLexerNanos);
+        System.out.printf(Locale.ROOT, "parallel:  %10.3f ms (%.2fx, %d threads)%n", parallelNanos / 1.0e6,
+                fullLLNanos / (double) parallelNanos, Runtime.getRuntime().availableProcessors());
+        byte[] snapshot = ASTSnapshot.write(twoStage.parseCode(code, false));
+        measureSnapshotLoad(ASTSnapshot.write(twoStage.parseCode(smallCode, false)), repetitions * 4);
+        long snapshotNanos = measureSnapshotLoad(snapshot, repetitions);
+        System.out.printf(Locale.ROOT, "snapshot:  %10.3f ms (%.2fx, %.1f KiB)%n", snapshotNanos / 1.0e6,
+                twoStageNanos / (double) snapshotNanos, snapshot.length / 1024.0);
+    }
+}
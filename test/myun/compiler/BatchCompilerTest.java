@@ -0,0 +1,66 @@
+package myun.compiler;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the compilation of many files in one batch.
+ */
+public class BatchCompilerTest {
+    private String resPath;
+
+    @Before
+    public void setUp() {
+        File resources = new File("testData/myun/compiler");
+        resPath = resources.getAbsolutePath() + '/';
+    }
+
+    @Test
+    public void directoriesAreSearchedForMyunFiles() throws IOException {
+        List<String> inputFiles = BatchCompiler.collectInputFiles(Arrays.asList(resPath + "comparisons",
+                resPath + "functions/funcCall.myun"));
+
+        assertEquals(6, inputFiles.size());
+        assertTrue(inputFiles.get(0).endsWith("comparisons/equals.myun"));
+        assertTrue(inputFiles.get(5).endsWith("functions/funcCall.myun"));
+    }
+
+    @Test
+    public void allFilesAreCompiled() throws IOException, InterruptedException {
+        List<String> inputFiles = BatchCompiler.collectInputFiles(Arrays.asList(resPath + "comparisons"));
+        BatchCompiler batchCompiler = new BatchCompiler(MyunCompiler.getDefaultMyunCompiler(), 2, 2);
+        List<BatchCompiler.Result> results = batchCompiler.compile(inputFiles);
+
+        assertEquals(inputFiles.size(), results.size());
+        for (int i = 0; i < results.size(); i++) {
+            BatchCompiler.Result result = results.get(i);
+            assertEquals("The results should be in the order of the input files.", inputFiles.get(i),
+                    result.getInputFile());
+            assertTrue(result.getInputFile() + " should compile.", result.isSuccessful());
+        }
+
+        String[] expected = {"11", "22", "32", "41"};
+        assertArrayEquals(expected, CodeRunner.executeAndGetOutput(results.get(0).getOutputFile().get()));
+    }
+
+    @Test
+    public void failuresDoNotStopTheBatch() throws InterruptedException {
+        List<String> inputFiles = Arrays.asList(resPath + "functions/callUndeclared.myun",
+                resPath + "functions/funcCall.myun", resPath + "functions/doesNotExist.myun");
+        List<BatchCompiler.Result> results = new BatchCompiler(MyunCompiler.getDefaultMyunCompiler(), 2, 1).
+                compile(inputFiles);
+
+        assertFalse(results.get(0).isSuccessful());
+        assertTrue(results.get(0).getError().isPresent());
+        assertTrue(results.get(1).isSuccessful());
+        assertFalse(results.get(2).isSuccessful());
+        assertTrue(results.get(0).toString().startsWith("FAILED"));
+    }
+}
@@ -62,4 +62,13 @@ public class CircuitsTest {
         assertThat("There should be 4 output lines.", 4, is(lines.length));
         assertArrayEquals("Output should be true, false, false, true.", expected, lines);
     }
+
+    @Test
+    public void rightOperandIsOnlyEvaluatedIfNeeded() throws IOException, InterruptedException {
+        String outputFile = compiler.compileFromFile(resPath + "shortCircuit.myun");
+        String[] lines = CodeRunner.executeAndGetOutput(outputFile);
+
+        String[] expected = {"3", "-4", "200", "0", "1", "2"};
+        assertArrayEquals("And/or should only evaluate the right operand if necessary.", expected, lines);
+    }
 }
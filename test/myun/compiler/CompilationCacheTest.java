@@ -0,0 +1,91 @@
+package myun.compiler;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the reuse of compiled files.
+ */
+public class CompilationCacheTest {
+    private Path workDirectory;
+    private String inputFile;
+
+    @Before
+    public void setUp() throws IOException {
+        workDirectory = Files.createTempDirectory("myun");
+        Path input = workDirectory.resolve("funcCall.myun");
+        Files.copy(Paths.get("testData/myun/compiler/functions/funcCall.myun"), input);
+        inputFile = input.toString();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(workDirectory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    private MyunCompiler createCompiler(long maxBytes) throws IOException {
+        MyunCompiler compiler = MyunCompiler.getDefaultMyunCompiler();
+        compiler.setCache(new CompilationCache(workDirectory.resolve("cache"), maxBytes));
+        return compiler;
+    }
+
+    @Test
+    public void unchangedFilesAreRestored() throws IOException, InterruptedException {
+        MyunCompiler compiler = createCompiler(CompilationCache.DEFAULT_MAX_BYTES);
+        String outputFile = compiler.compileFromFile(inputFile);
+        Files.delete(Paths.get(outputFile));
+        compiler.compileFromFile(inputFile);
+
+        CompilationCache.Statistics statistics = compiler.getCache().get().getStatistics();
+        assertEquals(1, statistics.getMisses());
+        assertEquals(1, statistics.getSourceHits());
+        assertEquals(0.5, statistics.getHitRate(), 1e-9);
+        assertEquals("5876", CodeRunner.executeAndGetOutput(outputFile)[0]);
+    }
+
+    @Test
+    public void sameLLVMCodeSkipsExternalCompilers() throws IOException, InterruptedException {
+        MyunCompiler compiler = createCompiler(CompilationCache.DEFAULT_MAX_BYTES);
+        compiler.compileFromFile(inputFile);
+
+        // a comment changes the source, but not the llvm code
+        Files.write(Paths.get(inputFile), "\n// comment\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        String outputFile = compiler.compileFromFile(inputFile);
+
+        CompilationCache.Statistics statistics = compiler.getCache().get().getStatistics();
+        assertEquals(1, statistics.getIRHits());
+        assertEquals(0, statistics.getSourceHits());
+        assertEquals("5876", CodeRunner.executeAndGetOutput(outputFile)[0]);
+
+        // the changed source points to the artifacts now
+        compiler.compileFromFile(inputFile);
+        assertEquals(1, compiler.getCache().get().getStatistics().getSourceHits());
+    }
+
+    @Test
+    public void cacheSizeIsBounded() throws IOException, InterruptedException {
+        MyunCompiler compiler = createCompiler(1);
+        compiler.compileFromFile(inputFile);
+        compiler.compileFromFile(inputFile);
+
+        assertEquals("Entries larger than the cache should be evicted.", 2,
+                compiler.getCache().get().getStatistics().getMisses());
+        try (Stream<Path> entries = Files.list(workDirectory.resolve("cache").resolve("ir"))) {
+            assertEquals(0, entries.count());
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package myun.compiler;
+
+import myun.AST.ASTGenerator;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the timing report of the compiler phases.
+ */
+public class CompilationTimerTest {
+    private String resPath;
+
+    @Before
+    public void setUp() {
+        File resources = new File("testData/myun/compiler/functions");
+        resPath = resources.getAbsolutePath() + '/';
+    }
+
+    @Test
+    public void phasesAreRecordedInOrder() {
+        CompilationTimer timer = new CompilationTimer("test.myun");
+        timer.startPhase("first");
+        timer.startPhase("second");
+        timer.endPhase();
+        timer.addPhase("third", 5, -1);
+
+        List<String> names = timer.getPhases().stream().map(CompilationTimer.Phase::getName).
+                collect(Collectors.toList());
+        assertArrayEquals(new String[]{"first", "second", "third"}, names.toArray());
+        assertTrue(timer.getPhases().stream().allMatch(phase -> phase.getWallNanos() >= 0));
+        assertEquals(timer.getPhases().stream().mapToLong(CompilationTimer.Phase::getWallNanos).sum(),
+                timer.getTotalNanos());
+    }
+
+    @Test
+    public void allocationsOfOtherThreadsAreAdded() {
+        CompilationTimer timer = new CompilationTimer("test.myun");
+        timer.startPhase("parse");
+        timer.addAllocatedBytes(1 << 30);
+        timer.startPhase("unknown");
+        timer.addAllocatedBytes(1 << 30);
+        timer.addAllocatedBytes(-1);
+        timer.endPhase();
+
+        long parseBytes = timer.getPhases().get(0).getAllocatedBytes();
+        assertTrue((parseBytes == -1) || (parseBytes >= (1 << 30)));
+        assertEquals(-1, timer.getPhases().get(1).getAllocatedBytes());
+    }
+
+    @Test
+    public void parserThreadsAreMeasured() {
+        ASTGenerator generator = new ASTGenerator();
+        assertEquals(0, generator.getParserAllocatedBytes());
+        StringBuilder code = new StringBuilder("script main\n    x := 0");
+        for (int i = 0; i < 10000; i++) {
+            code.append(" + ").append(i % 10);
+        }
+        generator.parseCode(code.append("\n    print(x)\nend\n").toString(), false);
+
+        // the parser allocates at least one token object per term
+        long allocatedBytes = generator.getParserAllocatedBytes();
+        assertTrue((allocatedBytes == -1) || (allocatedBytes >= 10000 * 16));
+    }
+
+    @Test
+    public void jsonReportContainsAllPhases() {
+        CompilationTimer timer = new CompilationTimer("dir/\"quoted\".myun");
+        timer.addPhase("parse", 1500, 2048);
+        timer.addPhase("llc", 2500, -1);
+
+        assertEquals("{\"file\":\"dir/\\\"quoted\\\".myun\",\"phases\":[" +
+                "{\"name\":\"parse\",\"wallNanos\":1500,\"allocatedBytes\":2048}," +
+                "{\"name\":\"llc\",\"wallNanos\":2500,\"allocatedBytes\":-1}],\"totalNanos\":4000," +
+                "\"processes\":0}", timer.toJSON());
+    }
+
+    @Test
+    public void compilerReportsEveryPhase() throws IOException, InterruptedException {
+        PrintStream stdOut = System.out;
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(output, true, "utf-8"));
+        try {
+            MyunCompiler.getDefaultMyunCompiler(CompilerFlag.TIMINGS).compileFromFile(resPath + "funcCall.myun");
+        } finally {
+            System.setOut(stdOut);
+        }
+
+        String report = output.toString("utf-8");
+        String[] phases = {"parse", "constraints", "scopes", "types", "fold", "dce", "translate", "llc",
+                "link", "total"};
+        for (String phase : phases) {
+            assertTrue("The report should contain the phase " + phase + '.', report.contains("  " + phase + ' '));
+        }
+        assertFalse("llc should emit the object file.", report.contains("  assemble "));
+        assertTrue("Only llc and the linker should run.", report.contains("2 processes"));
+    }
+
+    @Test
+    public void assemblyFilesAreAssembledSeparately() throws IOException, InterruptedException {
+        PrintStream stdOut = System.out;
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(output, true, "utf-8"));
+        String outputFile;
+        try {
+            outputFile = MyunCompiler.getDefaultMyunCompiler(CompilerFlag.TIMINGS, CompilerFlag.EMIT_ASSEMBLY).
+                    compileFromFile(resPath + "funcCall.myun");
+        } finally {
+            System.setOut(stdOut);
+        }
+
+        String report = output.toString("utf-8");
+        assertTrue("The report should contain the phase assemble.", report.contains("  assemble "));
+        assertTrue("llc, the assembler, and the linker should run.", report.contains("3 processes"));
+        assertTrue("The assembly file should be written.", new File(resPath + "funcCall.s").exists());
+        assertEquals("5876", CodeRunner.executeAndGetOutput(outputFile)[0]);
+    }
+}
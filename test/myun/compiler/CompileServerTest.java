@@ -0,0 +1,95 @@
+package myun.compiler;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the compilation via a compile server.
+ */
+public class CompileServerTest {
+    private String resPath;
+    private Path socketPath;
+    private CompileServer server;
+    private ExecutorService serverThread;
+
+    @Before
+    public void setUp() throws IOException {
+        File resources = new File("testData/myun/compiler/functions");
+        resPath = resources.getAbsolutePath() + '/';
+
+        socketPath = Files.createTempDirectory("myun").resolve("compiler.sock");
+        server = new CompileServer(socketPath);
+        serverThread = Executors.newSingleThreadExecutor();
+        serverThread.submit(() -> {
+            server.serve();
+            return null;
+        });
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.close();
+        serverThread.shutdown();
+        Files.deleteIfExists(socketPath.getParent());
+    }
+
+    @Test
+    public void fileIsCompiledByTheServer() throws IOException, InterruptedException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        int exitCode = CompileClient.compile(socketPath, Arrays.asList(resPath + "funcCall.myun", "llc", "gcc", "0",
+                "-timings"), new PrintStream(output, true, "utf-8"));
+
+        assertEquals(0, exitCode);
+        assertTrue("The timings should be sent to the client.", output.toString("utf-8").contains("translate"));
+        String[] lines = CodeRunner.executeAndGetOutput(resPath + "funcCall.out");
+        assertEquals("5876", lines[0]);
+    }
+
+    @Test
+    public void errorsAreReported() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        int exitCode = CompileClient.compile(socketPath, Collections.singletonList(resPath + "callUndeclared.myun"),
+                new PrintStream(output, true, "utf-8"));
+
+        assertEquals(1, exitCode);
+        assertTrue(output.toString("utf-8").startsWith("Parse Error"));
+
+        exitCode = CompileClient.compile(socketPath, Arrays.asList(resPath + "funcCall.myun", "llc", "gcc", "0",
+                "-unknown"), new PrintStream(new ByteArrayOutputStream(), true, "utf-8"));
+        assertEquals(1, exitCode);
+    }
+
+    @Test
+    public void requestsAreServedConcurrently() throws InterruptedException, ExecutionException {
+        List<String> files = Arrays.asList("funcCall.myun", "nestedFuncCall.myun", "recursion.myun",
+                "simpleOverloading.myun", "outOfOrderFuncDefs.myun", "cyclicFuncDefs.myun");
+        ExecutorService clients = Executors.newFixedThreadPool(files.size());
+        try {
+            List<Future<Integer>> exitCodes = new ArrayList<>();
+            for (String file : files) {
+                exitCodes.add(clients.submit(() -> CompileClient.compile(socketPath,
+                        Collections.singletonList(resPath + file), new PrintStream(new ByteArrayOutputStream()))));
+            }
+            for (Future<Integer> exitCode : exitCodes) {
+                assertEquals(0, (int) exitCode.get());
+            }
+        } finally {
+            clients.shutdown();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package myun.compiler;
+
+import myun.MyunException;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Stress test for concurrent compilations, which share the builtin scope.
+ */
+public class ConcurrentCompilationTest {
+    private static final int THREADS = 8;
+    private static final int ROUNDS = 4;
+
+    private static List<String> getTestDataFiles() throws IOException {
+        try (Stream<Path> files = Files.walk(Paths.get("testData"))) {
+            return files.map(Path::toString).filter(file -> file.endsWith(".myun")).sorted().
+                    collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * @return the llvm code of the file or the message of its compile error
+     */
+    private static String translate(MyunCompiler compiler, boolean ssa, String file) throws IOException {
+        try {
+            MyunCompiler.TranslatedFile translatedFile = compiler.translateFile(file, new CompilationTimer(file));
+            return new MyunToLLVMTranslator(ssa).translateToLLVM(translatedFile.getProgram());
+        } catch (MyunException e) {
+            return e.getClass().getSimpleName() + ": " + e.getMessage();
+        }
+    }
+
+    private static void assertSameAsSequential(MyunCompiler compiler, boolean ssa)
+            throws IOException, InterruptedException, ExecutionException {
+        Map<String, String> expected = new LinkedHashMap<>();
+        for (String file : getTestDataFiles()) {
+            expected.put(file, translate(compiler, ssa, file));
+        }
+
+        List<String> files = new ArrayList<>();
+        for (int i = 0; i < ROUNDS; i++) {
+            files.addAll(expected.keySet());
+        }
+        Collections.shuffle(files, new Random(42));
+
+        ExecutorService threads = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (String file : files) {
+                results.add(threads.submit(() -> translate(compiler, ssa, file)));
+            }
+            for (int i = 0; i < files.size(); i++) {
+                assertEquals("The concurrent compilation of " + files.get(i) + " should be the same.",
+                        expected.get(files.get(i)), results.get(i).get());
+            }
+        } finally {
+            threads.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testDataIsCompiledConcurrently() throws IOException, InterruptedException, ExecutionException {
+        assertSameAsSequential(MyunCompiler.getDefaultMyunCompiler(), false);
+    }
+
+    @Test
+    public void testDataIsOptimizedConcurrently() throws IOException, InterruptedException, ExecutionException {
+        assertSameAsSequential(MyunCompiler.getDefaultMyunCompiler(CompilerFlag.SSA, CompilerFlag.LICM,
+                CompilerFlag.INLINE), true);
+    }
+}
@@ -106,6 +106,15 @@ public class ControlFlowTest {
         assertArrayEquals("Nested for loops should compile.", expected, lines);
     }
 
+    @Test
+    public void testForBoundEvaluatedOnce() throws IOException, InterruptedException {
+        String outputFile = compiler.compileFromFile(resPath + "forBoundOnce.myun");
+        String[] lines = CodeRunner.executeAndGetOutput(outputFile);
+
+        String[] expected = {"3", "6"};
+        assertArrayEquals("The bound of a for loop should be evaluated only once.", expected, lines);
+    }
+
     @Test
     public void testSimpleBreaks() throws IOException, InterruptedException {
         String outputFile = compiler.compileFromFile(resPath + "simpleBreaks.myun");
@@ -125,4 +134,13 @@ public class ControlFlowTest {
             "1", "2", "3"};
         assertArrayEquals("Breaks in nested loops should work.", expected, lines);
     }
+
+    @Test
+    public void testDeclarationsInLoops() throws IOException, InterruptedException {
+        String outputFile = compiler.compileFromFile(resPath + "loopDeclarations.myun");
+        String[] lines = CodeRunner.executeAndGetOutput(outputFile);
+
+        String[] expected = {"8999994", "1", "2", "2.500000000000000e+00"};
+        assertArrayEquals("Declarations in loop bodies should not exhaust the stack.", expected, lines);
+    }
 }
@@ -0,0 +1,75 @@
+package myun.compiler;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the asynchronous external processes of the compile chain.
+ */
+public class ExternalProcessTest {
+    @Test(timeout = 10000)
+    public void largeOutputDoesNotBlockTheProcess() throws Exception {
+        // far more than a pipe buffer on both streams
+        ExternalProcess process = ExternalProcess.startWithoutInput("noisy",
+                Arrays.asList("sh", "-c", "head -c 1000000 /dev/zero | tr '\\0' x; head -c 1000000 /dev/zero >&2"));
+        ExternalProcess.Result result = process.finish(0).get();
+
+        assertEquals(1000000, result.getOutput().length());
+        assertEquals(1000000, result.getErrors().length());
+        assertTrue(result.getWallNanos() >= 0);
+    }
+
+    @Test(timeout = 10000)
+    public void inputIsPassedToTheProcess() throws Exception {
+        ExternalProcess process = ExternalProcess.start("cat", Arrays.asList("cat"));
+        process.writeInput(input -> input.write("define fastcc i32 @f()"));
+
+        assertEquals("define fastcc i32 @f()", process.finish(0).get().getOutput());
+    }
+
+    @Test(timeout = 10000)
+    public void failingProcessReportsItsErrors() throws Exception {
+        ExternalProcess process = ExternalProcess.startWithoutInput("fail",
+                Arrays.asList("sh", "-c", "echo 'invalid code' >&2; exit 3"));
+        try {
+            process.finish(0).get();
+            fail("The process should fail.");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof UnsuccessfulCompilationException);
+            assertEquals("invalid code\n", e.getCause().getMessage());
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void processIsKilledAfterTimeout() throws Exception {
+        ExternalProcess process = ExternalProcess.startWithoutInput("sleep", Arrays.asList("sleep", "30"));
+        try {
+            process.finish(200).get();
+            fail("The process should time out.");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof UnsuccessfulCompilationException);
+            assertTrue(e.getCause().getMessage().contains("did not finish within 200 ms"));
+        }
+        while (process.isAlive()) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void cancelledProcessIsKilled() throws Exception {
+        ExternalProcess process = ExternalProcess.startWithoutInput("sleep", Arrays.asList("sleep", "30"));
+        CompletableFuture<ExternalProcess.Result> result = process.finish(0);
+        result.cancel(true);
+
+        assertTrue(result.isCancelled());
+        while (process.isAlive()) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+    }
+}
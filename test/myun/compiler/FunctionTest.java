@@ -7,8 +7,11 @@ import java.io.File;
 import java.io.IOException;
 
 import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Tests whether function definitions and calls work properly.
@@ -37,6 +40,20 @@ public class FunctionTest {
         assertEquals("Second output should be float -9003.0", -9003.0, resFloat, 1e-8);
     }
 
+    @Test
+    public void llvmCodeIsOnlyWrittenToFileIfRequested() throws IOException, InterruptedException {
+        File llvmFile = new File(resPath + "funcCall.ll");
+        llvmFile.delete();
+        String outputFile = compiler.compileFromFile(resPath + "funcCall.myun");
+        assertFalse("The llvm code should be streamed to llc.", llvmFile.exists());
+        String[] streamedLines = CodeRunner.executeAndGetOutput(outputFile);
+
+        MyunCompiler.getDefaultMyunCompiler(CompilerFlag.KEEP_IR).compileFromFile(resPath + "funcCall.myun");
+        assertTrue("The llvm code should be kept.", llvmFile.exists());
+        assertArrayEquals(streamedLines, CodeRunner.executeAndGetOutput(outputFile));
+        llvmFile.delete();
+    }
+
     @Test
     public void nestedFunctionCallsSucceed() throws IOException, InterruptedException {
         String outputFile = compiler.compileFromFile(resPath + "nestedFuncCall.myun");
@@ -92,4 +109,13 @@ public class FunctionTest {
         assertEquals("First output should be float 5050.0", 5050.0, resFloat, 1e-8);
         assertEquals("Second output should be int 5050", 5050, resInt);
     }
+
+    @Test
+    public void tailCallsRunInConstantStackSpace() throws IOException, InterruptedException {
+        String outputFile = compiler.compileFromFile(resPath + "tailCalls.myun");
+        String[] lines = CodeRunner.executeAndGetOutput(outputFile);
+
+        String[] expected = {"50000005000000", "0", "111"};
+        assertArrayEquals("Deep tail recursion should not overflow the stack.", expected, lines);
+    }
 }
@@ -0,0 +1,107 @@
+package myun.compiler;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertArrayEquals;
+
+/**
+ * Tests whether machine-generated code with very long expressions and deeply nested branches is compiled, which would
+ * overflow the call stack if the passes recursed through the AST.
+ */
+public class GeneratedCodeScalingTest {
+    private static final int TERMS = 100000;
+    private static final int DEPTH = 10000;
+
+    private Path workDirectory;
+
+    @Before
+    public void setUp() throws IOException {
+        workDirectory = Files.createTempDirectory("myun");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(workDirectory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    /**
+     * @return a script that prints the sum of an expression with the given number of terms
+     */
+    static String generateLongExpression(int terms) {
+        StringBuilder code = new StringBuilder("script main\n    x := 0");
+        for (int i = 1; i < terms; i++) {
+            code.append((i % 2 == 0) ? " - " : " + ").append(i % 10);
+        }
+        return code.append("\n    print(x)\nend\n").toString();
+    }
+
+    private static int getSum(int terms) {
+        int sum = 0;
+        for (int i = 1; i < terms; i++) {
+            sum += (i % 2 == 0) ? -(i % 10) : (i % 10);
+        }
+        return sum;
+    }
+
+    /**
+     * @return a function with the given number of nested branches, each of which increments a copy of the parameter
+     */
+    static String generateNestedBranches(int depth) {
+        StringBuilder code = new StringBuilder("nested(start::Int)::Int\nx := start\n");
+        for (int i = 0; i < depth; i++) {
+            code.append("if x >= 0 then\nx = x + 1\n");
+        }
+        for (int i = 0; i < depth; i++) {
+            code.append("else\nx = 0\nend\n");
+        }
+        return code.append("return x\nend\n\nscript main\n    print(nested(0))\n    print(nested(-1))\nend\n").
+                toString();
+    }
+
+    private String[] compileAndRun(MyunCompiler compiler, String code) throws IOException, InterruptedException {
+        Path input = Files.createTempFile(workDirectory, "generated", ".myun");
+        Files.write(input, code.getBytes(StandardCharsets.UTF_8));
+        return CodeRunner.executeAndGetOutput(compiler.compileFromFile(input.toString()));
+    }
+
+    @Test
+    public void longExpressionsAreCompiled() throws IOException, InterruptedException {
+        String[] expected = {Integer.toString(getSum(TERMS))};
+        assertArrayEquals(expected, compileAndRun(MyunCompiler.getDefaultMyunCompiler(),
+                generateLongExpression(TERMS)));
+    }
+
+    @Test
+    public void longExpressionsAreOptimized() throws IOException, InterruptedException {
+        String[] expected = {Integer.toString(getSum(TERMS))};
+        MyunCompiler compiler = MyunCompiler.getDefaultMyunCompiler(CompilerFlag.SSA, CompilerFlag.LICM,
+                CompilerFlag.INLINE);
+        assertArrayEquals(expected, compileAndRun(compiler, generateLongExpression(TERMS)));
+    }
+
+    @Test
+    public void deeplyNestedBranchesAreCompiled() throws IOException, InterruptedException {
+        String[] expected = {Integer.toString(DEPTH), "0"};
+        assertArrayEquals(expected, compileAndRun(MyunCompiler.getDefaultMyunCompiler(),
+                generateNestedBranches(DEPTH)));
+    }
+
+    @Test
+    public void deeplyNestedBranchesAreOptimized() throws IOException, InterruptedException {
+        String[] expected = {Integer.toString(DEPTH), "0"};
+        MyunCompiler compiler = MyunCompiler.getDefaultMyunCompiler(CompilerFlag.SSA, CompilerFlag.LICM,
+                CompilerFlag.INLINE);
+        assertArrayEquals(expected, compileAndRun(compiler, generateNestedBranches(DEPTH)));
+    }
+}
@@ -0,0 +1,77 @@
+package myun.compiler;
+
+import myun.AST.ASTCompileUnit;
+import myun.AST.ASTGenerator;
+import myun.scope.MyunCoreScope;
+import myun.scope.ScopeInitializer;
+import myun.type.inference.TypeInferrer;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * Tests the SSA mode of the translator, which keeps mutable variables in registers.
+ */
+public class SSATranslationTest {
+    private MyunCompiler stackCompiler;
+    private MyunCompiler ssaCompiler;
+    private String resPath;
+
+    @Before
+    public void setUp() {
+        File resources = new File("testData/myun/compiler");
+        resPath = resources.getAbsolutePath() + '/';
+        stackCompiler = MyunCompiler.getDefaultMyunCompiler();
+        ssaCompiler = MyunCompiler.getDefaultMyunCompiler(CompilerFlag.SSA);
+    }
+
+    private void assertSameOutput(String file) throws IOException, InterruptedException {
+        String[] expected = CodeRunner.executeAndGetOutput(stackCompiler.compileFromFile(resPath + file));
+        String[] actual = CodeRunner.executeAndGetOutput(ssaCompiler.compileFromFile(resPath + file));
+        assertArrayEquals(file + " should have the same output in SSA mode.", expected, actual);
+    }
+
+    @Test
+    public void noStackSlotsInSSAMode() throws IOException {
+        ASTCompileUnit program = new ASTGenerator().parseFile(resPath + "functions/simpleOverloading.myun");
+        ScopeInitializer.initScopes(program, MyunCoreScope.getInstance());
+        new TypeInferrer().inferTypes(program);
+
+        String llvmCode = new MyunToLLVMTranslator(true).translateToLLVM(program);
+        assertFalse("There should be no alloca in SSA mode.", llvmCode.contains("alloca"));
+        assertFalse("There should be no load in SSA mode.", llvmCode.contains("load"));
+        assertFalse("There should be no store in SSA mode.", llvmCode.contains("store"));
+    }
+
+    @Test
+    public void branchesWorkInSSAMode() throws IOException, InterruptedException {
+        assertSameOutput("controlflow/ifElse.myun");
+        assertSameOutput("controlflow/elseIf.myun");
+        assertSameOutput("controlflow/nestedBranches.myun");
+    }
+
+    @Test
+    public void loopsWorkInSSAMode() throws IOException, InterruptedException {
+        assertSameOutput("controlflow/whileLoops.myun");
+        assertSameOutput("controlflow/nestedWhile.myun");
+        assertSameOutput("controlflow/nestedFor.myun");
+        assertSameOutput("controlflow/loopDeclarations.myun");
+    }
+
+    @Test
+    public void breaksWorkInSSAMode() throws IOException, InterruptedException {
+        assertSameOutput("controlflow/simpleBreaks.myun");
+        assertSameOutput("controlflow/nestedBreaks.myun");
+    }
+
+    @Test
+    public void functionsWorkInSSAMode() throws IOException, InterruptedException {
+        assertSameOutput("functions/simpleOverloading.myun");
+        assertSameOutput("functions/recursion.myun");
+    }
+}
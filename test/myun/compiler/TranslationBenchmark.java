@@ -0,0 +1,78 @@
+package myun.compiler;
+
+import myun.AST.ASTCompileUnit;
+import myun.AST.ASTGenerator;
+import myun.scope.MyunCoreScope;
+import myun.scope.ScopeInitializer;
+import myun.type.inference.TypeInferrer;
+
+import java.util.Locale;
+
+/**
+ * Measures the translation of generated sources that consist almost entirely of function calls (of user defined
+ * functions and of the operators of the {@link MyunCoreScope}) to LLVM code.
+ * The calls are resolved by the type inference, so the translation only reads their targets.
+ * Arguments: [number of functions] [calls per function] [repetitions]
+ * @noinspection UseOfSystemOutOrSystemErr
+ */
+public final class TranslationBenchmark {
+    private TranslationBenchmark() {
+    }
+
+    /**
+     * Generates a program whose functions sum up calls of the previous functions.
+     *
+     * @param functions the number of functions
+     * @param calls the number of calls of other functions per function
+     * @return the code
+     */
+    static String generateSource(int functions, int calls) {
+        StringBuilder code = new StringBuilder();
+        for (int i = 0; i < functions; i++) {
+            code.append('f').append(i).append("(x::Int, y::Int)::Int\n    s := x * y\n");
+            for (int call = 0; call < calls; call++) {
+                int callee = (i == 0) ? 0 : call % i;
+                code.append("    s = s + ");
+                code.append((i == 0) ? "x mod 7" : "f" + callee + "(x - " + call + ", y)").append('\n');
+            }
+            code.append("    return s\nend\n\n");
+        }
+        code.append("script main\n    print(f").append(functions - 1).append("(1, 2))\nend\n");
+        return code.toString();
+    }
+
+    private static ASTCompileUnit inferTypes(String code) {
+        ASTCompileUnit program = new ASTGenerator().parseCode(code, true);
+        ScopeInitializer.initScopes(program, MyunCoreScope.getInstance());
+        new TypeInferrer().inferTypes(program);
+        return program;
+    }
+
+    private static long measure(ASTCompileUnit program, boolean ssa, int repetitions) {
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < repetitions; i++) {
+            long start = System.nanoTime();
+            new MyunToLLVMTranslator(ssa).translateToLLVM(program);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+
+    public static void main(String... args) {
+        int functions = (args.length > 0) ? Integer.parseInt(args[0]) : 500;
+        int calls = (args.length > 1) ? Integer.parseInt(args[1]) : 40;
+        int repetitions = (args.length > 2) ? Integer.parseInt(args[2]) : 10;
+        String code = generateSource(functions, calls);
+        ASTCompileUnit program = inferTypes(code);
+
+        // the first runs warm up the translator
+        measure(program, false, repetitions);
+        measure(program, true, repetitions);
+        long stackNanos = measure(program, false, repetitions);
+        long ssaNanos = measure(program, true, repetitions);
+        System.out.printf(Locale.ROOT, "%d functions with %d calls each, %.1f KiB%n", functions, calls,
+                code.length() / 1024.0);
+        System.out.printf(Locale.ROOT, "translation (stack slots): %10.3f ms%n", stackNanos / 1.0e6);
+        System.out.printf(Locale.ROOT, "translation (SSA):         %10.3f ms%n", ssaNanos / 1.0e6);
+    }
+}
@@ -0,0 +1,82 @@
+package myun.optimization;
+
+import myun.AST.*;
+import myun.compiler.CodeRunner;
+import myun.compiler.MyunCompiler;
+import myun.scope.MyunCoreScope;
+import myun.scope.ScopeInitializer;
+import myun.type.inference.TypeInferrer;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the folding and propagation of constants.
+ */
+public class ConstantFolderTest {
+    private String resPath;
+
+    @Before
+    public void setUp() {
+        File resources = new File("testData/myun/compiler/optimization");
+        resPath = resources.getAbsolutePath() + '/';
+    }
+
+    private ASTCompileUnit optimize(String file) throws IOException {
+        ASTCompileUnit program = new ASTGenerator().parseFile(resPath + file);
+        ScopeInitializer.initScopes(program, MyunCoreScope.getInstance());
+        new TypeInferrer().inferTypes(program);
+        new ConstantFolder().optimize(program);
+        return program;
+    }
+
+    @Test
+    public void constantsArePropagatedIntoCalls() throws IOException {
+        ASTCompileUnit program = optimize("constantFolding.myun");
+        ASTFuncDef scale = program.getFuncDefs().iterator().next();
+
+        assertTrue("The declaration of factor should be removed.", scale.getBlock().getStatements().isEmpty());
+        ASTFuncCall mult = (ASTFuncCall) scale.getBlock().getFuncReturn().get().getExpr();
+        assertTrue("x should not be replaced.", mult.getArgs().get(0) instanceof ASTVariable);
+        assertEquals("factor should be replaced by 7.", 7L, ((ASTConstant<?>) mult.getArgs().get(1)).getValue());
+    }
+
+    @Test
+    public void onlyConstantDeclarationsAreRemoved() throws IOException {
+        ASTCompileUnit program = optimize("constantFolding.myun");
+        List<ASTStatement> statements = program.getScript().getBlock().getStatements();
+
+        long declarations = statements.stream().filter(stmt -> stmt instanceof ASTDeclaration).count();
+        assertEquals("Only the declaration of counter should be left.", 1, declarations);
+        ASTDeclaration counter = (ASTDeclaration) statements.stream().filter(stmt -> stmt instanceof ASTDeclaration).
+                findFirst().get();
+        assertEquals("counter", counter.getVariable().getName());
+        assertEquals(10L, ((Number) ((ASTConstant<?>) counter.getExpr()).getValue()).longValue());
+    }
+
+    @Test
+    public void divisionByZeroIsNotFolded() throws IOException {
+        ASTCompileUnit program = optimize("constantFolding.myun");
+        List<ASTStatement> statements = program.getScript().getBlock().getStatements();
+        ASTForLoop loop = (ASTForLoop) statements.get(statements.size() - 1);
+        ASTProcCall print = (ASTProcCall) loop.getBlock().getStatements().get(0);
+
+        ASTFuncCall division = (ASTFuncCall) print.getFuncCall().getArgs().get(0);
+        assertEquals("div", division.getFunction());
+        assertEquals(0L, ((Number) ((ASTConstant<?>) division.getArgs().get(1)).getValue()).longValue());
+    }
+
+    @Test
+    public void foldedProgramHasSameOutput() throws IOException, InterruptedException {
+        String outputFile = MyunCompiler.getDefaultMyunCompiler().compileFromFile(resPath + "constantFolding.myun");
+        String[] lines = CodeRunner.executeAndGetOutput(outputFile);
+
+        String[] expected = {"99", "3.250000000000000e+00", "1", "70", "11", "-17179869180"};
+        assertArrayEquals("Constant folding should not change the output.", expected, lines);
+    }
+}
@@ -0,0 +1,73 @@
+package myun.optimization;
+
+import myun.AST.*;
+import myun.compiler.CodeRunner;
+import myun.compiler.MyunCompiler;
+import myun.scope.MyunCoreScope;
+import myun.scope.ScopeInitializer;
+import myun.type.inference.TypeInferrer;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the removal of unreachable code and functions.
+ */
+public class DeadCodeEliminatorTest {
+    private String resPath;
+
+    @Before
+    public void setUp() {
+        File resources = new File("testData/myun/compiler/optimization");
+        resPath = resources.getAbsolutePath() + '/';
+    }
+
+    private ASTCompileUnit optimize(String file) throws IOException {
+        ASTCompileUnit program = new ASTGenerator().parseFile(resPath + file);
+        ScopeInitializer.initScopes(program, MyunCoreScope.getInstance());
+        new TypeInferrer().inferTypes(program);
+        new ConstantFolder().optimize(program);
+        new DeadCodeEliminator().optimize(program);
+        return program;
+    }
+
+    @Test
+    public void unreachableFunctionsAreRemoved() throws IOException {
+        ASTCompileUnit program = optimize("deadCode.myun");
+        List<String> functions = program.getFuncDefs().stream().map(ASTFuncDef::getName).collect(Collectors.toList());
+
+        assertEquals("Only used and helper should be left.", 2, functions.size());
+        assertTrue(functions.contains("used"));
+        assertTrue(functions.contains("helper"));
+    }
+
+    @Test
+    public void unreachableStatementsAreRemoved() throws IOException {
+        ASTCompileUnit program = optimize("deadCode.myun");
+        ASTFuncDef used = program.getFuncDefs().stream().filter(funcDef -> "used".equals(funcDef.getName())).
+                findFirst().get();
+        assertEquals("The print after the returning branch should be removed.", 1,
+                used.getBlock().getStatements().size());
+
+        // only the else block, the default declaration, the true block, and the last assignment and print are left
+        List<ASTStatement> statements = program.getScript().getBlock().getStatements();
+        assertFalse("No branches or loops should be left.", statements.stream().anyMatch(stmt ->
+                (stmt instanceof ASTBranch) || (stmt instanceof ASTWhileLoop) || (stmt instanceof ASTForLoop)));
+        assertEquals(5, statements.size());
+    }
+
+    @Test
+    public void optimizedProgramHasSameOutput() throws IOException, InterruptedException {
+        String outputFile = MyunCompiler.getDefaultMyunCompiler().compileFromFile(resPath + "deadCode.myun");
+        String[] lines = CodeRunner.executeAndGetOutput(outputFile);
+
+        String[] expected = {"42", "5", "6"};
+        assertArrayEquals("Dead code elimination should not change the output.", expected, lines);
+    }
+}
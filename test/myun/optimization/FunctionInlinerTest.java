@@ -0,0 +1,131 @@
+package myun.optimization;
+
+import myun.AST.*;
+import myun.compiler.CodeRunner;
+import myun.compiler.CompilerFlag;
+import myun.compiler.MyunCompiler;
+import myun.scope.MyunCoreScope;
+import myun.scope.ScopeInitializer;
+import myun.type.inference.TypeInferrer;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the inlining of small functions.
+ */
+public class FunctionInlinerTest {
+    private String resPath;
+
+    @Before
+    public void setUp() {
+        File resources = new File("testData/myun/compiler/optimization");
+        resPath = resources.getAbsolutePath() + '/';
+    }
+
+    private ASTCompileUnit inline(String file, int threshold) throws IOException {
+        ASTCompileUnit program = new ASTGenerator().parseFile(resPath + file);
+        ScopeInitializer.initScopes(program, MyunCoreScope.getInstance());
+        new TypeInferrer().inferTypes(program);
+        new FunctionInliner(threshold).optimize(program);
+        return program;
+    }
+
+    private static ASTFuncDef getFuncDef(ASTCompileUnit program, String name) {
+        return program.getFuncDefs().stream().filter(funcDef -> name.equals(funcDef.getName())).findFirst().get();
+    }
+
+    private static String print(ASTNode node) {
+        return new MyunPrettyPrinter().toString(node);
+    }
+
+    @Test
+    public void smallFunctionsAreInlined() throws IOException {
+        ASTCompileUnit program = inline("inlining.myun", FunctionInliner.DEFAULT_THRESHOLD);
+        String script = print(program.getScript());
+
+        assertFalse("square should be inlined.", script.contains("square("));
+        assertFalse("sumOfSquares should be inlined.", script.contains("sumOfSquares("));
+        assertFalse("square should be inlined into sumOfSquares.",
+                print(getFuncDef(program, "sumOfSquares")).contains("square("));
+        assertTrue("large is above the threshold.", script.contains("large("));
+    }
+
+    @Test
+    public void recursiveCallsAreNotInlined() throws IOException {
+        ASTCompileUnit program = inline("inlining.myun", FunctionInliner.DEFAULT_THRESHOLD);
+
+        // the call in the script is inlined once, but the recursive call inside it is kept
+        assertTrue(print(program.getScript()).contains("factorial("));
+        assertTrue(print(getFuncDef(program, "factorial")).contains("factorial("));
+    }
+
+    @Test
+    public void callsAfterSideEffectsAreNotInlined() throws IOException {
+        ASTCompileUnit program = inline("inlining.myun", FunctionInliner.DEFAULT_THRESHOLD);
+        String script = print(program.getScript());
+
+        // the second call must be evaluated after the prints of the first one
+        assertEquals(script.indexOf("printTwice("), script.lastIndexOf("printTwice("));
+        assertTrue(script.contains("printTwice(8)"));
+    }
+
+    @Test
+    public void thresholdIsRespected() throws IOException {
+        ASTCompileUnit program = inline("inlining.myun", 5);
+        String script = print(program.getScript());
+
+        assertFalse("square should be inlined.", script.contains("square("));
+        assertTrue("sumOfSquares is above the threshold.", script.contains("sumOfSquares("));
+    }
+
+    @Test
+    public void uncalledFunctionsAreSkipped() throws IOException, InterruptedException {
+        // the parameter types of unused are never inferred, so its calls are not resolved
+        ASTCompileUnit program = inline("uncalledFunction.myun", FunctionInliner.DEFAULT_THRESHOLD);
+        assertFalse("square should be inlined.", print(program.getScript()).contains("square("));
+        assertTrue(print(getFuncDef(program, "unused")).contains("isLessEq(a, 5)"));
+
+        String outputFile = MyunCompiler.getDefaultMyunCompiler(CompilerFlag.INLINE).
+                compileFromFile(resPath + "uncalledFunction.myun");
+        assertArrayEquals(new String[]{"9"}, CodeRunner.executeAndGetOutput(outputFile));
+    }
+
+    @Test
+    public void siblingLoopsKeepTheirScopes() throws IOException, InterruptedException {
+        // both loops declare i and x, which must not collide in the caller
+        ASTCompileUnit program = inline("inlinedLoops.myun", FunctionInliner.DEFAULT_THRESHOLD);
+        assertFalse("sumTwice should be inlined.", print(program.getScript()).contains("sumTwice("));
+
+        String[] expected = {"18", "30"};
+        String outputFile = MyunCompiler.getDefaultMyunCompiler().compileFromFile(resPath + "inlinedLoops.myun");
+        assertArrayEquals(expected, CodeRunner.executeAndGetOutput(outputFile));
+
+        outputFile = MyunCompiler.getDefaultMyunCompiler(CompilerFlag.INLINE).
+                compileFromFile(resPath + "inlinedLoops.myun");
+        assertArrayEquals("Inlining should not change the output.", expected, CodeRunner.executeAndGetOutput(outputFile));
+
+        outputFile = MyunCompiler.getDefaultMyunCompiler(CompilerFlag.INLINE, CompilerFlag.SSA).
+                compileFromFile(resPath + "inlinedLoops.myun");
+        assertArrayEquals("Inlining should not change the output.", expected, CodeRunner.executeAndGetOutput(outputFile));
+    }
+
+    @Test
+    public void inlinedProgramHasSameOutput() throws IOException, InterruptedException {
+        String[] expected = {"16", "14", "3", "120", "89", "7", "7", "8", "8", "15"};
+
+        String outputFile = MyunCompiler.getDefaultMyunCompiler().compileFromFile(resPath + "inlining.myun");
+        assertArrayEquals(expected, CodeRunner.executeAndGetOutput(outputFile));
+
+        outputFile = MyunCompiler.getDefaultMyunCompiler(CompilerFlag.INLINE).compileFromFile(resPath + "inlining.myun");
+        assertArrayEquals("Inlining should not change the output.", expected, CodeRunner.executeAndGetOutput(outputFile));
+
+        outputFile = MyunCompiler.getDefaultMyunCompiler(CompilerFlag.INLINE, CompilerFlag.SSA).
+                compileFromFile(resPath + "inlining.myun");
+        assertArrayEquals("Inlining should not change the output.", expected, CodeRunner.executeAndGetOutput(outputFile));
+    }
+}
@@ -0,0 +1,80 @@
+package myun.optimization;
+
+import myun.AST.*;
+import myun.compiler.CodeRunner;
+import myun.compiler.CompilerFlag;
+import myun.compiler.MyunCompiler;
+import myun.scope.MyunCoreScope;
+import myun.scope.ScopeInitializer;
+import myun.type.inference.TypeInferrer;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the movement of loop invariant calls out of loops.
+ */
+public class LoopInvariantCodeMotionTest {
+    private String resPath;
+    private MyunPrettyPrinter prettyPrinter;
+
+    @Before
+    public void setUp() {
+        File resources = new File("testData/myun/compiler/optimization");
+        resPath = resources.getAbsolutePath() + '/';
+        prettyPrinter = new MyunPrettyPrinter();
+    }
+
+    private ASTCompileUnit optimize(String file) throws IOException {
+        ASTCompileUnit program = new ASTGenerator().parseFile(resPath + file);
+        ScopeInitializer.initScopes(program, MyunCoreScope.getInstance());
+        new TypeInferrer().inferTypes(program);
+        new LoopInvariantCodeMotion().optimize(program);
+        return program;
+    }
+
+    @Test
+    public void invariantCallsAreMovedBeforeLoops() throws IOException {
+        ASTCompileUnit program = optimize("loopInvariants.myun");
+        ASTFuncDef scaledSum = program.getFuncDefs().iterator().next();
+        List<ASTStatement> statements = scaledSum.getBlock().getStatements();
+
+        // a * a + 1 and b * 2 do not depend on the outer loop, a * 2 is the bound of the inner loop
+        assertEquals("Three invariant calls should be moved out of the for loop.", 5, statements.size());
+        ASTForLoop forLoop = (ASTForLoop) statements.get(4);
+        assertEquals("Moved calls should not leave copies in the loop.", 4, forLoop.getBlock().getStatements().size());
+        assertTrue(statements.get(1) instanceof ASTDeclaration);
+        assertTrue(statements.get(2) instanceof ASTDeclaration);
+        assertTrue(statements.get(3) instanceof ASTDeclaration);
+
+        String loop = prettyPrinter.toString(forLoop);
+        assertFalse("The loop should not compute a * a anymore.", loop.contains("mult(a, a)"));
+        assertFalse("The loop should not compute b * 2 anymore.", loop.contains("mult(b, 2)"));
+        assertFalse("The loop should not compute a * 2 anymore.", loop.contains("mult(a, 2)"));
+    }
+
+    @Test
+    public void variantAndTrappingCallsStayInLoops() throws IOException {
+        ASTCompileUnit program = optimize("loopInvariants.myun");
+        List<ASTStatement> statements = program.getScript().getBlock().getStatements();
+
+        // x is assigned in the while loop and x / 0 would trap
+        statements.forEach(stmt -> assertFalse("Nothing should be moved out of the script loops.",
+                stmt instanceof ASTDeclaration && ((ASTDeclaration) stmt).getVariable().getName().startsWith("licm.")));
+    }
+
+    @Test
+    public void optimizedProgramHasSameOutput() throws IOException, InterruptedException {
+        String outputFile = MyunCompiler.getDefaultMyunCompiler(CompilerFlag.LICM).compileFromFile(resPath +
+                "loopInvariants.myun");
+        String[] lines = CodeRunner.executeAndGetOutput(outputFile);
+
+        String[] expected = {"63", "13", "150"};
+        assertArrayEquals("Loop invariant code motion should not change the output.", expected, lines);
+    }
+}
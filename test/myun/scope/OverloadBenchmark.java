@@ -0,0 +1,90 @@
+package myun.scope;
+
+import myun.AST.ASTCompileUnit;
+import myun.AST.ASTGenerator;
+import myun.type.inference.TypeInferrer;
+
+import java.util.Locale;
+
+/**
+ * Measures the scope initialization and type inference of generated sources with thousands of overloaded functions,
+ * whose calls are resolved by looking up the overloads of each called name (including the operators of the
+ * {@link MyunCoreScope}).
+ * Arguments: [number of function names] [repetitions]
+ * @noinspection UseOfSystemOutOrSystemErr
+ */
+public final class OverloadBenchmark {
+    private OverloadBenchmark() {
+    }
+
+    /**
+     * Generates a program with three overloads for each function name, which call the overloads of the previous name.
+     *
+     * @param names the number of function names
+     * @return the code
+     */
+    static String generateSource(int names) {
+        StringBuilder code = new StringBuilder();
+        for (int i = 0; i < names; i++) {
+            String previous = "f" + Math.max(i - 1, 0);
+            code.append('f').append(i).append("(x::Int)::Int\n");
+            code.append((i == 0) ? "    return x + 1\n" : "    return " + previous + "(x) * 2 - x\n").append("end\n\n");
+            code.append('f').append(i).append("(x::Float)::Float\n");
+            code.append((i == 0) ? "    return x + 1.0\n" : "    return " + previous + "(x) * 2.0 - x\n").
+                    append("end\n\n");
+            code.append('f').append(i).append("(x::Int, y::Int)::Int\n");
+            code.append("    return f").append(i).append("(x) + f").append(i).append("(y) mod 7\nend\n\n");
+        }
+        code.append("script main\n    print(f").append(names - 1).append("(1, 2))\nend\n");
+        return code.toString();
+    }
+
+    private static long measure(String code, int repetitions) {
+        ASTGenerator generator = new ASTGenerator();
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < repetitions; i++) {
+            ASTCompileUnit program = generator.parseCode(code, true);
+            long start = System.nanoTime();
+            ScopeInitializer.initScopes(program, MyunCoreScope.getInstance());
+            new TypeInferrer().inferTypes(program);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+
+    private static long measureLookups(Scope scope, int names, int repetitions) {
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < repetitions; i++) {
+            long start = System.nanoTime();
+            for (int name = 0; name < names; name++) {
+                scope.getDeclaredFunctionTypes("f" + name);
+                scope.getDeclaredFunctionTypes("plus");
+            }
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+
+    public static void main(String... args) {
+        int names = (args.length > 0) ? Integer.parseInt(args[0]) : 2000;
+        int repetitions = (args.length > 1) ? Integer.parseInt(args[1]) : 5;
+        String code = generateSource(names);
+
+        // the first runs warm up the parser and the inference
+        measure(generateSource(names / 10 + 1), repetitions);
+        long inferenceNanos = measure(code, repetitions);
+        System.out.printf(Locale.ROOT, "%d overloaded functions, %.1f KiB%n", names * 3, code.length() / 1024.0);
+        System.out.printf(Locale.ROOT, "scopes and type inference: %10.3f ms%n", inferenceNanos / 1.0e6);
+
+        ASTCompileUnit program = new ASTGenerator().parseCode(code, true);
+        ScopeInitializer.initScopes(program, MyunCoreScope.getInstance());
+        TypeInferrer typeInferrer = new TypeInferrer();
+        typeInferrer.inferTypes(program);
+        System.out.println(typeInferrer.getResolutionStatistics());
+        Scope scope = program.getScript().getBlock().getScope();
+        measureLookups(scope, names, repetitions);
+        long lookupNanos = measureLookups(scope, names, repetitions);
+        System.out.printf(Locale.ROOT, "overload lookups:          %10.3f ms (%.1f ns per lookup)%n",
+                lookupNanos / 1.0e6, lookupNanos / (2.0 * names));
+    }
+}
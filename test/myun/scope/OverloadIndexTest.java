@@ -0,0 +1,84 @@
+package myun.scope;
+
+import myun.AST.SourcePosition;
+import myun.type.FuncHeader;
+import myun.type.FuncType;
+import myun.type.MyunType;
+import myun.type.PrimitiveTypes;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the index of the declared function types by their names.
+ */
+public class OverloadIndexTest {
+    private Scope parentScope;
+    private Scope scope;
+
+    @Before
+    public void setUp() {
+        parentScope = new Scope(MyunCoreScope.getInstance());
+        scope = new Scope(parentScope);
+    }
+
+    private static FuncType declare(Scope scope, String name, MyunType parameterType) {
+        List<MyunType> parameterTypes = Collections.singletonList(parameterType);
+        FuncType type = new FuncType(parameterTypes, PrimitiveTypes.MYUN_INT);
+        scope.declareFunction(new FuncHeader(name, parameterTypes), type, new SourcePosition());
+        return type;
+    }
+
+    @Test
+    public void builtinsAreIncluded() {
+        assertFalse(scope.getDeclaredFunctionTypes("plus").isEmpty());
+        assertTrue(scope.getDeclaredFunctionTypes("undeclared").isEmpty());
+    }
+
+    @Test
+    public void innerOverloadsComeFirst() {
+        FuncType outer = declare(parentScope, "f", PrimitiveTypes.MYUN_INT);
+        FuncType inner = declare(scope, "f", PrimitiveTypes.MYUN_FLOAT);
+        assertEquals(Arrays.asList(inner, outer), scope.getDeclaredFunctionTypes("f"));
+        assertEquals(Collections.singletonList(outer), parentScope.getDeclaredFunctionTypes("f"));
+    }
+
+    @Test
+    public void cachedOverloadsAreUpdatedByDeclarations() {
+        FuncType first = declare(scope, "f", PrimitiveTypes.MYUN_INT);
+        List<FuncType> cached = scope.getDeclaredFunctionTypes("f");
+        assertSame(cached, scope.getDeclaredFunctionTypes("f"));
+
+        // a declaration in a parent scope is visible as well
+        FuncType second = declare(parentScope, "f", PrimitiveTypes.MYUN_BOOL);
+        assertEquals(Arrays.asList(first, second), scope.getDeclaredFunctionTypes("f"));
+        assertEquals(Collections.singletonList(first), cached);
+    }
+
+    @Test
+    public void returnTypesReplaceTheOverloads() {
+        FuncType declared = declare(scope, "f", PrimitiveTypes.MYUN_INT);
+        scope.getDeclaredFunctionTypes("f");
+        scope.setReturnType(new FuncHeader("f", declared.getParameterTypes()), PrimitiveTypes.MYUN_FLOAT,
+                new SourcePosition());
+        FuncType inferred = new FuncType(declared.getParameterTypes(), PrimitiveTypes.MYUN_FLOAT);
+        assertEquals(Collections.singletonList(inferred), scope.getDeclaredFunctionTypes("f"));
+        assertEquals(PrimitiveTypes.MYUN_INT, declared.getReturnType());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void coreScopeIsFrozen() {
+        declare(MyunCoreScope.getInstance(), "f", PrimitiveTypes.MYUN_INT);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void overloadsAreUnmodifiable() {
+        declare(scope, "f", PrimitiveTypes.MYUN_INT);
+        scope.getDeclaredFunctionTypes("f").clear();
+    }
+}
@@ -0,0 +1,74 @@
+package myun.scope;
+
+import myun.AST.*;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests the depths and slots that are assigned to declared variables.
+ */
+public class VariableSlotTest {
+    private static ASTCompileUnit initScopes(String code) {
+        ASTCompileUnit program = new ASTGenerator().parseCode(code, true);
+        ScopeInitializer.initScopes(program, MyunCoreScope.getInstance());
+        return program;
+    }
+
+    private static void assertSlot(ASTVariable variable, int scopeDepth, int slot) {
+        assertEquals("The scope depth of " + variable.getName() + " should be assigned.", scopeDepth,
+                variable.getScopeDepth());
+        assertEquals("The slot of " + variable.getName() + " should be assigned.", slot, variable.getSlot());
+    }
+
+    @Test
+    public void variablesGetConsecutiveSlots() {
+        ASTCompileUnit program = initScopes("script main\n    x := 1\n    y := 2\n" +
+                "    for i from x to y do\n        z := i\n    end\n    w := 3\nend\n");
+        List<ASTStatement> statements = program.getScript().getBlock().getStatements();
+        // the core scope, the compile unit, and the script enclose the script's variables
+        assertSlot(((ASTDeclaration) statements.get(0)).getVariable(), 2, 0);
+        assertSlot(((ASTDeclaration) statements.get(1)).getVariable(), 2, 1);
+        assertSlot(((ASTDeclaration) statements.get(3)).getVariable(), 2, 2);
+
+        ASTForLoop loop = (ASTForLoop) statements.get(2);
+        assertSlot(loop.getVariable(), 3, 0);
+        assertSlot(((ASTDeclaration) loop.getBlock().getStatements().get(0)).getVariable(), 3, 1);
+    }
+
+    @Test
+    public void parametersComeFirst() {
+        ASTCompileUnit program = initScopes("f(a::Int, b::Int)::Int\n    c := a + b\n    return c\nend\n\n" +
+                "script main\n    print(f(1, 2))\nend\n");
+        ASTFuncDef funcDef = program.getFuncDefs().iterator().next();
+        assertSlot(funcDef.getParameters().get(0), 2, 0);
+        assertSlot(funcDef.getParameters().get(1), 2, 1);
+        assertSlot(((ASTDeclaration) funcDef.getBlock().getStatements().get(0)).getVariable(), 2, 2);
+    }
+
+    @Test
+    public void usagesAreResolvedToTheDeclaration() {
+        ASTCompileUnit program = initScopes("script main\n    x := 1\n    x = x + 1\nend\n");
+        List<ASTStatement> statements = program.getScript().getBlock().getStatements();
+        ASTVariable declared = ((ASTDeclaration) statements.get(0)).getVariable();
+        ASTAssignment assignment = (ASTAssignment) statements.get(1);
+        assertSame(declared, assignment.getVariable());
+        assertSame(declared, ((ASTFuncCall) assignment.getExpr()).getArgs().get(0));
+    }
+
+    @Test
+    public void manyVariablesAreResolved() {
+        StringBuilder code = new StringBuilder("script main\n    x0 := 0\n");
+        for (int i = 1; i < 20000; i++) {
+            code.append("    x").append(i).append(" := x").append(i - 1).append(" + 1\n");
+        }
+        ASTCompileUnit program = initScopes(code.append("end\n").toString());
+        List<ASTStatement> statements = program.getScript().getBlock().getStatements();
+        for (int i = 0; i < statements.size(); i++) {
+            assertSlot(((ASTDeclaration) statements.get(i)).getVariable(), 2, i);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package myun.type.inference;
+
+import myun.AST.*;
+import myun.scope.CallTarget;
+import myun.scope.MyunCoreScope;
+import myun.scope.ScopeInitializer;
+import myun.type.FuncType;
+import myun.type.PrimitiveTypes;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the cache of the overload resolutions of function calls.
+ */
+public class OverloadResolutionCacheTest {
+    private static TypeInferrer inferTypes(ASTCompileUnit program) {
+        ScopeInitializer.initScopes(program, MyunCoreScope.getInstance());
+        TypeInferrer typeInferrer = new TypeInferrer();
+        typeInferrer.inferTypes(program);
+        return typeInferrer;
+    }
+
+    private static ASTFuncCall getDeclaredCall(ASTStatement statement) {
+        return (ASTFuncCall) ((ASTDeclaration) statement).getExpr();
+    }
+
+    @Test
+    public void recurringCallsAreCached() {
+        ASTCompileUnit program = new ASTGenerator().parseCode("script main\n    a := 1 + 2\n    b := a + 3\n" +
+                "    c := 1.5 + 2.5\nend\n", true);
+        TypeInferrer typeInferrer = inferTypes(program);
+        assertEquals(1, typeInferrer.getResolutionStatistics().getHits());
+        assertEquals(2, typeInferrer.getResolutionStatistics().getMisses());
+
+        List<ASTStatement> statements = program.getScript().getBlock().getStatements();
+        FuncType intPlus = new FuncType(Arrays.asList(PrimitiveTypes.MYUN_INT, PrimitiveTypes.MYUN_INT),
+                PrimitiveTypes.MYUN_INT);
+        assertEquals(intPlus, getDeclaredCall(statements.get(0)).getResolvedType().orElse(null));
+        assertEquals(intPlus, getDeclaredCall(statements.get(1)).getResolvedType().orElse(null));
+        assertEquals(PrimitiveTypes.MYUN_FLOAT, getDeclaredCall(statements.get(2)).getType());
+    }
+
+    @Test
+    public void inferredReturnTypesInvalidateTheCache() {
+        // the call in f is resolved before the return type of g is known
+        ASTCompileUnit program = new ASTGenerator().parseCode("f(x::Int)::Int\n    return g(x)\nend\n\n" +
+                "g(x::Int)\n    return x + 1\nend\n\n" +
+                "script main\n    y := g(1)\n    print(y)\nend\n", true);
+        inferTypes(program);
+        ASTFuncCall call = getDeclaredCall(program.getScript().getBlock().getStatements().get(0));
+        assertEquals(PrimitiveTypes.MYUN_INT, call.getType());
+        assertTrue(call.getResolvedType().isPresent());
+        assertEquals(PrimitiveTypes.MYUN_INT, call.getResolvedType().get().getReturnType());
+    }
+
+    @Test
+    public void callsStoreTheirTarget() {
+        ASTCompileUnit program = new ASTGenerator().parseCode("f(x::Int)\n    return x * 2\nend\n\n" +
+                "script main\n    a := f(1)\n    b := a + 1\n    print(b)\nend\n", true);
+        inferTypes(program);
+        List<ASTStatement> statements = program.getScript().getBlock().getStatements();
+
+        CallTarget userFunction = getDeclaredCall(statements.get(0)).getTarget().orElse(null);
+        assertSame(program.getFuncDefs().iterator().next(), userFunction.getFuncDef().orElse(null));
+        assertFalse(userFunction.getLLVMInstruction().isPresent());
+        // the return type of f is inferred after the call has been resolved
+        assertEquals(PrimitiveTypes.MYUN_INT, userFunction.getReturnType());
+
+        CallTarget builtin = getDeclaredCall(statements.get(1)).getTarget().orElse(null);
+        assertTrue(builtin.getLLVMInstruction().isPresent());
+        assertFalse(builtin.getFuncDef().isPresent());
+    }
+}